@@ -15,8 +15,14 @@ sourceSets.create("java11") {
 
 sourceSets.create("intTest")
 
+sourceSets.create("jmh") {
+    compileClasspath += sourceSets.main.get().output
+    runtimeClasspath += sourceSets.main.get().output
+}
+
 configurations["java11CompileClasspath"].extendsFrom(configurations.compileClasspath.get())
 configurations["intTestImplementation"].extendsFrom(configurations.api.get())
+configurations["jmhImplementation"].extendsFrom(configurations.api.get())
 
 java {
     sourceCompatibility = JavaVersion.VERSION_1_8
@@ -37,6 +43,9 @@ dependencies {
     testImplementation("org.junit.jupiter:junit-jupiter-api:5.7.2")
     testRuntimeOnly("org.junit.jupiter:junit-jupiter-engine:5.7.2")
     "intTestImplementation"(files(tasks.named("jar")))
+
+    "jmhImplementation"("org.openjdk.jmh:jmh-core:1.33")
+    "jmhAnnotationProcessor"("org.openjdk.jmh:jmh-generator-annprocess:1.33")
 }
 
 java {
@@ -74,6 +83,15 @@ tasks.withType<Test> {
 
 tasks.check { dependsOn(tasks.named("compileIntTestJava")) }
 
+tasks.register<JavaExec>("jmh") {
+    description = "Runs the JMH benchmarks. Use -Pjmh.includes=<regex> to select benchmarks."
+    group = "verification"
+    classpath = sourceSets["jmh"].runtimeClasspath
+    mainClass.set("org.openjdk.jmh.Main")
+    args("-bm", "thrpt", "-prof", "gc")
+    project.findProperty("jmh.includes")?.let { args(it) }
+}
+
 val isSnapshot = version.toString().endsWith("-SNAPSHOT")
 
 publishing {
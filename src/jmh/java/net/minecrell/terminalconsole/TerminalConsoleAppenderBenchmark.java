@@ -0,0 +1,126 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Minecrell <https://github.com/Minecrell>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.minecrell.terminalconsole;
+
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.layout.PatternLayout;
+import org.jline.reader.LineReader;
+import org.jline.reader.LineReaderBuilder;
+import org.jline.terminal.Terminal;
+import org.jline.terminal.TerminalBuilder;
+import org.jline.terminal.impl.LineDisciplineTerminal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TerminalConsoleAppenderBenchmark {
+
+    @Param({ "dumb", "lineDiscipline" })
+    public String terminal;
+
+    @Param({ "false", "true" })
+    public boolean reader;
+
+    private TerminalConsoleAppender appender;
+    private LogEvent event;
+    private Thread readerThread;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        Terminal terminal;
+        if ("dumb".equals(this.terminal)) {
+            terminal = TerminalBuilder.builder()
+                    .system(false)
+                    .dumb(true)
+                    .type(Terminal.TYPE_DUMB)
+                    .streams(new ByteArrayInputStream(new byte[0]), BenchmarkEvents.NULL_OUTPUT)
+                    .build();
+        } else {
+            terminal = new LineDisciplineTerminal("benchmark", "xterm-256color",
+                    BenchmarkEvents.NULL_OUTPUT, StandardCharsets.UTF_8);
+        }
+
+        TerminalConsoleAppender.setTerminal(terminal);
+
+        if (this.reader) {
+            LineReader lineReader = LineReaderBuilder.builder().terminal(terminal).build();
+            TerminalConsoleAppender.setReader(lineReader);
+
+            // printAbove() only redraws the prompt while the reader is reading input
+            readerThread = new Thread(() -> {
+                try {
+                    lineReader.readLine("> ");
+                } catch (RuntimeException ignored) {
+                }
+            }, "Benchmark Reader");
+            readerThread.setDaemon(true);
+            readerThread.start();
+        }
+
+        appender = TerminalConsoleAppender.newBuilder()
+                .setName("Benchmark")
+                .setLayout(PatternLayout.newBuilder().withPattern("[%d{HH:mm:ss} %level]: %msg%n").build())
+                .build();
+        appender.start();
+
+        event = BenchmarkEvents.create("Benchmark", org.apache.logging.log4j.Level.INFO, BenchmarkEvents.PLAIN_MESSAGE);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        appender.stop();
+        if (readerThread != null) {
+            readerThread.interrupt();
+        }
+        TerminalConsoleAppender.close();
+    }
+
+    @Benchmark
+    public void append() {
+        appender.append(event);
+    }
+
+}
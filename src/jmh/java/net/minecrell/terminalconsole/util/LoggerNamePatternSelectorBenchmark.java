@@ -0,0 +1,102 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Minecrell <https://github.com/Minecrell>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.minecrell.terminalconsole.util;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.config.DefaultConfiguration;
+import org.apache.logging.log4j.core.layout.PatternMatch;
+import org.apache.logging.log4j.core.pattern.PatternFormatter;
+import net.minecrell.terminalconsole.BenchmarkEvents;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoggerNamePatternSelectorBenchmark {
+
+    @Param({ "1", "10", "500" })
+    public int keys;
+
+    @Param({ "0", "256" })
+    public int cacheSize;
+
+    private LoggerNamePatternSelector selector;
+    private LogEvent firstMatch;
+    private LogEvent lastMatch;
+    private LogEvent noMatch;
+
+    @Setup
+    public void setup() {
+        PatternMatch[] matches = new PatternMatch[keys];
+        for (int i = 0; i < keys; i++) {
+            // Alternate between package prefixes and exact logger names
+            String key = (i % 2 == 0) ? "com.example.plugin" + i + '.' : "com.example.Plugin" + i;
+            matches[i] = new PatternMatch(key, "[%level] [" + i + "]: %msg%n");
+        }
+
+        selector = LoggerNamePatternSelector.createSelector("[%level] [%logger]: %msg%n", matches,
+                true, false, false, cacheSize, new DefaultConfiguration());
+
+        firstMatch = BenchmarkEvents.create("com.example.plugin0.internal.Listener", Level.INFO, "");
+        lastMatch = BenchmarkEvents.create(matchingName(keys - 1), Level.INFO, "");
+        noMatch = BenchmarkEvents.create("org.example.server.network.ConnectionHandler", Level.INFO, "");
+    }
+
+    private static String matchingName(int i) {
+        return (i % 2 == 0) ? "com.example.plugin" + i + ".internal.Listener" : "com.example.Plugin" + i;
+    }
+
+    @Benchmark
+    public PatternFormatter[] firstMatch() {
+        return selector.getFormatters(firstMatch);
+    }
+
+    @Benchmark
+    public PatternFormatter[] lastMatch() {
+        return selector.getFormatters(lastMatch);
+    }
+
+    @Benchmark
+    public PatternFormatter[] noMatch() {
+        return selector.getFormatters(noMatch);
+    }
+
+}
@@ -0,0 +1,168 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Minecrell <https://github.com/Minecrell>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.minecrell.terminalconsole;
+
+import java.util.Arrays;
+
+/**
+ * Maps RGB colors to the nearest color supported by the terminal.
+ *
+ * <p>The results are cached in small direct-mapped tables, because the
+ * same few colors are usually used over and over again. Each entry stores
+ * the RGB color together with the result, so races between threads can
+ * only cause additional cache misses.</p>
+ */
+final class AnsiColors {
+
+    /**
+     * The color depth of terminals that only support the 16 basic colors.
+     */
+    static final int COLORS_16 = 16;
+
+    /**
+     * The color depth of terminals that support the xterm 256 color palette.
+     */
+    static final int COLORS_256 = 256;
+
+    /**
+     * The color depth of terminals that support 24-bit RGB colors.
+     */
+    static final int TRUE_COLOR = 1 << 24;
+
+    /**
+     * The RGB values of the legacy Minecraft colors {@code §0} - {@code §f}.
+     */
+    private static final int[] LEGACY_COLORS = {
+            0x000000, 0x0000AA, 0x00AA00, 0x00AAAA, 0xAA0000, 0xAA00AA, 0xFFAA00, 0xAAAAAA,
+            0x555555, 0x5555FF, 0x55FF55, 0x55FFFF, 0xFF5555, 0xFF55FF, 0xFFFF55, 0xFFFFFF,
+    };
+
+    // The intensity of the 6 levels of the 6x6x6 color cube in the xterm palette
+    private static final int[] CUBE_LEVELS = { 0x00, 0x5F, 0x87, 0xAF, 0xD7, 0xFF };
+
+    private static final int CACHE_SIZE = 256;
+    private static final int EMPTY = -1;
+
+    // Each entry is (rgb << 8) | result
+    private static final int[] legacyCache = new int[CACHE_SIZE];
+    private static final int[] xtermCache = new int[CACHE_SIZE];
+
+    static {
+        Arrays.fill(legacyCache, EMPTY);
+        Arrays.fill(xtermCache, EMPTY);
+    }
+
+    private AnsiColors() {
+    }
+
+    private static int slot(int rgb) {
+        return (rgb * 0x9E3779B1) >>> 24;
+    }
+
+    /**
+     * Returns the index of the nearest legacy Minecraft color ({@code 0} -
+     * {@code 15}) for the specified RGB color.
+     *
+     * @param rgb The RGB color
+     * @return The index of the nearest legacy color
+     */
+    static int toLegacy(int rgb) {
+        int slot = slot(rgb);
+        int entry = legacyCache[slot];
+        if (entry != EMPTY && entry >>> 8 == rgb) {
+            return entry & 0xFF;
+        }
+
+        int best = 0;
+        int bestDistance = Integer.MAX_VALUE;
+        for (int i = 0; i < LEGACY_COLORS.length; i++) {
+            int distance = distance(rgb, LEGACY_COLORS[i]);
+            if (distance < bestDistance) {
+                best = i;
+                bestDistance = distance;
+            }
+        }
+
+        legacyCache[slot] = rgb << 8 | best;
+        return best;
+    }
+
+    /**
+     * Returns the nearest color of the xterm 256 color palette for the
+     * specified RGB color. Only the color cube ({@code 16} - {@code 231})
+     * and the grayscale ramp ({@code 232} - {@code 255}) are considered,
+     * because the first 16 colors are often customized by the terminal.
+     *
+     * @param rgb The RGB color
+     * @return The index in the xterm 256 color palette
+     */
+    static int toXterm256(int rgb) {
+        int slot = slot(rgb);
+        int entry = xtermCache[slot];
+        if (entry != EMPTY && entry >>> 8 == rgb) {
+            return entry & 0xFF;
+        }
+
+        int r = rgb >> 16 & 0xFF;
+        int g = rgb >> 8 & 0xFF;
+        int b = rgb & 0xFF;
+
+        int ri = toCubeLevel(r);
+        int gi = toCubeLevel(g);
+        int bi = toCubeLevel(b);
+        int cube = CUBE_LEVELS[ri] << 16 | CUBE_LEVELS[gi] << 8 | CUBE_LEVELS[bi];
+
+        // Grayscale ramp from 0x08 to 0xEE in steps of 10
+        int average = (r + g + b) / 3;
+        int grayIndex = average > 238 ? 23 : Math.max(0, (average - 3) / 10);
+        int grayLevel = 8 + grayIndex * 10;
+        int gray = grayLevel << 16 | grayLevel << 8 | grayLevel;
+
+        int result = distance(rgb, gray) < distance(rgb, cube)
+                ? 232 + grayIndex
+                : 16 + 36 * ri + 6 * gi + bi;
+
+        xtermCache[slot] = rgb << 8 | result;
+        return result;
+    }
+
+    private static int toCubeLevel(int value) {
+        if (value < 48) {
+            return 0;
+        } else if (value < 115) {
+            return 1;
+        } else {
+            return (value - 35) / 40;
+        }
+    }
+
+    private static int distance(int a, int b) {
+        int dr = (a >> 16 & 0xFF) - (b >> 16 & 0xFF);
+        int dg = (a >> 8 & 0xFF) - (b >> 8 & 0xFF);
+        int db = (a & 0xFF) - (b & 0xFF);
+        return dr * dr + dg * dg + db * db;
+    }
+
+}
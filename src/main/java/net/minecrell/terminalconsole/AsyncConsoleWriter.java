@@ -0,0 +1,320 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Minecrell <https://github.com/Minecrell>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.minecrell.terminalconsole;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.status.StatusLogger;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Writes formatted log messages to the console from a dedicated thread.
+ *
+ * <p>Messages are stored in a bounded ring buffer that is allocated once
+ * when the writer is created. Appending a message only copies the reference
+ * into the ring buffer, the actual terminal I/O is done by the writer
+ * thread.</p>
+ *
+ * <p>All messages that are queued when the writer thread wakes up are
+ * printed together, so the input line is only redrawn once per batch.</p>
+ */
+final class AsyncConsoleWriter implements Runnable {
+
+    private static final Set<AsyncConsoleWriter> running = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Stops all running writers after writing all queued messages.
+     */
+    static void stopAll() {
+        for (AsyncConsoleWriter writer : running) {
+            writer.stop(0, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Returns the number of messages queued in all running writers.
+     *
+     * @return The total queue depth
+     */
+    static int getTotalQueueDepth() {
+        int depth = 0;
+        for (AsyncConsoleWriter writer : running) {
+            depth += writer.size();
+        }
+        return depth;
+    }
+
+    private final String name;
+    private final TerminalConsoleAppender.OverflowPolicy overflowPolicy;
+    private final Level overflowLevel;
+    private final int batchSize;
+    private final long lingerNanos;
+
+    private final @Nullable String[] lines;
+    private final int mask;
+
+    // Lines taken from the ring buffer by the writer thread
+    private final @Nullable String[] pending;
+    private final StringBuilder batch = new StringBuilder();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+
+    // Guarded by lock
+    private long head; // Next slot to read
+    private long tail; // Next slot to write
+    private boolean active;
+    private @Nullable Thread thread;
+
+    AsyncConsoleWriter(String name, int bufferSize,
+            TerminalConsoleAppender.OverflowPolicy overflowPolicy, Level overflowLevel,
+            int batchSize, long lingerMillis) {
+        this.name = name;
+        this.overflowPolicy = overflowPolicy;
+        this.overflowLevel = overflowLevel;
+
+        int capacity = ceilingPowerOfTwo(bufferSize);
+        this.lines = new String[capacity];
+        this.mask = capacity - 1;
+
+        this.batchSize = Math.max(1, Math.min(batchSize, capacity));
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, lingerMillis));
+        this.pending = new String[this.batchSize];
+    }
+
+    private static int ceilingPowerOfTwo(int value) {
+        if (value <= 1) {
+            return 1;
+        }
+        return Integer.highestOneBit(Math.min(value - 1, 1 << 29) << 1);
+    }
+
+    void start() {
+        lock.lock();
+        try {
+            if (this.thread == null) {
+                this.active = true;
+                Thread thread = new Thread(this, "TerminalConsoleAppender-" + this.name);
+                thread.setDaemon(true);
+                thread.start();
+                this.thread = thread;
+                running.add(this);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops the writer thread after all queued messages were written.
+     *
+     * @param timeout The maximum time to wait for the queue to drain
+     * @param unit The unit of the timeout
+     */
+    void stop(long timeout, TimeUnit unit) {
+        Thread thread;
+        lock.lock();
+        try {
+            thread = this.thread;
+            if (thread == null) {
+                return;
+            }
+
+            this.active = false;
+            this.thread = null;
+            notEmpty.signal();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        running.remove(this);
+
+        if (thread == Thread.currentThread()) {
+            return;
+        }
+
+        try {
+            if (timeout > 0) {
+                thread.join(unit.toMillis(timeout));
+            } else {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns the number of messages currently in the queue.
+     *
+     * @return The number of queued messages
+     */
+    int size() {
+        lock.lock();
+        try {
+            return (int) (this.tail - this.head);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Adds a message to the queue. The message is written immediately if
+     * the writer is not running.
+     *
+     * @param text The formatted message
+     * @param level The level of the message
+     */
+    void write(String text, Level level) {
+        if (!offer(text, level)) {
+            TerminalConsoleAppender.print(text);
+        }
+    }
+
+    private boolean offer(String text, Level level) {
+        lock.lock();
+        try {
+            // Messages logged by the writer thread itself (e.g. if System.out
+            // is redirected to Log4J) would wait forever if the queue is full
+            if (!this.active || Thread.currentThread() == this.thread) {
+                return false;
+            }
+
+            while (this.tail - this.head == this.lines.length) {
+                switch (this.overflowPolicy) {
+                    case DROP_OLDEST:
+                        this.lines[(int) this.head++ & this.mask] = null;
+                        ConsoleMetrics.INSTANCE.droppedLines.increment();
+                        continue;
+                    case DROP_BELOW_LEVEL:
+                        if (!level.isMoreSpecificThan(this.overflowLevel)) {
+                            ConsoleMetrics.INSTANCE.droppedLines.increment();
+                            return true;
+                        }
+                        break;
+                    default:
+                        break;
+                }
+
+                try {
+                    notFull.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+
+                if (!this.active) {
+                    return false;
+                }
+            }
+
+            this.lines[(int) this.tail++ & this.mask] = text;
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void run() {
+        int count;
+        while ((count = take()) > 0) {
+            try {
+                if (count == 1) {
+                    //noinspection ConstantConditions
+                    TerminalConsoleAppender.print(this.pending[0]);
+                } else {
+                    // Redraw the input line only once for all lines
+                    for (int i = 0; i < count; i++) {
+                        this.batch.append(this.pending[i]);
+                    }
+                    TerminalConsoleAppender.print(this.batch.toString());
+                }
+            } catch (RuntimeException e) {
+                StatusLogger.getLogger().error("Failed to write to console", e);
+            } finally {
+                Arrays.fill(this.pending, 0, count, null);
+                this.batch.setLength(0);
+            }
+        }
+    }
+
+    /**
+     * Moves up to {@link #batchSize} queued messages to {@link #pending},
+     * waiting until at least one message is available. If configured, waits
+     * up to {@link #lingerNanos} for further messages to fill the batch.
+     * Returns {@code 0} once the writer was stopped and all messages were
+     * written.
+     *
+     * @return The number of pending messages
+     */
+    private int take() {
+        lock.lock();
+        try {
+            while (this.head == this.tail) {
+                if (!this.active) {
+                    return 0;
+                }
+
+                try {
+                    notEmpty.await();
+                } catch (InterruptedException ignored) {
+                    // Keep running until stopped so no messages are lost
+                }
+            }
+
+            long remaining = this.lingerNanos;
+            while (remaining > 0 && this.active && this.tail - this.head < this.batchSize) {
+                try {
+                    remaining = notEmpty.awaitNanos(remaining);
+                } catch (InterruptedException ignored) {
+                    break;
+                }
+            }
+
+            int count = 0;
+            while (this.head != this.tail && count < this.batchSize) {
+                int index = (int) this.head++ & this.mask;
+                this.pending[count++] = this.lines[index];
+                this.lines[index] = null;
+            }
+
+            notFull.signalAll();
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+}
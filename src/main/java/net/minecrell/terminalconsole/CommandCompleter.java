@@ -0,0 +1,174 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Minecrell <https://github.com/Minecrell>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.minecrell.terminalconsole;
+
+import org.apache.logging.log4j.status.StatusLogger;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.jline.reader.Candidate;
+import org.jline.reader.Completer;
+import org.jline.reader.LineReader;
+import org.jline.reader.ParsedLine;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A {@link Completer} that completes the commands registered in a
+ * {@link CommandRegistry}.
+ *
+ * <p>Dynamic suggestions are computed asynchronously. If they are not
+ * available within the timeout, only the registered subcommands are
+ * suggested, and the dynamic suggestions are shown the next time the
+ * same argument is completed.</p>
+ *
+ * <p>The completions are cached for each prefix until the registry is
+ * modified (or {@link CommandRegistry#invalidate() invalidated}).</p>
+ */
+public final class CommandCompleter implements Completer {
+
+    /**
+     * The default time (in milliseconds) to wait for dynamic suggestions.
+     */
+    public static final long DEFAULT_TIMEOUT = 100;
+
+    static final int MAX_CACHE_SIZE = 1024;
+
+    private final CommandRegistry registry;
+    private final Executor executor;
+    private final long timeoutNanos;
+
+    private final Map<String, Completion> cache = new HashMap<>();
+    private long cacheVersion;
+
+    /**
+     * Creates a new completer for the registry. Dynamic suggestions are
+     * computed using the {@link ForkJoinPool#commonPool() common pool},
+     * waiting up to {@link #DEFAULT_TIMEOUT} milliseconds.
+     *
+     * @param registry The command registry
+     */
+    public CommandCompleter(CommandRegistry registry) {
+        this(registry, ForkJoinPool.commonPool(), DEFAULT_TIMEOUT, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates a new completer for the registry.
+     *
+     * @param registry The command registry
+     * @param executor The executor used to compute dynamic suggestions
+     * @param timeout The maximum time to wait for dynamic suggestions
+     * @param unit The unit of the timeout
+     */
+    public CommandCompleter(CommandRegistry registry, Executor executor, long timeout, TimeUnit unit) {
+        this.registry = registry;
+        this.executor = executor;
+        this.timeoutNanos = unit.toNanos(timeout);
+    }
+
+    @Override
+    public void complete(LineReader reader, ParsedLine line, List<Candidate> candidates) {
+        List<String> words = line.words().subList(0, line.wordIndex());
+        String prefix = line.word().substring(0, line.wordCursor());
+
+        Completion completion = getCompletion(words, prefix);
+        candidates.addAll(completion.literals);
+
+        @Nullable CompletableFuture<List<Candidate>> dynamic = completion.dynamic;
+        if (dynamic != null) {
+            try {
+                candidates.addAll(dynamic.get(this.timeoutNanos, TimeUnit.NANOSECONDS));
+            } catch (TimeoutException ignored) {
+                // Still computing, the result will be used on the next attempt
+            } catch (ExecutionException e) {
+                StatusLogger.getLogger().warn("Failed to compute suggestions for '{}'", line.line(), e.getCause());
+                completion.dynamic = null;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private synchronized Completion getCompletion(List<String> words, String prefix) {
+        long version = this.registry.getVersion();
+        if (version != this.cacheVersion || this.cache.size() >= MAX_CACHE_SIZE) {
+            this.cache.clear();
+            this.cacheVersion = version;
+        }
+
+        StringBuilder key = new StringBuilder();
+        for (String word : words) {
+            key.append(word).append('\0');
+        }
+        key.append(prefix);
+
+        return this.cache.computeIfAbsent(key.toString(), k -> createCompletion(words, prefix));
+    }
+
+    private Completion createCompletion(List<String> words, String prefix) {
+        CommandRegistry.Lookup lookup = this.registry.lookup(words, prefix);
+
+        List<Candidate> literals = new ArrayList<>(lookup.literals.size());
+        for (String literal : lookup.literals) {
+            literals.add(new Candidate(literal, literal, null, null, null, null, true));
+        }
+
+        @Nullable CompletableFuture<List<Candidate>> dynamic = null;
+        CommandRegistry.@Nullable SuggestionProvider suggestions = lookup.suggestions;
+        if (suggestions != null) {
+            dynamic = CompletableFuture.supplyAsync(() -> {
+                Collection<String> values = suggestions.suggest(lookup.arguments, prefix);
+                List<Candidate> result = new ArrayList<>(values.size());
+                for (String value : values) {
+                    result.add(new Candidate(value, value, null, null, null, null, true));
+                }
+                return result;
+            }, this.executor);
+        }
+
+        return new Completion(literals, dynamic);
+    }
+
+    private static final class Completion {
+
+        final List<Candidate> literals;
+        volatile @Nullable CompletableFuture<List<Candidate>> dynamic;
+
+        Completion(List<Candidate> literals, @Nullable CompletableFuture<List<Candidate>> dynamic) {
+            this.literals = literals;
+            this.dynamic = dynamic;
+        }
+
+    }
+
+}
@@ -0,0 +1,165 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Minecrell <https://github.com/Minecrell>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.minecrell.terminalconsole;
+
+import org.apache.logging.log4j.status.StatusLogger;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs commands on an {@link Executor}, with at most a fixed number of
+ * commands running at the same time. Commands are started in the order they
+ * were submitted, so with a parallelism of {@code 1} they run serially in
+ * order, regardless of the number of threads provided by the executor.
+ */
+final class CommandDispatcher implements Executor {
+
+    private static final AtomicInteger threadId = new AtomicInteger();
+
+    /**
+     * Creates the default executor for running commands. On Java 21 and newer,
+     * each command runs in a new virtual thread. Otherwise, the commands run
+     * in a pool of (daemon) platform threads that is shrunk when idle.
+     *
+     * @param parallelism The maximum number of commands running at the same time
+     * @return The executor
+     */
+    static Executor createDefaultExecutor(int parallelism) {
+        @Nullable Executor executor = createVirtualThreadExecutor();
+        if (executor != null) {
+            return executor;
+        }
+
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(parallelism, parallelism, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), task -> {
+            Thread thread = new Thread(task, "Console Command Thread #" + threadId.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    private static @Nullable Executor createVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Virtual threads are not available (before Java 21)
+            return null;
+        }
+    }
+
+    private final Executor executor;
+    private final int parallelism;
+
+    private final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger active = new AtomicInteger();
+
+    /**
+     * Creates a new dispatcher.
+     *
+     * @param executor The executor to run the commands on
+     * @param parallelism The maximum number of commands running at the same time
+     */
+    CommandDispatcher(Executor executor, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        }
+        this.executor = executor;
+        this.parallelism = parallelism;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        this.queue.add(command);
+        schedule();
+    }
+
+    private void schedule() {
+        if (tryAcquire()) {
+            try {
+                this.executor.execute(this::drain);
+            } catch (RuntimeException e) {
+                this.active.decrementAndGet();
+                throw e;
+            }
+        }
+    }
+
+    private boolean tryAcquire() {
+        for (;;) {
+            int active = this.active.get();
+            if (active >= this.parallelism) {
+                return false;
+            }
+            if (this.active.compareAndSet(active, active + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private void drain() {
+        boolean released = false;
+        try {
+            do {
+                released = false;
+                @Nullable Runnable command;
+                while ((command = this.queue.poll()) != null) {
+                    try {
+                        command.run();
+                    } catch (RuntimeException e) {
+                        StatusLogger.getLogger().error("Failed to run console command", e);
+                    }
+                }
+
+                this.active.decrementAndGet();
+                released = true;
+                // Another command might have been added before we released the slot
+            } while (!this.queue.isEmpty() && tryAcquire());
+        } finally {
+            if (!released) {
+                // A command threw an Error, continue with the remaining commands in a new task
+                this.active.decrementAndGet();
+                if (!this.queue.isEmpty()) {
+                    try {
+                        schedule();
+                    } catch (RuntimeException e) {
+                        StatusLogger.getLogger().error("Failed to schedule console commands", e);
+                    }
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,355 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Minecrell <https://github.com/Minecrell>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.minecrell.terminalconsole;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A registry of the commands available in the console, used to complete
+ * commands using {@link CommandCompleter}.
+ *
+ * <p>Commands are registered with their full path of literal arguments
+ * (e.g. {@code "whitelist add"}), and optionally a
+ * {@link SuggestionProvider} for the dynamic arguments that follow
+ * (e.g. player names). The literals are stored in a prefix tree, so
+ * completing a command only looks at the commands matching the prefix
+ * that was entered.</p>
+ *
+ * <p>Commands can be registered and unregistered at any time, from any
+ * thread.</p>
+ */
+public final class CommandRegistry {
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Node root = new Node("");
+    private volatile long version;
+
+    /**
+     * Registers a command (or a subcommand) without dynamic arguments.
+     * Parent commands are registered automatically.
+     *
+     * @param command The command path, with the literals separated by spaces
+     *     (e.g. {@code "whitelist add"})
+     */
+    public void register(String command) {
+        register(command, null);
+    }
+
+    /**
+     * Registers a command (or a subcommand) with a provider for the dynamic
+     * arguments that follow it. Parent commands are registered automatically.
+     * If the command is already registered, its suggestion provider is
+     * replaced.
+     *
+     * @param command The command path, with the literals separated by spaces
+     *     (e.g. {@code "whitelist add"})
+     * @param suggestions The provider for the arguments following the
+     *     command, or null for none
+     */
+    public void register(String command, @Nullable SuggestionProvider suggestions) {
+        String[] path = split(command);
+        this.lock.writeLock().lock();
+        try {
+            Node node = this.root;
+            for (String name : path) {
+                @Nullable Node child = node.children.get(name);
+                if (child == null) {
+                    child = new Node(name);
+                    node.children.put(name, child);
+                }
+                node = child;
+            }
+            node.suggestions = suggestions;
+            this.version++;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Unregisters a command (or a subcommand), together with all of its
+     * subcommands.
+     *
+     * @param command The command path, with the literals separated by spaces
+     * @return {@code true} if the command was registered
+     */
+    public boolean unregister(String command) {
+        String[] path = split(command);
+        this.lock.writeLock().lock();
+        try {
+            @Nullable Node parent = this.root;
+            for (int i = 0; i < path.length - 1 && parent != null; i++) {
+                parent = parent.children.get(path[i]);
+            }
+
+            if (parent == null || !parent.children.remove(path[path.length - 1], 0)) {
+                return false;
+            }
+
+            this.version++;
+            return true;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Invalidates cached completions without changing the registered commands,
+     * e.g. because the values returned by a {@link SuggestionProvider} have
+     * changed.
+     */
+    public void invalidate() {
+        this.lock.writeLock().lock();
+        try {
+            this.version++;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns a number that changes every time the registry is modified
+     * or {@link #invalidate() invalidated}.
+     *
+     * @return The current version of the registry
+     */
+    public long getVersion() {
+        return this.version;
+    }
+
+    /**
+     * Looks up the completions for the word at the specified position.
+     *
+     * @param words The complete words in front of the word to complete
+     * @param prefix The part of the word to complete in front of the cursor
+     * @return The result of the lookup
+     */
+    Lookup lookup(List<String> words, String prefix) {
+        this.lock.readLock().lock();
+        try {
+            Node node = this.root;
+            int i = 0;
+            for (; i < words.size(); i++) {
+                @Nullable Node child = node.children.get(words.get(i));
+                if (child == null) {
+                    break;
+                }
+                node = child;
+            }
+
+            List<String> literals;
+            if (i == words.size()) {
+                literals = new ArrayList<>();
+                @Nullable Trie matches = node.children.find(prefix);
+                if (matches != null) {
+                    matches.collect(literals);
+                }
+            } else {
+                // There are arguments that are not literals
+                literals = Collections.emptyList();
+            }
+
+            return new Lookup(literals, node.suggestions, new ArrayList<>(words.subList(i, words.size())));
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    private static String[] split(String command) {
+        String trimmed = command.trim();
+        if (trimmed.isEmpty()) {
+            throw new IllegalArgumentException("Command must not be empty");
+        }
+        return trimmed.split("\\s+");
+    }
+
+    /**
+     * Provides suggestions for the dynamic arguments of a command.
+     */
+    @FunctionalInterface
+    public interface SuggestionProvider {
+
+        /**
+         * Returns suggestions for the argument that is being completed.
+         *
+         * <p>This may be called asynchronously, so it should not rely on
+         * being called on a specific thread. The suggestions do not need to
+         * be filtered by the prefix.</p>
+         *
+         * @param arguments The arguments entered after the registered
+         *     command, in front of the argument to complete
+         * @param prefix The part of the argument to complete in front of
+         *     the cursor
+         * @return The suggestions for the argument
+         */
+        Collection<String> suggest(List<String> arguments, String prefix);
+
+    }
+
+    /**
+     * The result of {@link #lookup(List, String)}.
+     */
+    static final class Lookup {
+
+        final List<String> literals;
+        final @Nullable SuggestionProvider suggestions;
+        final List<String> arguments;
+
+        Lookup(List<String> literals, @Nullable SuggestionProvider suggestions, List<String> arguments) {
+            this.literals = literals;
+            this.suggestions = suggestions;
+            this.arguments = arguments;
+        }
+
+    }
+
+    private static final class Node {
+
+        final String name;
+        final Trie children = new Trie();
+        @Nullable SuggestionProvider suggestions;
+
+        Node(String name) {
+            this.name = name;
+        }
+
+    }
+
+    /**
+     * A prefix tree mapping names to nodes. The children of each entry are
+     * kept sorted, so the names are collected in lexicographic order.
+     */
+    private static final class Trie {
+
+        private static final char[] NO_KEYS = new char[0];
+        private static final Trie[] NO_CHILDREN = new Trie[0];
+
+        private char[] keys = NO_KEYS;
+        private Trie[] children = NO_CHILDREN;
+        private @Nullable Node node;
+
+        @Nullable Node get(String name) {
+            @Nullable Trie trie = find(name);
+            return trie != null ? trie.node : null;
+        }
+
+        @Nullable Trie find(String prefix) {
+            Trie trie = this;
+            for (int i = 0; i < prefix.length(); i++) {
+                int index = Arrays.binarySearch(trie.keys, prefix.charAt(i));
+                if (index < 0) {
+                    return null;
+                }
+                trie = trie.children[index];
+            }
+            return trie;
+        }
+
+        void put(String name, Node node) {
+            Trie trie = this;
+            for (int i = 0; i < name.length(); i++) {
+                char c = name.charAt(i);
+                int index = Arrays.binarySearch(trie.keys, c);
+                if (index < 0) {
+                    index = -index - 1;
+                    trie.insert(index, c);
+                }
+                trie = trie.children[index];
+            }
+            trie.node = node;
+        }
+
+        private void insert(int index, char c) {
+            int length = this.keys.length;
+            char[] keys = Arrays.copyOf(this.keys, length + 1);
+            Trie[] children = Arrays.copyOf(this.children, length + 1);
+            System.arraycopy(keys, index, keys, index + 1, length - index);
+            System.arraycopy(children, index, children, index + 1, length - index);
+            keys[index] = c;
+            children[index] = new Trie();
+            this.keys = keys;
+            this.children = children;
+        }
+
+        /**
+         * Removes the node with the specified name and prunes the entries
+         * that become empty.
+         *
+         * @param name The name to remove
+         * @param offset The offset of the character in the name that
+         *     belongs to this entry
+         * @return {@code true} if a node was removed
+         */
+        boolean remove(String name, int offset) {
+            if (offset == name.length()) {
+                boolean removed = this.node != null;
+                this.node = null;
+                return removed;
+            }
+
+            int index = Arrays.binarySearch(this.keys, name.charAt(offset));
+            if (index < 0) {
+                return false;
+            }
+
+            Trie child = this.children[index];
+            if (!child.remove(name, offset + 1)) {
+                return false;
+            }
+
+            if (child.node == null && child.keys.length == 0) {
+                int length = this.keys.length - 1;
+                char[] keys = new char[length];
+                Trie[] children = new Trie[length];
+                System.arraycopy(this.keys, 0, keys, 0, index);
+                System.arraycopy(this.children, 0, children, 0, index);
+                System.arraycopy(this.keys, index + 1, keys, index, length - index);
+                System.arraycopy(this.children, index + 1, children, index, length - index);
+                this.keys = keys;
+                this.children = children;
+            }
+            return true;
+        }
+
+        void collect(List<String> names) {
+            if (this.node != null) {
+                names.add(this.node.name);
+            }
+            for (Trie child : this.children) {
+                child.collect(names);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,339 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Minecrell <https://github.com/Minecrell>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.minecrell.terminalconsole;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.util.Constants;
+import org.apache.logging.log4j.message.Message;
+import org.apache.logging.log4j.util.StringBuilderFormattable;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+
+/**
+ * Holds back consecutive duplicates of the same message.
+ *
+ * <p>Messages are compared by level, logger and the formatted message
+ * (using its hash code first) before they are passed to the layout. The
+ * first message is printed normally, its duplicates are only counted.
+ * The number of duplicates is printed once a different message is logged,
+ * or at the latest when the configured window has passed after the first
+ * duplicate. Messages with an exception are never held back.</p>
+ *
+ * <p>The comparison with the previous message is an optimistic read that
+ * does not block other threads. The lock is only held to update the state,
+ * and the previous message is copied into a reused buffer.</p>
+ */
+final class ConsoleDuplicateFilter {
+
+    /**
+     * Buffers larger than this are not kept for the next message.
+     */
+    private static final int MAX_BUFFER_SIZE = 8192;
+
+    private static final @Nullable ThreadLocal<StringBuilder> messageBuffer =
+            Constants.ENABLE_THREADLOCALS ? ThreadLocal.withInitial(StringBuilder::new) : null;
+
+    private static final char[] NO_CHARS = new char[0];
+
+    private final String name;
+    private final long windowNanos;
+
+    // Written with the write lock, compared using optimistic reads
+    private final StampedLock lock = new StampedLock();
+    private @Nullable Level lastLevel;
+    private @Nullable String lastLoggerName;
+    private int lastHash;
+    private char[] lastMessage = NO_CHARS;
+    private int lastLength = -1; // -1 if there is no previous message
+    private long repeated;
+    private long heldSince;
+
+    private volatile @Nullable ScheduledExecutorService scheduler; // Modified with this
+    private volatile @Nullable Consumer<String> output;
+
+    ConsoleDuplicateFilter(String name, long windowMillis) {
+        this.name = name;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+    }
+
+    /**
+     * Checks if the log event should be printed to the console, i.e. if it
+     * is not a duplicate of the previous message.
+     *
+     * @param event The log event
+     * @return {@code true} if the event is not a duplicate
+     */
+    boolean tryAcquire(LogEvent event) {
+        if (event.getThrown() != null) {
+            reset();
+            return true;
+        }
+
+        StringBuilder buf = messageBuffer != null ? messageBuffer.get() : new StringBuilder();
+        buf.setLength(0);
+        Message message = event.getMessage();
+        if (message instanceof StringBuilderFormattable) {
+            ((StringBuilderFormattable) message).formatTo(buf);
+        } else {
+            buf.append(message.getFormattedMessage());
+        }
+
+        boolean result = tryAcquire(event.getLevel(), event.getLoggerName(), buf, System.nanoTime());
+        if (buf.length() > MAX_BUFFER_SIZE) {
+            buf.setLength(MAX_BUFFER_SIZE);
+            buf.trimToSize();
+        }
+        return result;
+    }
+
+    /**
+     * Checks if a message should be printed to the console, i.e. if it
+     * is not a duplicate of the previous message.
+     *
+     * @param level The level of the message
+     * @param loggerName The name of the logger
+     * @param message The formatted message
+     * @param now The current time in nanoseconds
+     * @return {@code true} if the message is not a duplicate
+     */
+    boolean tryAcquire(Level level, @Nullable String loggerName, CharSequence message, long now) {
+        int hash = hash(message);
+        long stamp = this.lock.tryOptimisticRead();
+        if (stamp != 0 && isLast(level, loggerName, hash, message)
+                && (stamp = this.lock.tryConvertToWriteLock(stamp)) != 0) {
+            // Still the same message, so it is a duplicate
+            try {
+                holdBack(now);
+            } finally {
+                this.lock.unlockWrite(stamp);
+            }
+            return false;
+        }
+
+        @Nullable String summary;
+        stamp = this.lock.writeLock();
+        try {
+            if (isLast(level, loggerName, hash, message)) {
+                // Another thread logged the same message in the meantime
+                holdBack(now);
+                return false;
+            }
+
+            summary = takeSummary();
+            this.lastLevel = level;
+            this.lastLoggerName = loggerName;
+            this.lastHash = hash;
+            copyMessage(message);
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+
+        print(summary);
+        return true;
+    }
+
+    private void holdBack(long now) {
+        if (this.repeated++ == 0) {
+            this.heldSince = now;
+            schedule(this.windowNanos);
+        }
+        ConsoleMetrics.INSTANCE.coalescedLines.increment();
+    }
+
+    /**
+     * Checks if the message is the same as the previous one. This might be
+     * called without holding the lock, so all fields are only read once and
+     * the result must be validated afterwards.
+     */
+    private boolean isLast(Level level, @Nullable String loggerName, int hash, CharSequence message) {
+        if (hash != this.lastHash || level != this.lastLevel) {
+            return false;
+        }
+
+        @Nullable String lastLoggerName = this.lastLoggerName;
+        if (loggerName == null ? lastLoggerName != null : !loggerName.equals(lastLoggerName)) {
+            return false;
+        }
+
+        char[] chars = this.lastMessage;
+        int length = message.length();
+        if (length != this.lastLength || length > chars.length) {
+            return false;
+        }
+
+        for (int i = 0; i < length; i++) {
+            if (chars[i] != message.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void copyMessage(CharSequence message) {
+        int length = message.length();
+        char[] chars = this.lastMessage;
+        if (length > chars.length || chars.length > MAX_BUFFER_SIZE && length <= MAX_BUFFER_SIZE) {
+            chars = new char[Math.max(length, Math.min(chars.length * 2, MAX_BUFFER_SIZE))];
+            this.lastMessage = chars;
+        }
+
+        for (int i = 0; i < length; i++) {
+            chars[i] = message.charAt(i);
+        }
+        this.lastLength = length;
+    }
+
+    private static int hash(CharSequence s) {
+        // Same as String.hashCode(), but without creating a String
+        int hash = 0;
+        for (int i = 0, length = s.length(); i < length; i++) {
+            hash = 31 * hash + s.charAt(i);
+        }
+        return hash;
+    }
+
+    /**
+     * Forgets the previous message, printing the number of its duplicates.
+     */
+    void reset() {
+        @Nullable String summary;
+        long stamp = this.lock.writeLock();
+        try {
+            if (this.lastLength < 0) {
+                return;
+            }
+
+            summary = takeSummary();
+            this.lastLevel = null;
+            this.lastLoggerName = null;
+            this.lastLength = -1;
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+
+        print(summary);
+    }
+
+    /**
+     * Prints the number of duplicates if the window has passed since the
+     * first one.
+     *
+     * @param now The current time in nanoseconds
+     */
+    void flushExpired(long now) {
+        @Nullable String summary = null;
+        long stamp = this.lock.writeLock();
+        try {
+            if (this.repeated > 0) {
+                long remaining = this.windowNanos - (now - this.heldSince);
+                if (remaining <= 0) {
+                    // Keep the message, so further duplicates are still held back
+                    summary = takeSummary();
+                } else {
+                    // A new run of duplicates was started in the meantime
+                    schedule(remaining);
+                }
+            }
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+
+        print(summary);
+    }
+
+    private @Nullable String takeSummary() {
+        long repeated = this.repeated;
+        if (repeated == 0) {
+            return null;
+        }
+
+        this.repeated = 0;
+        return "[console] Last message repeated " + repeated + (repeated == 1 ? " time" : " times")
+                + System.lineSeparator();
+    }
+
+    private void print(@Nullable String summary) {
+        Consumer<String> output = this.output;
+        if (summary != null && output != null) {
+            output.accept(summary);
+        }
+    }
+
+    private void schedule(long delayNanos) {
+        @Nullable ScheduledExecutorService scheduler = this.scheduler;
+        if (scheduler != null) {
+            try {
+                scheduler.schedule(() -> flushExpired(System.nanoTime()), delayNanos, TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException ignored) {
+                // Stopped concurrently, the remaining duplicates are printed by stop()
+            }
+        }
+    }
+
+    /**
+     * Starts printing the number of duplicates after the window.
+     *
+     * @param output The consumer for the summary lines
+     */
+    synchronized void start(Consumer<String> output) {
+        this.output = output;
+        if (this.scheduler == null) {
+            this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "TerminalConsoleAppender-" + this.name + "-Duplicates");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Stops the scheduled summaries and prints the remaining duplicates.
+     */
+    synchronized void stop() {
+        @Nullable ScheduledExecutorService scheduler = this.scheduler;
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            this.scheduler = null;
+        }
+
+        @Nullable String summary;
+        long stamp = this.lock.writeLock();
+        try {
+            summary = takeSummary();
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+        print(summary);
+        this.output = null;
+    }
+
+}
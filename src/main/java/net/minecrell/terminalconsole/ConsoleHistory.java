@@ -0,0 +1,925 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Minecrell <https://github.com/Minecrell>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.minecrell.terminalconsole;
+
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.status.StatusLogger;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.jline.keymap.KeyMap;
+import org.jline.reader.Binding;
+import org.jline.reader.Buffer;
+import org.jline.reader.History;
+import org.jline.reader.LineReader;
+import org.jline.reader.Reference;
+import org.jline.reader.Widget;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A persistent {@link History} for large command histories.
+ *
+ * <p>Unlike JLine's {@code DefaultHistory}, it does not parse the whole
+ * history file on startup. The file is memory-mapped and the entries are
+ * only decoded when they are accessed. New entries are appended to the
+ * file from a background thread, so the input line never waits for the
+ * disk.</p>
+ *
+ * <p>All entries are also added to a trigram index in the background,
+ * which is used to find entries containing a search query without
+ * looking at every entry (see {@link #searchBackwards(String, int)} and
+ * {@link #bindSearch(LineReader)}).</p>
+ *
+ * <p>The file uses the same format as {@code DefaultHistory}. Once it
+ * contains more than twice the maximum number of entries (when loading or
+ * while entries are added), it is rewritten in the background with only
+ * the most recent entries.</p>
+ */
+public final class ConsoleHistory implements History, Closeable {
+
+    private static final Logger LOGGER = StatusLogger.getLogger();
+
+    /**
+     * The default maximum number of entries.
+     */
+    public static final int DEFAULT_MAX_SIZE = 100_000;
+
+    /**
+     * The name of the widget registered by {@link #bindSearch(LineReader)}.
+     */
+    public static final String SEARCH_WIDGET = "console-history-search-backward";
+
+    private static final long[] NO_LINES = new long[0];
+
+    /**
+     * The number of entries added to the index at once, while holding the lock.
+     */
+    private static final int INDEX_CHUNK_SIZE = 1024;
+
+    private static final long FLUSH_TIMEOUT = 5;
+
+    // Commands for the writer thread (besides the records to append)
+    private static final Object INDEX = new Object();
+    private static final Object PURGE = new Object();
+    private static final Object CLOSE = new Object();
+
+    private final Path file;
+    private final int maxSize;
+
+    private @Nullable LineReader reader;
+
+    // The entries loaded from the file, decoded on demand
+    private @Nullable ByteBuffer mapped;
+    private long[] mappedLines = NO_LINES; // start << 32 | end
+    private int mappedCount;
+
+    // The entries added after loading, without the first trimmed ones
+    private final List<HistoryEntry> added = new ArrayList<>();
+    private int trimmed;
+
+    private int first; // Position of the oldest entry that is still visible
+    private int index;
+    private int generation;
+
+    private final TrigramIndex trigrams = new TrigramIndex();
+    private int indexed; // Entries before this position are in the trigram index
+
+    private final BlockingQueue<Object> journal = new LinkedBlockingQueue<>();
+    private @Nullable Thread writer;
+
+    // Only accessed by the writer thread
+    private int written; // Entries before this position were written to the file
+    private int fileRecords; // The number of records in the file
+    private int compactThreshold;
+
+    /**
+     * Creates a new history stored in the specified file, keeping up to
+     * {@link #DEFAULT_MAX_SIZE} entries.
+     *
+     * @param file The history file
+     */
+    public ConsoleHistory(Path file) {
+        this(file, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Creates a new history stored in the specified file.
+     *
+     * @param file The history file
+     * @param maxSize The maximum number of entries
+     */
+    public ConsoleHistory(Path file, int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be positive: " + maxSize);
+        }
+        this.file = file;
+        this.maxSize = maxSize;
+        this.compactThreshold = maxSize * 2;
+    }
+
+    /**
+     * Returns the file the history is stored in.
+     *
+     * @return The history file
+     */
+    public Path getFile() {
+        return this.file;
+    }
+
+    @Override
+    public void attach(LineReader reader) {
+        synchronized (this) {
+            if (this.reader == reader) {
+                return;
+            }
+            this.reader = reader;
+        }
+
+        try {
+            load();
+        } catch (IOException e) {
+            LOGGER.warn("Failed to load history from {}", this.file, e);
+        }
+    }
+
+    @Override
+    public void load() throws IOException {
+        // Entries that are still queued would be missing in the loaded file
+        save();
+        synchronized (this) {
+            loadFile();
+        }
+    }
+
+    private void loadFile() throws IOException {
+        clear();
+
+        if (Files.exists(this.file)) {
+            try (FileChannel channel = FileChannel.open(this.file, StandardOpenOption.READ)) {
+                long size = channel.size();
+                long offset = Math.max(0, size - Integer.MAX_VALUE);
+                ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, offset, size - offset);
+                this.mapped = mapped;
+                findLines(mapped, offset > 0);
+            }
+        }
+
+        this.first = Math.max(0, this.mappedCount - this.maxSize);
+        this.indexed = this.first;
+        this.index = this.mappedCount;
+
+        startWriter();
+        this.journal.add(INDEX);
+    }
+
+    private void findLines(ByteBuffer mapped, boolean skipFirst) {
+        long[] lines = new long[1024];
+        int count = 0;
+        int start = 0;
+        int limit = mapped.limit();
+        for (int i = 0; i <= limit; i++) {
+            if (i < limit && mapped.get(i) != '\n') {
+                continue;
+            }
+
+            int end = i;
+            if (end > start && mapped.get(end - 1) == '\r') {
+                end--;
+            }
+
+            if (skipFirst) {
+                // Partial line at the start of the mapped region
+                skipFirst = false;
+            } else if (end > start) {
+                if (count == lines.length) {
+                    lines = Arrays.copyOf(lines, count * 2);
+                }
+                lines[count++] = (long) start << 32 | end;
+            }
+            start = i + 1;
+        }
+
+        this.mappedLines = lines;
+        this.mappedCount = count;
+    }
+
+    private void clear() {
+        this.mapped = null;
+        this.mappedLines = NO_LINES;
+        this.mappedCount = 0;
+        this.added.clear();
+        this.trimmed = 0;
+        this.first = 0;
+        this.index = 0;
+        this.generation++;
+        this.trigrams.clear();
+        this.indexed = 0;
+    }
+
+    private synchronized void startWriter() {
+        if (this.writer == null) {
+            Thread thread = new Thread(this::runWriter, "Console History Writer");
+            thread.setDaemon(true);
+            this.writer = thread;
+            thread.start();
+        }
+    }
+
+    /**
+     * Waits until all entries were written to the history file.
+     */
+    @Override
+    public void save() {
+        synchronized (this) {
+            if (this.writer == null) {
+                return;
+            }
+        }
+
+        CountDownLatch latch = new CountDownLatch(1);
+        this.journal.add(latch);
+        try {
+            if (!latch.await(FLUSH_TIMEOUT, TimeUnit.SECONDS)) {
+                LOGGER.warn("Timed out while saving history to {}", this.file);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes all remaining entries to the history file and stops the
+     * background thread.
+     */
+    @Override
+    public void close() {
+        @Nullable Thread writer;
+        synchronized (this) {
+            writer = this.writer;
+            this.writer = null;
+            this.reader = null;
+        }
+
+        if (writer != null) {
+            this.journal.add(CLOSE);
+            try {
+                writer.join(TimeUnit.SECONDS.toMillis(FLUSH_TIMEOUT));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public void write(Path file, boolean incremental) throws IOException {
+        Files.write(file, encodeAll(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+    }
+
+    @Override
+    public void append(Path file, boolean incremental) throws IOException {
+        Files.write(file, encodeAll(), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private synchronized byte[] encodeAll() {
+        StringBuilder builder = new StringBuilder();
+        int count = count();
+        for (int position = this.first; position < count; position++) {
+            HistoryEntry entry = entry(position);
+            encode(builder, entry.time, entry.line);
+        }
+        return builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void read(Path file, boolean checkDuplicates) throws IOException {
+        List<String> records = Files.readAllLines(file, StandardCharsets.UTF_8);
+        synchronized (this) {
+            @Nullable Set<String> existing = null;
+            if (checkDuplicates) {
+                existing = new HashSet<>();
+                for (int position = this.first, count = count(); position < count; position++) {
+                    existing.add(entry(position).line);
+                }
+            }
+
+            for (String record : records) {
+                if (!record.isEmpty()) {
+                    HistoryEntry entry = parse(-1, record);
+                    if (existing == null || existing.add(entry.line)) {
+                        add(entry.time, entry.line);
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public synchronized void purge() {
+        clear();
+        this.journal.add(PURGE);
+    }
+
+    private int count() {
+        return this.mappedCount + this.trimmed + this.added.size();
+    }
+
+    @Override
+    public synchronized int size() {
+        return count() - this.first;
+    }
+
+    @Override
+    public synchronized int index() {
+        return this.index;
+    }
+
+    @Override
+    public synchronized int first() {
+        return this.first;
+    }
+
+    @Override
+    public synchronized int last() {
+        return count() - 1;
+    }
+
+    @Override
+    public synchronized String get(int index) {
+        if (index < this.first || index >= count()) {
+            throw new IndexOutOfBoundsException(String.valueOf(index));
+        }
+        return entry(index).line;
+    }
+
+    @Override
+    public synchronized void add(Instant time, String line) {
+        int position = count();
+        if (line.trim().isEmpty() || (position > this.first && entry(position - 1).line.equals(line))) {
+            // Ignore empty lines and duplicates
+            this.index = position;
+            return;
+        }
+
+        HistoryEntry entry = new HistoryEntry(position, time, line);
+        this.added.add(entry);
+        if (this.indexed == position) {
+            this.trigrams.add(position, line);
+            this.indexed++;
+        }
+
+        if (position + 1 - this.first > this.maxSize) {
+            this.first = position + 1 - this.maxSize;
+            trim();
+        }
+        this.index = position + 1;
+
+        if (isPersistable(entry)) {
+            this.journal.add(entry);
+        }
+    }
+
+    /**
+     * Removes entries that are no longer visible from memory. The added
+     * entries are only removed once there are at least {@link #maxSize} of
+     * them, so moving the remaining ones is amortized over the added entries.
+     * The positions of the remaining entries do not change.
+     */
+    private void trim() {
+        int invisible = this.first - this.mappedCount - this.trimmed;
+        if (invisible < this.maxSize && (this.mapped == null || this.first < this.mappedCount)) {
+            return;
+        }
+
+        // Entries before first do not need to be indexed anymore
+        this.indexed = Math.max(this.indexed, this.first);
+        this.generation++;
+
+        if (this.first >= this.mappedCount) {
+            // None of the loaded entries are visible anymore
+            this.mapped = null;
+            this.mappedLines = NO_LINES;
+        }
+
+        if (invisible >= this.maxSize) {
+            this.added.subList(0, invisible).clear();
+            this.trimmed += invisible;
+            this.trigrams.removeBefore(this.first);
+        }
+    }
+
+    /**
+     * Returns the number of entries kept in memory (i.e. the entries that
+     * were added and not trimmed yet). Only intended for tests.
+     *
+     * @return The number of added entries in memory
+     */
+    synchronized int retained() {
+        return this.added.size();
+    }
+
+    @Override
+    public synchronized ListIterator<Entry> iterator(int index) {
+        int first = this.first;
+        int count = count();
+        int generation = this.generation;
+        return new AbstractList<Entry>() {
+            @Override
+            public Entry get(int i) {
+                synchronized (ConsoleHistory.this) {
+                    if (ConsoleHistory.this.generation != generation) {
+                        throw new ConcurrentModificationException();
+                    }
+                    return entry(first + i);
+                }
+            }
+
+            @Override
+            public int size() {
+                return count - first;
+            }
+        }.listIterator(index - first);
+    }
+
+    @Override
+    public synchronized String current() {
+        return this.index < count() ? entry(this.index).line : "";
+    }
+
+    @Override
+    public synchronized boolean previous() {
+        if (this.index <= this.first) {
+            return false;
+        }
+        this.index--;
+        return true;
+    }
+
+    @Override
+    public synchronized boolean next() {
+        if (this.index >= count()) {
+            return false;
+        }
+        this.index++;
+        return true;
+    }
+
+    @Override
+    public synchronized boolean moveToFirst() {
+        if (size() > 0 && this.index != this.first) {
+            this.index = this.first;
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public synchronized boolean moveToLast() {
+        int last = count() - 1;
+        if (size() > 0 && this.index != last) {
+            this.index = last;
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public synchronized boolean moveTo(int index) {
+        if (index >= this.first && index < count() && index != this.index) {
+            this.index = index;
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public synchronized void moveToEnd() {
+        this.index = count();
+    }
+
+    @Override
+    public synchronized void resetIndex() {
+        this.index = Math.min(this.index, count());
+    }
+
+    /**
+     * Finds the most recent entry before the specified index that contains
+     * the query. Queries with at least three characters are looked up in
+     * the trigram index.
+     *
+     * @param query The text to search for (case-sensitive)
+     * @param before The (exclusive) index to start searching at, e.g.
+     *     {@code last() + 1} to search all entries
+     * @return The index of the entry, or {@code -1} if there is no match
+     */
+    public synchronized int searchBackwards(String query, int before) {
+        int position = Math.min(before, count()) - 1;
+
+        // Entries that are not indexed yet (the most recent ones)
+        int indexed = Math.max(this.indexed, this.first);
+        for (; position >= indexed; position--) {
+            if (entry(position).line.contains(query)) {
+                return position;
+            }
+        }
+
+        if (query.length() < 3) {
+            for (; position >= this.first; position--) {
+                if (entry(position).line.contains(query)) {
+                    return position;
+                }
+            }
+            return -1;
+        }
+
+        int bound = position + 1;
+        while ((position = this.trigrams.previousCandidate(query, bound)) >= this.first) {
+            if (entry(position).line.contains(query)) {
+                return position;
+            }
+            bound = position;
+        }
+        return -1;
+    }
+
+    /**
+     * Binds CTRL+R to a search in this history that uses the trigram index,
+     * replacing JLine's incremental search (which looks at every entry).
+     *
+     * <p>Pressing CTRL+R replaces the input line with the most recent entry
+     * containing the text that was entered. Pressing it again continues
+     * with older entries.</p>
+     *
+     * @param reader The line reader using this history
+     */
+    public void bindSearch(LineReader reader) {
+        reader.getWidgets().put(SEARCH_WIDGET, new SearchWidget(reader));
+        @Nullable KeyMap<Binding> keyMap = reader.getKeyMaps().get(LineReader.MAIN);
+        if (keyMap != null) {
+            keyMap.bind(new Reference(SEARCH_WIDGET), KeyMap.ctrl('R'));
+        }
+    }
+
+    private HistoryEntry entry(int position) {
+        if (position >= this.mappedCount) {
+            return this.added.get(position - this.mappedCount - this.trimmed);
+        }
+
+        ByteBuffer buf = this.mapped.duplicate();
+        long line = this.mappedLines[position];
+        buf.limit((int) line);
+        buf.position((int) (line >>> 32));
+        return parse(position, StandardCharsets.UTF_8.decode(buf).toString());
+    }
+
+    private void runWriter() {
+        List<Object> batch = new ArrayList<>();
+        StringBuilder records = new StringBuilder();
+        for (;;) {
+            try {
+                batch.add(this.journal.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            this.journal.drainTo(batch);
+
+            for (Object item : batch) {
+                if (item instanceof HistoryEntry) {
+                    HistoryEntry entry = (HistoryEntry) item;
+                    encode(records, entry.time, entry.line);
+                    this.written = entry.index() + 1;
+                    this.fileRecords++;
+                    continue;
+                }
+
+                writeRecords(records);
+                if (item == INDEX) {
+                    synchronized (this) {
+                        // The loaded entries are already in the file
+                        this.written = this.mappedCount;
+                        this.fileRecords = this.mappedCount;
+                    }
+                    buildIndex();
+                    compactIfNecessary();
+                } else if (item == PURGE) {
+                    this.written = 0;
+                    this.fileRecords = 0;
+                    try {
+                        Files.deleteIfExists(this.file);
+                    } catch (IOException e) {
+                        LOGGER.warn("Failed to delete history file {}", this.file, e);
+                    }
+                } else if (item instanceof CountDownLatch) {
+                    ((CountDownLatch) item).countDown();
+                } else if (item == CLOSE) {
+                    return;
+                }
+            }
+
+            writeRecords(records);
+            compactIfNecessary();
+            batch.clear();
+        }
+    }
+
+    private void writeRecords(StringBuilder records) {
+        if (records.length() == 0) {
+            return;
+        }
+
+        try {
+            @Nullable Path parent = this.file.getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+
+            Files.write(this.file, records.toString().getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            LOGGER.error("Failed to write history to {}", this.file, e);
+        } finally {
+            records.setLength(0);
+        }
+    }
+
+    private void buildIndex() {
+        for (;;) {
+            synchronized (this) {
+                int end = Math.min(count(), this.indexed + INDEX_CHUNK_SIZE);
+                for (; this.indexed < end; this.indexed++) {
+                    this.trigrams.add(this.indexed, entry(this.indexed).line);
+                }
+                if (this.indexed == count()) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void compactIfNecessary() {
+        if (this.fileRecords <= this.compactThreshold) {
+            return;
+        }
+
+        try {
+            if (compact()) {
+                this.compactThreshold = this.maxSize * 2;
+                return;
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Failed to compact history file {}", this.file, e);
+        }
+
+        // Try again once more entries were added
+        this.compactThreshold = this.fileRecords + this.maxSize;
+    }
+
+    /**
+     * Rewrites the history file with only the visible entries. This runs on
+     * the writer thread after all pending records were written, so the file
+     * contains exactly the entries before {@link #written}. Entries added in
+     * the meantime are still in the journal and appended to the new file.
+     *
+     * @return {@code true} if the file was replaced
+     */
+    private boolean compact() throws IOException {
+        @Nullable ByteBuffer mapped;
+        long[] lines;
+        int first;
+        int mappedEnd;
+        List<HistoryEntry> entries;
+        synchronized (this) {
+            first = this.first;
+            int end = Math.min(this.written, count());
+            mapped = this.mapped != null ? this.mapped.duplicate() : null;
+            lines = this.mappedLines;
+            mappedEnd = Math.min(end, this.mappedCount);
+            int base = this.mappedCount + this.trimmed;
+            int from = Math.max(first, base);
+            entries = new ArrayList<>(this.added.subList(from - base, Math.max(end, from) - base));
+
+            // Entries before first are no longer visible
+            this.trigrams.removeBefore(first);
+        }
+
+        int records = 0;
+        Path temp = this.file.resolveSibling(this.file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            if (mapped != null) {
+                // Copy the loaded entries without decoding them
+                ByteBuffer newLine = ByteBuffer.allocate(1).put(0, (byte) '\n');
+                for (int position = first; position < mappedEnd; position++) {
+                    long line = lines[position];
+                    mapped.limit((int) line);
+                    mapped.position((int) (line >>> 32));
+                    while (mapped.hasRemaining()) {
+                        channel.write(mapped);
+                    }
+                    newLine.clear();
+                    channel.write(newLine);
+                    records++;
+                }
+            }
+
+            StringBuilder builder = new StringBuilder();
+            for (HistoryEntry entry : entries) {
+                if (isPersistable(entry)) {
+                    encode(builder, entry.time, entry.line);
+                    records++;
+                }
+            }
+            ByteBuffer encoded = StandardCharsets.UTF_8.encode(CharBuffer.wrap(builder));
+            while (encoded.hasRemaining()) {
+                channel.write(encoded);
+            }
+        }
+
+        try {
+            Files.move(temp, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // The file might be still mapped (e.g. on Windows), try again later
+            LOGGER.debug("Failed to replace history file {}", this.file, e);
+            Files.deleteIfExists(temp);
+            return false;
+        }
+
+        this.fileRecords = records;
+        return true;
+    }
+
+    private static void encode(StringBuilder builder, Instant time, String line) {
+        builder.append(time.toEpochMilli()).append(':');
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            switch (c) {
+                case '\n':
+                    builder.append("\\n");
+                    break;
+                case '\r':
+                    builder.append("\\r");
+                    break;
+                case '\\':
+                    builder.append("\\\\");
+                    break;
+                default:
+                    builder.append(c);
+                    break;
+            }
+        }
+        builder.append('\n');
+    }
+
+    private static HistoryEntry parse(int position, String record) {
+        int separator = record.indexOf(':');
+        Instant time = Instant.EPOCH;
+        String line = record;
+        if (separator > 0) {
+            try {
+                time = Instant.ofEpochMilli(Long.parseLong(record.substring(0, separator)));
+                line = record.substring(separator + 1);
+            } catch (NumberFormatException ignored) {
+                // Not written by us, keep the whole line
+            }
+        }
+
+        if (line.indexOf('\\') >= 0) {
+            StringBuilder builder = new StringBuilder(line.length());
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (c == '\\' && i + 1 < line.length()) {
+                    c = line.charAt(++i);
+                    if (c == 'n') {
+                        c = '\n';
+                    } else if (c == 'r') {
+                        c = '\r';
+                    }
+                }
+                builder.append(c);
+            }
+            line = builder.toString();
+        }
+
+        return new HistoryEntry(position, time, line);
+    }
+
+    private static final class HistoryEntry implements Entry {
+
+        private final int index;
+        final Instant time;
+        final String line;
+
+        HistoryEntry(int index, Instant time, String line) {
+            this.index = index;
+            this.time = time;
+            this.line = line;
+        }
+
+        @Override
+        public int index() {
+            return this.index;
+        }
+
+        @Override
+        public Instant time() {
+            return this.time;
+        }
+
+        @Override
+        public String line() {
+            return this.line;
+        }
+
+        @Override
+        public String toString() {
+            return this.index + ": " + this.line;
+        }
+
+    }
+
+    private final class SearchWidget implements Widget {
+
+        private final LineReader reader;
+
+        private String query = "";
+        private @Nullable String result;
+        private int position;
+
+        SearchWidget(LineReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public boolean apply() {
+            Buffer buffer = this.reader.getBuffer();
+            String text = buffer.toString();
+
+            int before;
+            if (text.equals(this.result)) {
+                // Pressed again, continue with older entries
+                before = this.position;
+            } else {
+                this.query = text;
+                before = Integer.MAX_VALUE;
+            }
+
+            int found = searchBackwards(this.query, before);
+            if (found < 0) {
+                return false;
+            }
+
+            String line = get(found);
+            this.position = found;
+            this.result = line;
+            moveTo(found);
+            buffer.clear();
+            buffer.write(line);
+            return true;
+        }
+
+    }
+
+}
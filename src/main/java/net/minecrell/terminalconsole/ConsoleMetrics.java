@@ -0,0 +1,324 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Minecrell <https://github.com/Minecrell>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.minecrell.terminalconsole;
+
+import org.apache.logging.log4j.status.StatusLogger;
+import org.apache.logging.log4j.util.PropertiesUtil;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Counters and latency histograms for the console output of
+ * {@link TerminalConsoleAppender}.
+ *
+ * <p>All values are recorded using striped {@link LongAdder}s, so threads
+ * updating them concurrently do not contend. Latencies are recorded in a
+ * histogram with power-of-two buckets, so percentiles are approximate (they
+ * report the upper bound of the bucket).</p>
+ *
+ * @see TerminalConsoleAppender#getMetrics()
+ */
+public final class ConsoleMetrics implements ConsoleMetricsMXBean {
+
+    /**
+     * System property that enables registering the metrics as a JMX MBean
+     * named {@code net.minecrell.terminalconsole:type=ConsoleMetrics}.
+     */
+    public static final String JMX_PROPERTY = TerminalConsoleAppender.PROPERTY_PREFIX + ".jmx";
+
+    static final ConsoleMetrics INSTANCE = new ConsoleMetrics();
+
+    private static boolean registered;
+
+    final LongAdder eventsAppended = new LongAdder();
+    final LongAdder charactersWritten = new LongAdder();
+    final LongAdder bytesWritten = new LongAdder();
+    final LongAdder redraws = new LongAdder();
+    final LongAdder droppedLines = new LongAdder();
+    final LongAdder suppressedLines = new LongAdder();
+    final LongAdder coalescedLines = new LongAdder();
+
+    final Histogram printAboveTime = new Histogram();
+    final Histogram flushTime = new Histogram();
+    final Histogram lockWaitTime = new Histogram();
+
+    private ConsoleMetrics() {
+    }
+
+    /**
+     * Registers the JMX MBean if enabled using {@link #JMX_PROPERTY}.
+     */
+    static synchronized void registerIfEnabled() {
+        if (registered || !PropertiesUtil.getProperties().getBooleanProperty(JMX_PROPERTY)) {
+            return;
+        }
+
+        registered = true;
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE,
+                    new ObjectName("net.minecrell.terminalconsole:type=ConsoleMetrics"));
+        } catch (InstanceAlreadyExistsException ignored) {
+            // Registered by another copy of the library
+        } catch (JMException | RuntimeException e) {
+            StatusLogger.getLogger().warn("Failed to register console metrics MBean", e);
+        }
+    }
+
+    @Override
+    public long getEventsAppended() {
+        return this.eventsAppended.sum();
+    }
+
+    @Override
+    public long getCharactersWritten() {
+        return this.charactersWritten.sum();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return this.bytesWritten.sum();
+    }
+
+    @Override
+    public long getRedraws() {
+        return this.redraws.sum();
+    }
+
+    @Override
+    public long getDroppedLines() {
+        return this.droppedLines.sum();
+    }
+
+    @Override
+    public long getSuppressedLines() {
+        return this.suppressedLines.sum();
+    }
+
+    @Override
+    public long getCoalescedLines() {
+        return this.coalescedLines.sum();
+    }
+
+    @Override
+    public int getAsyncQueueDepth() {
+        return AsyncConsoleWriter.getTotalQueueDepth();
+    }
+
+    @Override
+    public Latency getPrintAboveTime() {
+        return this.printAboveTime.snapshot();
+    }
+
+    @Override
+    public Latency getFlushTime() {
+        return this.flushTime.snapshot();
+    }
+
+    @Override
+    public Latency getLockWaitTime() {
+        return this.lockWaitTime.snapshot();
+    }
+
+    @Override
+    public String toString() {
+        return "ConsoleMetrics{eventsAppended=" + getEventsAppended()
+                + ", charactersWritten=" + getCharactersWritten()
+                + ", bytesWritten=" + getBytesWritten()
+                + ", redraws=" + getRedraws()
+                + ", droppedLines=" + getDroppedLines()
+                + ", suppressedLines=" + getSuppressedLines()
+                + ", coalescedLines=" + getCoalescedLines()
+                + ", asyncQueueDepth=" + getAsyncQueueDepth()
+                + ", printAboveTime=" + getPrintAboveTime()
+                + ", flushTime=" + getFlushTime()
+                + ", lockWaitTime=" + getLockWaitTime() + '}';
+    }
+
+    /**
+     * Records latencies in power-of-two buckets.
+     */
+    static final class Histogram {
+
+        // Bucket i contains the values in [2^(i-1), 2^i), bucket 0 contains 0
+        private final LongAdder[] buckets = new LongAdder[Long.SIZE + 1];
+        private final LongAdder total = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        Histogram() {
+            for (int i = 0; i < this.buckets.length; i++) {
+                this.buckets[i] = new LongAdder();
+            }
+        }
+
+        void record(long nanos) {
+            if (nanos < 0) {
+                nanos = 0;
+            }
+            this.buckets[Long.SIZE - Long.numberOfLeadingZeros(nanos)].increment();
+            this.total.add(nanos);
+            this.max.accumulate(nanos);
+        }
+
+        /**
+         * Records the time elapsed since the specified start time.
+         *
+         * @param startNanos The start time from {@link System#nanoTime()}
+         */
+        void recordSince(long startNanos) {
+            record(System.nanoTime() - startNanos);
+        }
+
+        Latency snapshot() {
+            long[] counts = new long[this.buckets.length];
+            long count = 0;
+            for (int i = 0; i < counts.length; i++) {
+                count += counts[i] = this.buckets[i].sum();
+            }
+
+            long max = this.max.get();
+            return new Latency(count, this.total.sum(), max,
+                    percentile(counts, count, max, 0.5),
+                    percentile(counts, count, max, 0.9),
+                    percentile(counts, count, max, 0.99));
+        }
+
+        private static long percentile(long[] counts, long count, long max, double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+
+            long rank = (long) Math.ceil(count * percentile);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    long upperBound = i == 0 ? 0 : i >= Long.SIZE - 1 ? Long.MAX_VALUE : (1L << i) - 1;
+                    return Math.min(upperBound, max);
+                }
+            }
+            return max;
+        }
+
+    }
+
+    /**
+     * A snapshot of a latency distribution, in nanoseconds.
+     */
+    public static final class Latency {
+
+        private final long count;
+        private final long totalNanos;
+        private final long maxNanos;
+        private final long p50Nanos;
+        private final long p90Nanos;
+        private final long p99Nanos;
+
+        Latency(long count, long totalNanos, long maxNanos, long p50Nanos, long p90Nanos, long p99Nanos) {
+            this.count = count;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+            this.p50Nanos = p50Nanos;
+            this.p90Nanos = p90Nanos;
+            this.p99Nanos = p99Nanos;
+        }
+
+        /**
+         * Returns the number of recorded values.
+         *
+         * @return The number of recorded values
+         */
+        public long getCount() {
+            return this.count;
+        }
+
+        /**
+         * Returns the sum of all recorded values.
+         *
+         * @return The total time in nanoseconds
+         */
+        public long getTotalNanos() {
+            return this.totalNanos;
+        }
+
+        /**
+         * Returns the average of all recorded values.
+         *
+         * @return The mean time in nanoseconds
+         */
+        public long getMeanNanos() {
+            return this.count > 0 ? this.totalNanos / this.count : 0;
+        }
+
+        /**
+         * Returns the largest recorded value.
+         *
+         * @return The maximum time in nanoseconds
+         */
+        public long getMaxNanos() {
+            return this.maxNanos;
+        }
+
+        /**
+         * Returns the (approximate) median of the recorded values.
+         *
+         * @return The 50th percentile in nanoseconds
+         */
+        public long getP50Nanos() {
+            return this.p50Nanos;
+        }
+
+        /**
+         * Returns the (approximate) 90th percentile of the recorded values.
+         *
+         * @return The 90th percentile in nanoseconds
+         */
+        public long getP90Nanos() {
+            return this.p90Nanos;
+        }
+
+        /**
+         * Returns the (approximate) 99th percentile of the recorded values.
+         *
+         * @return The 99th percentile in nanoseconds
+         */
+        public long getP99Nanos() {
+            return this.p99Nanos;
+        }
+
+        @Override
+        public String toString() {
+            return "Latency{count=" + this.count + ", mean=" + getMeanNanos() + "ns, p50=" + this.p50Nanos
+                    + "ns, p90=" + this.p90Nanos + "ns, p99=" + this.p99Nanos + "ns, max=" + this.maxNanos + "ns}";
+        }
+
+    }
+
+}
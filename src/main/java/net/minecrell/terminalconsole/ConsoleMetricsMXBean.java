@@ -0,0 +1,127 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Minecrell <https://github.com/Minecrell>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.minecrell.terminalconsole;
+
+/**
+ * The JMX interface of {@link ConsoleMetrics}.
+ *
+ * <p>It is registered as
+ * {@code net.minecrell.terminalconsole:type=ConsoleMetrics} if the
+ * {@link ConsoleMetrics#JMX_PROPERTY} system property is set to
+ * {@code true}.</p>
+ */
+public interface ConsoleMetricsMXBean {
+
+    /**
+     * Returns the number of log events passed to the appender.
+     *
+     * @return The number of appended events
+     */
+    long getEventsAppended();
+
+    /**
+     * Returns the number of characters printed to the console as text.
+     * Events encoded directly into the output stream are not included, see
+     * {@link #getBytesWritten()}.
+     *
+     * @return The number of printed characters
+     */
+    long getCharactersWritten();
+
+    /**
+     * Returns the number of bytes encoded directly into the console output
+     * (without creating an intermediate string).
+     *
+     * <p>This only covers the direct encoding, which is skipped if a
+     * {@code LineReader}, the remote console, the scrollback or asynchronous
+     * output is used. In that case, the output is only counted in
+     * {@link #getCharactersWritten()} and this remains 0, so it is not a
+     * measure of the total console throughput.</p>
+     *
+     * @return The number of directly encoded bytes
+     */
+    long getBytesWritten();
+
+    /**
+     * Returns how often the input line of the {@code LineReader} was
+     * redrawn because output was printed above it.
+     *
+     * @return The number of redraws
+     */
+    long getRedraws();
+
+    /**
+     * Returns the number of messages dropped because the queue for
+     * asynchronous output was full.
+     *
+     * @return The number of dropped messages
+     */
+    long getDroppedLines();
+
+    /**
+     * Returns the number of messages suppressed by the rate limit.
+     *
+     * @return The number of suppressed messages
+     */
+    long getSuppressedLines();
+
+    /**
+     * Returns the number of duplicate messages that were held back.
+     *
+     * @return The number of duplicate messages
+     */
+    long getCoalescedLines();
+
+    /**
+     * Returns the number of messages currently queued for asynchronous output.
+     *
+     * @return The current queue depth
+     */
+    int getAsyncQueueDepth();
+
+    /**
+     * Returns the time spent printing above the input line of the
+     * {@code LineReader}, including the redraw.
+     *
+     * @return The latency distribution
+     */
+    ConsoleMetrics.Latency getPrintAboveTime();
+
+    /**
+     * Returns the time spent flushing the console output.
+     *
+     * @return The latency distribution
+     */
+    ConsoleMetrics.Latency getFlushTime();
+
+    /**
+     * Returns how long threads waited to print, until they either acquired
+     * the output lock or their text was printed by another thread.
+     *
+     * @return The latency distribution
+     */
+    ConsoleMetrics.Latency getLockWaitTime();
+
+}
@@ -0,0 +1,212 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Minecrell <https://github.com/Minecrell>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.minecrell.terminalconsole;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.LogEvent;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Limits the number of messages per second that are printed to the console.
+ *
+ * <p>Each level or logger (depending on the {@link TerminalConsoleAppender.RateLimitScope})
+ * has its own limit, implemented using the generic cell rate algorithm
+ * (a lock-free variant of a token bucket). Messages over the limit are only
+ * counted. The number of suppressed messages is printed periodically and
+ * when the appender is stopped.</p>
+ */
+final class ConsoleRateLimiter {
+
+    /**
+     * The maximum number of loggers with a separate limit. All other loggers
+     * share a single limit.
+     */
+    static final int MAX_BUCKETS = 1024;
+
+    private final String name;
+    private final TerminalConsoleAppender.RateLimitScope scope;
+    private final Level level;
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final long summaryIntervalMillis;
+
+    private final ConcurrentMap<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private final Bucket otherLoggers;
+
+    // Guarded by this
+    private @Nullable ScheduledExecutorService scheduler;
+    private @Nullable Consumer<String> output;
+
+    ConsoleRateLimiter(String name, TerminalConsoleAppender.RateLimitScope scope, Level level,
+            int rate, int burst, long summaryIntervalMillis) {
+        this.name = name;
+        this.scope = scope;
+        this.level = level;
+        this.intervalNanos = Math.max(1, TimeUnit.SECONDS.toNanos(1) / rate);
+        this.toleranceNanos = this.intervalNanos * Math.max(1, burst > 0 ? burst : rate);
+        this.summaryIntervalMillis = summaryIntervalMillis;
+        this.otherLoggers = new Bucket("other loggers", System.nanoTime());
+    }
+
+    /**
+     * Checks if the log event may be printed to the console.
+     *
+     * @param event The log event
+     * @return {@code true} if the event is within the limit
+     */
+    boolean tryAcquire(LogEvent event) {
+        return tryAcquire(event.getLevel(), event.getLoggerName(), System.nanoTime());
+    }
+
+    /**
+     * Checks if a message may be printed to the console.
+     *
+     * @param level The level of the message
+     * @param loggerName The name of the logger
+     * @param now The current time in nanoseconds
+     * @return {@code true} if the message is within the limit
+     */
+    boolean tryAcquire(Level level, @Nullable String loggerName, long now) {
+        if (level.isMoreSpecificThan(this.level)) {
+            return true;
+        }
+
+        Bucket bucket = getBucket(level, loggerName, now);
+        for (;;) {
+            long tat = bucket.get();
+            long newTat = (tat - now < 0 ? now : tat) + this.intervalNanos;
+            if (newTat - now > this.toleranceNanos) {
+                bucket.suppressed.incrementAndGet();
+                ConsoleMetrics.INSTANCE.suppressedLines.increment();
+                return false;
+            }
+            if (bucket.compareAndSet(tat, newTat)) {
+                return true;
+            }
+        }
+    }
+
+    private Bucket getBucket(Level level, @Nullable String loggerName, long now) {
+        String key;
+        if (this.scope == TerminalConsoleAppender.RateLimitScope.LEVEL) {
+            key = level.name();
+        } else {
+            key = loggerName != null ? loggerName : "";
+        }
+
+        Bucket bucket = this.buckets.get(key);
+        if (bucket == null) {
+            if (this.buckets.size() >= MAX_BUCKETS) {
+                return this.otherLoggers;
+            }
+
+            String description = this.scope == TerminalConsoleAppender.RateLimitScope.LEVEL
+                    ? "level " + key : key.isEmpty() ? "root logger" : key;
+            bucket = new Bucket(description, now);
+            Bucket existing = this.buckets.putIfAbsent(key, bucket);
+            if (existing != null) {
+                bucket = existing;
+            }
+        }
+        return bucket;
+    }
+
+    /**
+     * Starts printing the number of suppressed messages periodically.
+     *
+     * @param output The consumer for the summary lines
+     */
+    synchronized void start(Consumer<String> output) {
+        this.output = output;
+        if (this.scheduler == null && this.summaryIntervalMillis > 0) {
+            ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "TerminalConsoleAppender-" + this.name + "-RateLimiter");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(this::printSummary,
+                    this.summaryIntervalMillis, this.summaryIntervalMillis, TimeUnit.MILLISECONDS);
+            this.scheduler = scheduler;
+        }
+    }
+
+    /**
+     * Stops the periodic summary and prints the remaining suppressed messages.
+     */
+    synchronized void stop() {
+        if (this.scheduler != null) {
+            this.scheduler.shutdownNow();
+            this.scheduler = null;
+        }
+        printSummary();
+        this.output = null;
+    }
+
+    synchronized void printSummary() {
+        Consumer<String> output = this.output;
+        if (output == null) {
+            return;
+        }
+
+        for (Bucket bucket : this.buckets.values()) {
+            printSummary(output, bucket);
+        }
+        printSummary(output, this.otherLoggers);
+    }
+
+    private static void printSummary(Consumer<String> output, Bucket bucket) {
+        long suppressed = bucket.suppressed.getAndSet(0);
+        if (suppressed > 0) {
+            output.accept("[console] " + suppressed + (suppressed == 1 ? " line" : " lines")
+                    + " suppressed from " + bucket.description + System.lineSeparator());
+        }
+    }
+
+    /**
+     * The theoretical arrival time of the next message (in nanoseconds),
+     * together with the number of suppressed messages.
+     */
+    @SuppressWarnings("serial")
+    private static final class Bucket extends AtomicLong {
+
+        final String description;
+        final AtomicLong suppressed = new AtomicLong();
+
+        Bucket(String description, long now) {
+            super(now);
+            this.description = description;
+        }
+
+    }
+
+}
@@ -0,0 +1,192 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Minecrell <https://github.com/Minecrell>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.minecrell.terminalconsole;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A ring buffer with the most recent console output, encoded as UTF-8.
+ *
+ * <p>The buffer is bounded by the number of lines and by the number of
+ * bytes. Both limits are allocated once when the buffer is created, so
+ * appending text does not allocate any objects. The oldest lines are
+ * discarded to make space for new ones.</p>
+ *
+ * <p>This class is not thread-safe, it is guarded by the output lock of
+ * {@link TerminalConsoleAppender}.</p>
+ */
+final class ConsoleScrollback {
+
+    private final ByteBuffer buffer;
+    private final int capacity;
+
+    /**
+     * The positions after the end of each complete line, starting at
+     * {@link #firstLine}.
+     */
+    private final long[] lineEnds;
+    private int firstLine;
+    private int lineCount;
+
+    // Absolute positions, the buffer contains the bytes from head to tail
+    private long head;
+    private long tail;
+    private int writeIndex;
+
+    ConsoleScrollback(int maxLines, int maxBytes, boolean direct) {
+        this.capacity = Math.max(1, maxBytes);
+        this.buffer = direct ? ByteBuffer.allocateDirect(this.capacity) : ByteBuffer.allocate(this.capacity);
+        this.lineEnds = new long[Math.max(1, maxLines)];
+    }
+
+    int getMaxLines() {
+        return this.lineEnds.length;
+    }
+
+    int getMaxBytes() {
+        return this.capacity;
+    }
+
+    boolean isDirect() {
+        return this.buffer.isDirect();
+    }
+
+    /**
+     * Appends the text to the buffer, discarding the oldest lines if necessary.
+     *
+     * @param text The text to append
+     */
+    void append(CharSequence text) {
+        for (int i = 0, length = text.length(); i < length; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                put(c);
+                if (c == '\n') {
+                    endLine();
+                }
+            } else if (c < 0x800) {
+                put(0xC0 | c >> 6);
+                put(0x80 | c & 0x3F);
+            } else if (Character.isSurrogate(c)) {
+                char low;
+                if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(low = text.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, low);
+                    put(0xF0 | codePoint >> 18);
+                    put(0x80 | codePoint >> 12 & 0x3F);
+                    put(0x80 | codePoint >> 6 & 0x3F);
+                    put(0x80 | codePoint & 0x3F);
+                    i++;
+                } else {
+                    // Unpaired surrogate
+                    put('?');
+                }
+            } else {
+                put(0xE0 | c >> 12);
+                put(0x80 | c >> 6 & 0x3F);
+                put(0x80 | c & 0x3F);
+            }
+        }
+    }
+
+    private void put(int b) {
+        if (this.tail - this.head == this.capacity) {
+            discard();
+        }
+
+        this.buffer.put(this.writeIndex, (byte) b);
+        if (++this.writeIndex == this.capacity) {
+            this.writeIndex = 0;
+        }
+        this.tail++;
+    }
+
+    private void endLine() {
+        if (this.lineCount == this.lineEnds.length) {
+            discardLine();
+        }
+
+        int index = this.firstLine + this.lineCount;
+        if (index >= this.lineEnds.length) {
+            index -= this.lineEnds.length;
+        }
+        this.lineEnds[index] = this.tail;
+        this.lineCount++;
+    }
+
+    private void discardLine() {
+        this.head = this.lineEnds[this.firstLine];
+        if (++this.firstLine == this.lineEnds.length) {
+            this.firstLine = 0;
+        }
+        this.lineCount--;
+    }
+
+    private void discard() {
+        if (this.lineCount > 0) {
+            discardLine();
+        } else {
+            // A single line that does not fit into the buffer, discard its
+            // beginning without splitting a multi-byte character
+            do {
+                this.head++;
+            } while (this.head < this.tail && (byteAt(this.head) & 0xC0) == 0x80);
+        }
+    }
+
+    private byte byteAt(long position) {
+        return this.buffer.get((int) (position % this.capacity));
+    }
+
+    /**
+     * Returns the number of bytes in the buffer.
+     *
+     * @return The number of bytes
+     */
+    int size() {
+        return (int) (this.tail - this.head);
+    }
+
+    /**
+     * Copies the content of the buffer into the array.
+     *
+     * @param dst The array to copy to, must be at least {@link #size()} bytes long
+     * @return The number of copied bytes
+     */
+    int copyTo(byte[] dst) {
+        int size = size();
+        int start = (int) (this.head % this.capacity);
+        int first = Math.min(size, this.capacity - start);
+
+        ByteBuffer src = this.buffer.duplicate();
+        src.position(start);
+        src.get(dst, 0, first);
+        if (first < size) {
+            src.position(0);
+            src.get(dst, first, size - first);
+        }
+        return size;
+    }
+
+}
@@ -0,0 +1,532 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Minecrell <https://github.com/Minecrell>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.minecrell.terminalconsole;
+
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.status.StatusLogger;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * A server that allows attaching to the console remotely, using a TCP port
+ * or a Unix domain socket (Java 16+). All output printed by
+ * {@link TerminalConsoleAppender} is sent to every connected client, and
+ * lines received from the clients are passed to an input handler (e.g.
+ * {@link SimpleTerminalConsole#startServer(SocketAddress)}).
+ *
+ * <p>All connections are handled by a single thread using a NIO
+ * {@link Selector}. Each client has its own bounded output buffer. Clients
+ * that cannot keep up with the output are disconnected once their buffer
+ * is full, so a slow client never blocks logging.</p>
+ *
+ * <p><b>Note:</b> The server does not implement any authentication. It
+ * should be only bound to the loopback interface or a Unix domain socket
+ * with appropriate file permissions.</p>
+ */
+public final class ConsoleServer implements Closeable {
+
+    private static final Logger LOGGER = StatusLogger.getLogger();
+
+    /**
+     * The default maximum number of bytes buffered for each client.
+     */
+    public static final int DEFAULT_MAX_CLIENT_BUFFER = 1024 * 1024;
+
+    /**
+     * The maximum length of an input line (in bytes). Longer lines are
+     * discarded.
+     */
+    private static final int MAX_LINE_LENGTH = 8192;
+
+    /**
+     * The maximum number of buffers written at once to a client.
+     */
+    private static final int MAX_GATHER = 64;
+
+    /**
+     * Creates the address of a Unix domain socket. Requires Java 16 or newer.
+     *
+     * @param path The path of the socket file
+     * @return The socket address
+     * @throws UnsupportedOperationException If Unix domain sockets are not supported
+     */
+    public static SocketAddress unixDomainSocketAddress(Path path) {
+        try {
+            return (SocketAddress) Class.forName("java.net.UnixDomainSocketAddress")
+                    .getMethod("of", Path.class).invoke(null, path);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("Unix domain sockets require Java 16 or newer", e);
+        }
+    }
+
+    /**
+     * Opens a new {@link ConsoleServer} on the specified address, using
+     * {@link #DEFAULT_MAX_CLIENT_BUFFER} for each client.
+     *
+     * @param address The address to bind to, either an {@link InetSocketAddress}
+     *     or the result of {@link #unixDomainSocketAddress(Path)}
+     * @param inputHandler The handler for lines received from clients
+     * @return The new server
+     * @throws IOException If an I/O error occurs
+     */
+    public static ConsoleServer open(SocketAddress address, Consumer<String> inputHandler) throws IOException {
+        return open(address, inputHandler, DEFAULT_MAX_CLIENT_BUFFER);
+    }
+
+    /**
+     * Opens a new {@link ConsoleServer} on the specified address.
+     *
+     * @param address The address to bind to, either an {@link InetSocketAddress}
+     *     or the result of {@link #unixDomainSocketAddress(Path)}
+     * @param inputHandler The handler for lines received from clients
+     * @param maxClientBuffer The maximum number of bytes buffered for each
+     *     client before it is disconnected
+     * @return The new server
+     * @throws IOException If an I/O error occurs
+     */
+    public static ConsoleServer open(SocketAddress address, Consumer<String> inputHandler, int maxClientBuffer)
+            throws IOException {
+        ServerSocketChannel channel;
+        @Nullable Path socketPath = null;
+        if (address instanceof InetSocketAddress) {
+            channel = ServerSocketChannel.open();
+        } else {
+            channel = openUnixDomainChannel();
+            socketPath = getSocketPath(address);
+        }
+
+        Selector selector = null;
+        try {
+            channel.bind(address);
+            channel.configureBlocking(false);
+            selector = Selector.open();
+            channel.register(selector, SelectionKey.OP_ACCEPT);
+            ConsoleServer server = new ConsoleServer(channel, selector, socketPath, inputHandler, maxClientBuffer);
+            server.start();
+            return server;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            if (selector != null) {
+                selector.close();
+            }
+            throw e;
+        }
+    }
+
+    private static @Nullable Path getSocketPath(SocketAddress address) {
+        try {
+            return (Path) address.getClass().getMethod("getPath").invoke(address);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static ServerSocketChannel openUnixDomainChannel() throws IOException {
+        try {
+            ProtocolFamily unix = StandardProtocolFamily.valueOf("UNIX");
+            return (ServerSocketChannel) ServerSocketChannel.class.getMethod("open", ProtocolFamily.class)
+                    .invoke(null, unix);
+        } catch (IllegalArgumentException | ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("Unix domain sockets require Java 16 or newer", e);
+        }
+    }
+
+    private final ServerSocketChannel channel;
+    private final Selector selector;
+    private final @Nullable Path socketPath;
+    private final Consumer<String> inputHandler;
+    private final int maxClientBuffer;
+
+    private final List<Client> clients = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean wakeupPending = new AtomicBoolean();
+    private final ExecutorService inputExecutor;
+    private final Thread thread;
+    private volatile boolean closed;
+
+    // Only used by the selector thread
+    private final ByteBuffer[] gather = new ByteBuffer[MAX_GATHER];
+
+    private ConsoleServer(ServerSocketChannel channel, Selector selector, @Nullable Path socketPath,
+            Consumer<String> inputHandler, int maxClientBuffer) {
+        this.channel = channel;
+        this.selector = selector;
+        this.socketPath = socketPath;
+        this.inputHandler = inputHandler;
+        this.maxClientBuffer = maxClientBuffer;
+
+        // Input is handled in a separate thread, so slow commands do not delay the output
+        this.inputExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "TerminalConsoleAppender-ServerInput");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.thread = new Thread(this::run, "TerminalConsoleAppender-Server");
+        this.thread.setDaemon(true);
+    }
+
+    private void start() {
+        this.thread.start();
+        TerminalConsoleAppender.addServer(this);
+    }
+
+    /**
+     * Returns the address the server is bound to.
+     *
+     * @return The local address
+     * @throws IOException If an I/O error occurs
+     */
+    public SocketAddress getLocalAddress() throws IOException {
+        return this.channel.getLocalAddress();
+    }
+
+    /**
+     * Returns the number of currently connected clients.
+     *
+     * @return The number of clients
+     */
+    public int getClientCount() {
+        return this.clients.size();
+    }
+
+    /**
+     * Returns whether the server was closed.
+     *
+     * @return True if the server was closed
+     */
+    public boolean isClosed() {
+        return this.closed;
+    }
+
+    /**
+     * Queues the output for all connected clients.
+     *
+     * @param text The text printed to the console
+     */
+    void broadcast(String text) {
+        if (this.clients.isEmpty()) {
+            return;
+        }
+
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        for (Client client : this.clients) {
+            client.send(bytes);
+        }
+
+        if (this.wakeupPending.compareAndSet(false, true)) {
+            this.selector.wakeup();
+        }
+    }
+
+    private void run() {
+        try {
+            while (!this.closed) {
+                this.selector.select();
+                this.wakeupPending.set(false);
+
+                Iterator<SelectionKey> itr = this.selector.selectedKeys().iterator();
+                while (itr.hasNext()) {
+                    SelectionKey key = itr.next();
+                    itr.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+
+                    Client client = (Client) key.attachment();
+                    try {
+                        if (key.isReadable()) {
+                            read(client);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            write(client);
+                        }
+                    } catch (IOException e) {
+                        LOGGER.debug("Console client disconnected", e);
+                        disconnect(client);
+                    }
+                }
+
+                for (Client client : this.clients) {
+                    if (client.lagging) {
+                        LOGGER.warn("Disconnecting console client {}: Too much output buffered", client.address);
+                        disconnect(client);
+                    } else if (!client.output.isEmpty()) {
+                        try {
+                            write(client);
+                        } catch (IOException e) {
+                            LOGGER.debug("Console client disconnected", e);
+                            disconnect(client);
+                        }
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if (!this.closed) {
+                LOGGER.error("Console server failed", e);
+            }
+        } finally {
+            for (Client client : this.clients) {
+                disconnect(client);
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = this.channel.accept();
+        if (channel == null) {
+            return;
+        }
+
+        try {
+            channel.configureBlocking(false);
+            if (this.socketPath == null) {
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            }
+
+            SelectionKey key = channel.register(this.selector, SelectionKey.OP_READ);
+            Client client = new Client(channel, key, String.valueOf(channel.getRemoteAddress()));
+            key.attach(client);
+
+            // Send the recent output first, without missing any output printed concurrently
+            TerminalConsoleAppender.lockOutput();
+            try {
+                client.replay(TerminalConsoleAppender.getScrollback());
+                this.clients.add(client);
+            } finally {
+                TerminalConsoleAppender.unlockOutput();
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Failed to accept console client", e);
+            channel.close();
+        }
+    }
+
+    private void read(Client client) throws IOException {
+        ByteBuffer input = client.input;
+        if (client.channel.read(input) < 0) {
+            disconnect(client);
+            return;
+        }
+
+        byte[] bytes = input.array();
+        int start = 0;
+        int end = input.position();
+        for (int i = 0; i < end; i++) {
+            if (bytes[i] == '\n') {
+                if (client.discarding) {
+                    client.discarding = false;
+                } else {
+                    int length = i - start;
+                    if (length > 0 && bytes[i - 1] == '\r') {
+                        length--;
+                    }
+                    dispatch(new String(bytes, start, length, StandardCharsets.UTF_8));
+                }
+                start = i + 1;
+            }
+        }
+
+        if (start > 0) {
+            System.arraycopy(bytes, start, bytes, 0, end - start);
+            input.position(end - start);
+        } else if (!input.hasRemaining()) {
+            // Line is too long, discard it
+            client.discarding = true;
+            input.clear();
+        }
+    }
+
+    private void dispatch(String line) {
+        this.inputExecutor.execute(() -> {
+            try {
+                this.inputHandler.accept(line);
+            } catch (RuntimeException e) {
+                LOGGER.error("Failed to process console input: {}", line, e);
+            }
+        });
+    }
+
+    private void write(Client client) throws IOException {
+        ByteBuffer[] gather = this.gather;
+        try {
+            for (;;) {
+                int count = 0;
+                for (ByteBuffer buffer : client.output) {
+                    gather[count++] = buffer;
+                    if (count == gather.length) {
+                        break;
+                    }
+                }
+
+                if (count == 0) {
+                    client.key.interestOps(SelectionKey.OP_READ);
+                    return;
+                }
+
+                long written = client.channel.write(gather, 0, count);
+                client.queued.addAndGet(-written);
+                for (int i = 0; i < count && !gather[i].hasRemaining(); i++) {
+                    client.output.poll();
+                }
+
+                if (gather[count - 1].hasRemaining()) {
+                    // The socket buffer is full, continue once the client is writable again
+                    client.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return;
+                }
+
+                Arrays.fill(gather, 0, count, null);
+            }
+        } finally {
+            Arrays.fill(gather, null);
+        }
+    }
+
+    private void disconnect(Client client) {
+        if (this.clients.remove(client)) {
+            try {
+                client.channel.close();
+            } catch (IOException e) {
+                LOGGER.debug("Failed to close console client", e);
+            }
+            client.output.clear();
+        }
+    }
+
+    /**
+     * Disconnects all clients and stops the server.
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        if (this.closed) {
+            return;
+        }
+
+        this.closed = true;
+        TerminalConsoleAppender.removeServer(this);
+        this.selector.wakeup();
+        try {
+            this.thread.join(TimeUnit.SECONDS.toMillis(1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        this.inputExecutor.shutdown();
+        try {
+            this.channel.close();
+            this.selector.close();
+        } finally {
+            if (this.socketPath != null) {
+                Files.deleteIfExists(this.socketPath);
+            }
+        }
+    }
+
+    private final class Client {
+
+        final SocketChannel channel;
+        final SelectionKey key;
+        final String address;
+
+        final Queue<ByteBuffer> output = new ConcurrentLinkedQueue<>();
+        final AtomicLong queued = new AtomicLong();
+        volatile boolean lagging;
+
+        // Only used by the selector thread
+        final ByteBuffer input = ByteBuffer.allocate(MAX_LINE_LENGTH);
+        boolean discarding;
+
+        Client(SocketChannel channel, SelectionKey key, String address) {
+            this.channel = channel;
+            this.key = key;
+            this.address = address;
+        }
+
+        void send(byte[] bytes) {
+            if (this.lagging) {
+                return;
+            }
+
+            if (this.queued.addAndGet(bytes.length) > maxClientBuffer) {
+                // The client is too slow, it will be disconnected by the selector thread
+                this.lagging = true;
+                return;
+            }
+
+            this.output.add(ByteBuffer.wrap(bytes));
+        }
+
+        void replay(byte[] scrollback) {
+            // Leave space for new output, starting at the beginning of a line
+            int start = Math.max(0, scrollback.length - maxClientBuffer / 2);
+            if (start > 0) {
+                while (start < scrollback.length && scrollback[start - 1] != '\n') {
+                    start++;
+                }
+            }
+
+            if (start < scrollback.length) {
+                this.queued.addAndGet(scrollback.length - start);
+                this.output.add(ByteBuffer.wrap(scrollback, start, scrollback.length - start));
+            }
+        }
+
+    }
+
+}
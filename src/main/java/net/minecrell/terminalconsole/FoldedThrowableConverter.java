@@ -0,0 +1,412 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Minecrell <https://github.com/Minecrell>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.minecrell.terminalconsole;
+
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.config.Configuration;
+import org.apache.logging.log4j.core.config.plugins.Plugin;
+import org.apache.logging.log4j.core.pattern.ConverterKeys;
+import org.apache.logging.log4j.core.pattern.LogEventPatternConverter;
+import org.apache.logging.log4j.core.pattern.PatternConverter;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prints a compact stack trace of the exception attached to a log event,
+ * intended for the console while the full stack trace is written to a log
+ * file by another appender.
+ *
+ * <ul>
+ *     <li>Consecutive frames of packages listed in the {@code filters(...)}
+ *     option are collapsed into a single line.</li>
+ *     <li>The number of frames printed per exception can be limited with a
+ *     numeric option.</li>
+ *     <li>A chain of causes that were thrown at the same location (e.g. by
+ *     a recursive method) is only printed once.</li>
+ *     <li>Stack traces are identified by a fingerprint of the exception
+ *     classes and stack frames. If the same stack trace is logged again,
+ *     only the exception message and a reference to the previous stack
+ *     trace are printed.</li>
+ * </ul>
+ *
+ * <p>Note that the converter only shortens the stack trace, it does not
+ * hold back the log event itself. Each repeated event is still printed
+ * with its message and exception line, followed by
+ * {@code ... (same as above, N times)}, so N identical events take
+ * 2 * N lines rather than a single folded one.</p>
+ *
+ * <p>Like {@code %xEx}, the converter replaces the stack trace that
+ * Log4j appends to the end of the pattern by default. It can be also used
+ * inside {@link HighlightErrorConverter}.</p>
+ *
+ * <p><b>Example usage:</b>
+ * {@code %msg%n%foldEx{filters(java.lang.reflect,jdk.internal.reflect)}{30}}</p>
+ */
+@Plugin(name = "foldedThrowable", category = PatternConverter.CATEGORY)
+@ConverterKeys({ "foldEx", "foldedThrowable" })
+public final class FoldedThrowableConverter extends LogEventPatternConverter {
+
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    /**
+     * The maximum number of fingerprints that are remembered.
+     */
+    static final int MAX_FINGERPRINTS = 256;
+
+    /**
+     * The time after which a stack trace is printed again in full,
+     * because the previous one has likely scrolled out of view.
+     */
+    static final long REFERENCE_TIMEOUT = TimeUnit.MINUTES.toNanos(10);
+
+    /**
+     * The maximum number of nested causes and suppressed exceptions.
+     */
+    private static final int MAX_NESTING = 32;
+
+    private final String[] filters;
+    private final int maxFrames;
+
+    // Fingerprint -> Time (in nanoseconds) when the stack trace was printed in full
+    private final LinkedHashMap<Long, Long> printed = new LinkedHashMap<Long, Long>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Long> eldest) {
+            return size() > MAX_FINGERPRINTS;
+        }
+    };
+
+    // Written while holding the lock, but read without it for events without exception
+    private volatile long lastFingerprint;
+    private int lastRepeats;
+
+    /**
+     * Construct the converter.
+     *
+     * @param filters The package prefixes of the stack frames to collapse
+     * @param maxFrames The maximum number of stack frames to print
+     *     per exception
+     */
+    protected FoldedThrowableConverter(String[] filters, int maxFrames) {
+        super("foldedThrowable", "throwable");
+        this.filters = filters;
+        this.maxFrames = maxFrames;
+    }
+
+    @Override
+    public void format(LogEvent event, StringBuilder toAppendTo) {
+        Throwable thrown = event.getThrown();
+        if (thrown == null) {
+            if (lastFingerprint != 0) {
+                // Only fold stack traces that are directly after each other
+                synchronized (this) {
+                    lastFingerprint = 0;
+                }
+            }
+            return;
+        }
+
+        format(thrown, System.nanoTime(), toAppendTo);
+    }
+
+    /**
+     * Appends the (folded) stack trace of the specified exception.
+     *
+     * @param thrown The exception to append
+     * @param now The current time in nanoseconds
+     * @param buf The string builder to append to
+     */
+    void format(Throwable thrown, long now, StringBuilder buf) {
+        long fingerprint = fingerprint(thrown);
+
+        int repeats = 0;
+        boolean reference = false;
+        synchronized (this) {
+            if (fingerprint == lastFingerprint) {
+                repeats = ++lastRepeats;
+            } else {
+                lastFingerprint = fingerprint;
+                lastRepeats = 1;
+
+                Long time = printed.get(fingerprint);
+                if (time != null && now - time < REFERENCE_TIMEOUT) {
+                    reference = true;
+                } else {
+                    printed.put(fingerprint, now);
+                }
+            }
+        }
+
+        int len = buf.length();
+        if (len > 0 && !Character.isWhitespace(buf.charAt(len - 1))) {
+            buf.append(' ');
+        }
+
+        buf.append(thrown).append(LINE_SEPARATOR);
+        if (repeats > 0) {
+            buf.append("\t... (same as above, ").append(repeats).append(" times)").append(LINE_SEPARATOR);
+        } else if (reference) {
+            buf.append("\t... (same stack trace as ");
+            appendId(buf, fingerprint).append(')').append(LINE_SEPARATOR);
+        } else {
+            Set<Throwable> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+            seen.add(thrown);
+            appendDetails(buf, thrown, thrown.getStackTrace(), 0, "", seen, 0);
+            buf.append('\t');
+            appendId(buf, fingerprint).append(LINE_SEPARATOR);
+        }
+    }
+
+    private static StringBuilder appendId(StringBuilder buf, long fingerprint) {
+        String id = Integer.toHexString((int) (fingerprint ^ (fingerprint >>> 32)));
+        buf.append("(trace #");
+        for (int i = id.length(); i < 8; i++) {
+            buf.append('0');
+        }
+        return buf.append(id).append(')');
+    }
+
+    private void appendEnclosed(StringBuilder buf, Throwable t, StackTraceElement[] enclosing,
+            String caption, String prefix, Set<Throwable> seen, int nesting) {
+        if (!seen.add(t)) {
+            buf.append(prefix).append(caption).append("[CIRCULAR REFERENCE: ").append(t).append(']')
+                    .append(LINE_SEPARATOR);
+            return;
+        }
+
+        buf.append(prefix).append(caption).append(t).append(LINE_SEPARATOR);
+        if (nesting >= MAX_NESTING) {
+            buf.append(prefix).append("\t... (further causes omitted)").append(LINE_SEPARATOR);
+            return;
+        }
+
+        StackTraceElement[] trace = t.getStackTrace();
+        appendDetails(buf, t, trace, commonFrames(trace, enclosing), prefix, seen, nesting);
+    }
+
+    private void appendDetails(StringBuilder buf, Throwable t, StackTraceElement[] trace, int common,
+            String prefix, Set<Throwable> seen, int nesting) {
+        appendFrames(buf, trace, common, prefix);
+
+        for (Throwable suppressed : t.getSuppressed()) {
+            appendEnclosed(buf, suppressed, trace, "Suppressed: ", prefix + '\t', seen, nesting + 1);
+        }
+
+        Throwable cause = t.getCause();
+        if (cause == null) {
+            return;
+        }
+
+        // Fold causes that were thrown at the same location as this exception,
+        // e.g. when a recursive method wraps the exceptions of its inner calls
+        Throwable last = t;
+        int repeats = 0;
+        StackTraceElement[] lastTrace = trace;
+        int lastCommon = common;
+        while (cause != null && !seen.contains(cause) && cause.getClass() == last.getClass()
+                && cause.getSuppressed().length == 0) {
+            StackTraceElement[] causeTrace = cause.getStackTrace();
+            int causeCommon = commonFrames(causeTrace, lastTrace);
+            if (!sameFrames(causeTrace, causeCommon, lastTrace, lastCommon)) {
+                break;
+            }
+
+            seen.add(cause);
+            repeats++;
+            last = cause;
+            lastTrace = causeTrace;
+            lastCommon = causeCommon;
+            cause = cause.getCause();
+        }
+
+        if (repeats > 0) {
+            buf.append(prefix).append("Caused by: ").append(last).append(LINE_SEPARATOR);
+            buf.append(prefix).append("\t... (same as above, ").append(repeats).append(" times)")
+                    .append(LINE_SEPARATOR);
+        }
+
+        if (cause != null) {
+            appendEnclosed(buf, cause, lastTrace, "Caused by: ", prefix, seen, nesting + 1);
+        }
+    }
+
+    private void appendFrames(StringBuilder buf, StackTraceElement[] trace, int common, String prefix) {
+        int unique = trace.length - common;
+        int frames = 0;
+        int i = 0;
+        while (i < unique) {
+            if (frames == maxFrames) {
+                break;
+            }
+
+            StackTraceElement element = trace[i];
+            if (isFiltered(element)) {
+                int start = i;
+                do {
+                    i++;
+                } while (i < unique && isFiltered(trace[i]));
+
+                buf.append(prefix).append("\t... ").append(i - start).append(i - start == 1 ? " frame" : " frames")
+                        .append(" hidden").append(LINE_SEPARATOR);
+            } else {
+                buf.append(prefix).append("\tat ").append(element).append(LINE_SEPARATOR);
+                frames++;
+                i++;
+            }
+        }
+
+        int remaining = trace.length - i;
+        if (remaining > 0) {
+            buf.append(prefix).append("\t... ").append(remaining).append(" more").append(LINE_SEPARATOR);
+        }
+    }
+
+    private boolean isFiltered(StackTraceElement element) {
+        String className = element.getClassName();
+        for (String filter : filters) {
+            if (className.startsWith(filter)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of frames at the end of the stack trace that are
+     * shared with the stack trace of the enclosing exception.
+     */
+    private static int commonFrames(StackTraceElement[] trace, StackTraceElement[] enclosing) {
+        int m = trace.length - 1;
+        int n = enclosing.length - 1;
+        while (m >= 0 && n >= 0 && trace[m].equals(enclosing[n])) {
+            m--;
+            n--;
+        }
+        return trace.length - 1 - m;
+    }
+
+    private static boolean sameFrames(StackTraceElement[] a, int aCommon, StackTraceElement[] b, int bCommon) {
+        int length = a.length - aCommon;
+        if (length != b.length - bCommon) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (!a[i].equals(b[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Computes a fingerprint of the exception classes and stack frames of the
+     * exception including its causes and suppressed exceptions. The messages
+     * are ignored because they often contain variable values.
+     *
+     * @param thrown The exception
+     * @return The fingerprint (never {@code 0})
+     */
+    static long fingerprint(Throwable thrown) {
+        long hash = fingerprint(0xcbf29ce484222325L, thrown, Collections.newSetFromMap(new IdentityHashMap<>()));
+        return hash != 0 ? hash : 1;
+    }
+
+    private static long fingerprint(long hash, Throwable t, Set<Throwable> seen) {
+        if (!seen.add(t)) {
+            return mix(hash, 0);
+        }
+
+        hash = mix(hash, t.getClass().getName().hashCode());
+        for (StackTraceElement element : t.getStackTrace()) {
+            hash = mix(hash, element.hashCode());
+        }
+        for (Throwable suppressed : t.getSuppressed()) {
+            hash = fingerprint(mix(hash, 1), suppressed, seen);
+        }
+
+        Throwable cause = t.getCause();
+        return cause != null ? fingerprint(mix(hash, 2), cause, seen) : hash;
+    }
+
+    private static long mix(long hash, int value) {
+        return (hash ^ value) * 0x100000001b3L;
+    }
+
+    @Override
+    public boolean handlesThrowable() {
+        return true;
+    }
+
+    /**
+     * Gets a new instance of the {@link FoldedThrowableConverter} with the
+     * specified options.
+     *
+     * @param config The current configuration
+     * @param options The pattern options
+     * @return The new instance
+     */
+    public static @Nullable FoldedThrowableConverter newInstance(Configuration config, String[] options) {
+        List<String> filters = new ArrayList<>();
+        int maxFrames = Integer.MAX_VALUE;
+
+        for (String option : options) {
+            if (option == null) {
+                continue;
+            }
+
+            option = option.trim();
+            if (option.startsWith("filters(") && option.endsWith(")")) {
+                for (String filter : option.substring(8, option.length() - 1).split(",")) {
+                    filter = filter.trim();
+                    if (!filter.isEmpty()) {
+                        filters.add(filter);
+                    }
+                }
+            } else {
+                try {
+                    maxFrames = Integer.parseInt(option);
+                } catch (NumberFormatException e) {
+                    LOGGER.error("Invalid option on foldedThrowable: " + option);
+                    return null;
+                }
+
+                if (maxFrames < 0) {
+                    LOGGER.error("Invalid number of frames on foldedThrowable: " + maxFrames);
+                    return null;
+                }
+            }
+        }
+
+        return new FoldedThrowableConverter(filters.toArray(new String[0]), maxFrames);
+    }
+
+}
@@ -38,7 +38,11 @@
 import org.apache.logging.log4j.util.PerformanceSensitive;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
 
 /**
  * A simplified version of {@link HighlightConverter} that uses
@@ -49,21 +53,35 @@
  * warnings with a yellow color. It can be only used together with
  * {@link TerminalConsoleAppender}.</p>
  *
+ * <p>The styles can be changed using a second option with a comma-separated
+ * list of {@code LEVEL=style} pairs, where the style consists of a color
+ * ({@code black}, {@code red}, {@code green}, {@code yellow}, {@code blue},
+ * {@code magenta}, {@code cyan}, {@code white}, an index in the xterm 256
+ * color palette or {@code #RRGGBB}) and/or attributes ({@code bold},
+ * {@code italic}, {@code underline}, {@code strikethrough}, {@code blink}),
+ * or {@code none}. Each style applies to the messages of its level and all
+ * messages less specific than the previous configured level, so
+ * {@code ERROR} also includes {@code FATAL}. Custom levels are supported.</p>
+ *
  * <p>{@link TerminalConsoleAppender#ANSI_OVERRIDE_PROPERTY} may be used
  * to force the use of ANSI colors even in unsupported environments.</p>
  *
- * <p><b>Example usage:</b> {@code %highlightError{%level: %message}}</p>
+ * <p><b>Example usage:</b> {@code %highlightError{%level: %message}} or
+ * {@code %highlightError{%level: %message}{ERROR=bold red, WARN=yellow, DEBUG=#808080}}</p>
  */
 @Plugin(name = "highlightError", category = PatternConverter.CATEGORY)
 @ConverterKeys({ "highlightError" })
 @PerformanceSensitive("allocation")
 public final class HighlightErrorConverter extends LogEventPatternConverter {
 
-    private static final String ANSI_RESET = "\u001B[m";
-    private static final String ANSI_ERROR = "\u001B[31;1m"; // Bold Red
-    private static final String ANSI_WARN = "\u001B[33;1m"; // Bold Yellow
+    private static final String[] COLOR_NAMES = {
+            "black", "red", "green", "yellow", "blue", "magenta", "cyan", "white"
+    };
+
+    private static final LevelStyles DEFAULT_STYLES = LevelStyles.parse("ERROR=bold red, WARN=bold yellow");
 
     private final List<PatternFormatter> formatters;
+    private final LevelStyles styles;
 
     /**
      * Construct the converter.
@@ -71,21 +89,22 @@ public final class HighlightErrorConverter extends LogEventPatternConverter {
      * @param formatters The pattern formatters to generate the text to highlight
      */
     protected HighlightErrorConverter(List<PatternFormatter> formatters) {
+        this(formatters, DEFAULT_STYLES);
+    }
+
+    private HighlightErrorConverter(List<PatternFormatter> formatters, LevelStyles styles) {
         super("highlightError", null);
         this.formatters = formatters;
+        this.styles = styles;
     }
 
     @Override
     public void format(LogEvent event, StringBuilder toAppendTo) {
-        if (TerminalConsoleAppender.isAnsiSupported()) {
-            Level level = event.getLevel();
-            if (level.isMoreSpecificThan(Level.ERROR)) {
-                format(ANSI_ERROR, event, toAppendTo);
-                return;
-            } else if (level.isMoreSpecificThan(Level.WARN)) {
-                format(ANSI_WARN, event, toAppendTo);
-                return;
-            }
+        // Only detect the terminal if the level is highlighted
+        long style = this.styles.get(event.getLevel().intLevel());
+        if (style != 0 && TerminalConsoleAppender.getCapabilities().isAnsiSupported()) {
+            format(LevelStyles.color(style), LevelStyles.attributes(style), event, toAppendTo);
+            return;
         }
 
         //noinspection ForLoopReplaceableByForEach
@@ -94,22 +113,29 @@ public void format(LogEvent event, StringBuilder toAppendTo) {
         }
     }
 
-    private void format(String style, LogEvent event, StringBuilder toAppendTo) {
+    private void format(int color, int attributes, LogEvent event, StringBuilder toAppendTo) {
         int start = toAppendTo.length();
-        toAppendTo.append(style);
-        int end = toAppendTo.length();
+        SgrState state = SgrState.enter(toAppendTo, start);
+        try {
+            long saved = state.save();
+            state.add(toAppendTo, color, attributes);
+            int end = toAppendTo.length();
 
-        //noinspection ForLoopReplaceableByForEach
-        for (int i = 0, size = formatters.size(); i < size; i++) {
-            formatters.get(i).format(event, toAppendTo);
-        }
+            //noinspection ForLoopReplaceableByForEach
+            for (int i = 0, size = formatters.size(); i < size; i++) {
+                formatters.get(i).format(event, toAppendTo);
+            }
 
-        if (toAppendTo.length() == end) {
-            // No content so we don't need to append the ANSI escape code
-            toAppendTo.setLength(start);
-        } else {
-            // Append reset code after the line
-            toAppendTo.append(ANSI_RESET);
+            if (toAppendTo.length() == end) {
+                // No content so we don't need to append the ANSI escape code
+                toAppendTo.setLength(start);
+                state.restore(saved, start);
+            } else {
+                // Reset the style after the line (if it was not reset already)
+                state.reset(toAppendTo);
+            }
+        } finally {
+            state.exit(toAppendTo);
         }
     }
 
@@ -132,8 +158,8 @@ public boolean handlesThrowable() {
      * @return The new instance
      */
     public static @Nullable HighlightErrorConverter newInstance(Configuration config, String[] options) {
-        if (options.length != 1) {
-            LOGGER.error("Incorrect number of options on highlightError. Expected 1 received " + options.length);
+        if (options.length < 1 || options.length > 2) {
+            LOGGER.error("Incorrect number of options on highlightError. Expected 1 or 2 received " + options.length);
             return null;
         }
         if (options[0] == null) {
@@ -141,9 +167,236 @@ public boolean handlesThrowable() {
             return null;
         }
 
+        LevelStyles styles = DEFAULT_STYLES;
+        if (options.length == 2 && options[1] != null) {
+            styles = LevelStyles.parse(options[1]);
+        }
+
         PatternParser parser = PatternLayout.createPatternParser(config);
         List<PatternFormatter> formatters = parser.parse(options[0]);
-        return new HighlightErrorConverter(formatters);
+        return new HighlightErrorConverter(formatters, styles);
+    }
+
+    /**
+     * The styles for each level, compiled into a table indexed by
+     * {@link Level#intLevel()}. If the table would be too large (e.g. for
+     * custom levels with unusual values), the style is looked up using a
+     * binary search over the configured levels instead.
+     *
+     * <p>Each style is stored as a {@code long}, with the color in the upper
+     * and the attributes in the lower 32 bits. {@code 0} means the message
+     * is not highlighted.</p>
+     */
+    static final class LevelStyles {
+
+        /**
+         * The maximum number of entries in the table.
+         */
+        static final int MAX_TABLE_SIZE = 1024;
+
+        private static final int[] NO_LEVELS = new int[0];
+        private static final long[] NO_STYLES = new long[0];
+
+        private final long @Nullable [] table;
+        private final int granularity;
+
+        // The configured levels (sorted) and their styles, used if there is no table
+        private final int[] levels;
+        private final long[] styles;
+
+        private final int max;
+        private final long fallback;
+
+        private LevelStyles(long @Nullable [] table, int granularity, int[] levels, long[] styles, int max,
+                long fallback) {
+            this.table = table;
+            this.granularity = granularity;
+            this.levels = levels;
+            this.styles = styles;
+            this.max = max;
+            this.fallback = fallback;
+        }
+
+        static int color(long style) {
+            return (int) (style >>> 32);
+        }
+
+        static int attributes(long style) {
+            return (int) style;
+        }
+
+        /**
+         * Returns the style for a level.
+         *
+         * @param intLevel The {@link Level#intLevel()} of the level
+         * @return The style, or {@code 0} if the level is not highlighted
+         */
+        long get(int intLevel) {
+            if (intLevel > this.max) {
+                return this.fallback;
+            }
+
+            // The levels in between use the style of the next less specific configured level
+            long @Nullable [] table = this.table;
+            if (table != null) {
+                // Round up to the next bucket
+                return table[(intLevel + this.granularity - 1) / this.granularity];
+            }
+
+            int i = Arrays.binarySearch(this.levels, intLevel);
+            return this.styles[i < 0 ? -i - 1 : i];
+        }
+
+        /**
+         * Parses and compiles a list of {@code LEVEL=style} pairs. Invalid
+         * entries are logged and skipped.
+         *
+         * @param option The comma-separated list of level styles
+         * @return The compiled styles
+         */
+        static LevelStyles parse(String option) {
+            TreeMap<Integer, Long> styles = new TreeMap<>();
+            for (String entry : option.split(",")) {
+                entry = entry.trim();
+                if (entry.isEmpty()) {
+                    continue;
+                }
+
+                int separator = entry.indexOf('=');
+                if (separator < 0) {
+                    LOGGER.error("Invalid level style on highlightError, expected LEVEL=style: " + entry);
+                    continue;
+                }
+
+                String name = entry.substring(0, separator).trim();
+                @Nullable Level level = Level.getLevel(name.toUpperCase(Locale.ROOT));
+                if (level == null) {
+                    LOGGER.error("Unknown level on highlightError: " + name);
+                    continue;
+                }
+
+                try {
+                    styles.put(level.intLevel(), parseStyle(entry.substring(separator + 1)));
+                } catch (IllegalArgumentException e) {
+                    LOGGER.error("Invalid style for " + name + " on highlightError: " + e.getMessage());
+                }
+            }
+            return compile(styles);
+        }
+
+        private static long parseStyle(String style) {
+            int color = SgrState.DEFAULT_COLOR;
+            int attributes = 0;
+            for (String word : style.trim().split("\\s+")) {
+                switch (word.toLowerCase(Locale.ROOT)) {
+                    case "none":
+                    case "":
+                        break;
+                    case "bold":
+                    case "bright":
+                        attributes |= SgrState.BRIGHT;
+                        break;
+                    case "italic":
+                        attributes |= SgrState.ITALIC;
+                        break;
+                    case "underline":
+                        attributes |= SgrState.UNDERLINE;
+                        break;
+                    case "strikethrough":
+                        attributes |= SgrState.STRIKETHROUGH;
+                        break;
+                    case "blink":
+                        attributes |= SgrState.BLINK;
+                        break;
+                    default:
+                        color = parseColor(word);
+                        break;
+                }
+            }
+            return (long) color << 32 | (attributes & 0xFFFFFFFFL);
+        }
+
+        private static int parseColor(String word) {
+            String name = word.toLowerCase(Locale.ROOT);
+            for (int i = 0; i < COLOR_NAMES.length; i++) {
+                if (COLOR_NAMES[i].equals(name)) {
+                    return SgrState.sgrColor(30 + i);
+                }
+            }
+
+            try {
+                if (name.length() == 7 && name.charAt(0) == '#') {
+                    return SgrState.rgbColor(Integer.parseInt(name.substring(1), 16));
+                }
+
+                int index = Integer.parseInt(name);
+                if (index >= 0 && index < 256) {
+                    return SgrState.paletteColor(index);
+                }
+            } catch (NumberFormatException ignored) {
+            }
+            throw new IllegalArgumentException("Unknown color or attribute '" + word + "'");
+        }
+
+        /**
+         * Compiles the styles into a table with one entry for every multiple
+         * of the greatest common divisor of the configured levels, so custom
+         * levels in between the standard levels are supported without making
+         * the table larger than necessary. If the table would have more than
+         * {@link #MAX_TABLE_SIZE} entries, only the sorted levels are kept.
+         *
+         * @param styles The styles by {@link Level#intLevel()}
+         * @return The compiled styles
+         */
+        static LevelStyles compile(TreeMap<Integer, Long> styles) {
+            // Level.ALL (and other levels with the maximum value) are handled separately
+            long fallback = 0;
+            @Nullable Long all = styles.remove(Integer.MAX_VALUE);
+            if (all != null) {
+                fallback = all;
+            }
+
+            int granularity = 0;
+            for (int intLevel : styles.keySet()) {
+                granularity = gcd(granularity, intLevel);
+            }
+            if (granularity == 0) {
+                granularity = 1;
+            }
+
+            int max = styles.isEmpty() ? -1 : styles.lastKey();
+            int size = max / granularity + 1;
+            if (size > MAX_TABLE_SIZE) {
+                int[] levels = new int[styles.size()];
+                long[] values = new long[styles.size()];
+                int i = 0;
+                for (Map.Entry<Integer, Long> entry : styles.entrySet()) {
+                    levels[i] = entry.getKey();
+                    values[i++] = entry.getValue();
+                }
+                return new LevelStyles(null, granularity, levels, values, max, fallback);
+            }
+
+            long[] table = new long[size];
+            for (int i = 0; i < table.length; i++) {
+                Map.@Nullable Entry<Integer, Long> entry = styles.ceilingEntry(i * granularity);
+                if (entry != null) {
+                    table[i] = entry.getValue();
+                }
+            }
+
+            return new LevelStyles(table, granularity, NO_LEVELS, NO_STYLES, max, fallback);
+        }
+
+        private static int gcd(int a, int b) {
+            while (b != 0) {
+                int t = a % b;
+                a = b;
+                b = t;
+            }
+            return a;
+        }
+
     }
 
 }
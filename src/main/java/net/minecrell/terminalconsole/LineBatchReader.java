@@ -0,0 +1,161 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Minecrell <https://github.com/Minecrell>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.minecrell.terminalconsole;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads lines from a {@link ReadableByteChannel} in batches. Each batch
+ * contains all complete lines that were available from a single read, so
+ * input piped into the application (e.g. from a script) is split into
+ * large batches, while interactive input usually results in a single
+ * line per batch.
+ *
+ * <p>Lines are terminated by {@code \n}, {@code \r} or {@code \r\n}, the
+ * same as {@link java.io.BufferedReader#readLine()}.</p>
+ */
+final class LineBatchReader {
+
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ReadableByteChannel channel;
+    private final CharsetDecoder decoder;
+
+    private final ByteBuffer bytes;
+    private final CharBuffer chars;
+
+    // The incomplete line at the end of the last read
+    private final StringBuilder line = new StringBuilder();
+    private boolean skipLineFeed;
+    private boolean endOfInput;
+
+    /**
+     * Creates a new reader using {@link #BUFFER_SIZE}.
+     *
+     * @param channel The channel to read from
+     * @param charset The charset of the input
+     */
+    LineBatchReader(ReadableByteChannel channel, Charset charset) {
+        this(channel, charset, BUFFER_SIZE);
+    }
+
+    LineBatchReader(ReadableByteChannel channel, Charset charset, int bufferSize) {
+        this.channel = channel;
+        this.decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.bytes = ByteBuffer.allocate(bufferSize);
+        this.chars = CharBuffer.allocate(bufferSize);
+    }
+
+    /**
+     * Reads the next batch of lines, blocking until at least one complete
+     * line is available.
+     *
+     * @return The lines (without line terminators), or null at the end
+     *     of the input
+     * @throws IOException If an I/O error occurs
+     */
+    @Nullable List<String> readBatch() throws IOException {
+        List<String> batch = new ArrayList<>();
+        while (batch.isEmpty()) {
+            if (this.endOfInput) {
+                if (this.line.length() == 0) {
+                    return null;
+                }
+
+                // Last line without line terminator
+                batch.add(this.line.toString());
+                this.line.setLength(0);
+                return batch;
+            }
+
+            if (this.channel.read(this.bytes) < 0) {
+                this.endOfInput = true;
+            }
+
+            this.bytes.flip();
+            CoderResult result;
+            do {
+                result = this.decoder.decode(this.bytes, this.chars, this.endOfInput);
+                splitLines(batch);
+            } while (result.isOverflow());
+            this.bytes.compact();
+
+            if (this.endOfInput) {
+                do {
+                    result = this.decoder.flush(this.chars);
+                    splitLines(batch);
+                } while (result.isOverflow());
+            }
+        }
+        return batch;
+    }
+
+    private void splitLines(List<String> batch) {
+        char[] buf = this.chars.array();
+        int end = this.chars.position();
+        int start = 0;
+
+        for (int i = 0; i < end; i++) {
+            char c = buf[i];
+            if (c == '\n' || c == '\r') {
+                if (c == '\n' && this.skipLineFeed) {
+                    // Second half of \r\n
+                    this.skipLineFeed = false;
+                    start = i + 1;
+                    continue;
+                }
+
+                this.skipLineFeed = c == '\r';
+                if (this.line.length() > 0) {
+                    this.line.append(buf, start, i - start);
+                    batch.add(this.line.toString());
+                    this.line.setLength(0);
+                } else {
+                    batch.add(new String(buf, start, i - start));
+                }
+                start = i + 1;
+            } else {
+                this.skipLineFeed = false;
+            }
+        }
+
+        this.line.append(buf, start, end - start);
+        this.chars.clear();
+    }
+
+}
@@ -33,10 +33,12 @@
 import org.apache.logging.log4j.core.pattern.PatternConverter;
 import org.apache.logging.log4j.core.pattern.PatternFormatter;
 import org.apache.logging.log4j.core.pattern.PatternParser;
+import org.apache.logging.log4j.core.util.Constants;
 import org.apache.logging.log4j.util.PerformanceSensitive;
 import org.apache.logging.log4j.util.PropertiesUtil;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -49,6 +51,11 @@
  * color output. When running in an unsupported environment, it will
  * automatically strip all formatting codes instead.</p>
  *
+ * <p>RGB colors in the format {@code §x§R§R§G§G§B§B} (e.g.
+ * {@code §x§f§f§8§8§0§0}) are supported as well. They are written as 24-bit
+ * color if supported by the terminal, otherwise the nearest color of the
+ * 256 color palette or the nearest legacy color is used.</p>
+ *
  * <p>{@link TerminalConsoleAppender#ANSI_OVERRIDE_PROPERTY} may be used
  * to force the use of ANSI colors even in unsupported environments. As an
  * alternative, {@link #KEEP_FORMATTING_PROPERTY} may be used to keep the
@@ -86,34 +93,57 @@ public final class MinecraftFormattingConverter extends LogEventPatternConverter
 
     private static final boolean KEEP_FORMATTING = PropertiesUtil.getProperties().getBooleanProperty(KEEP_FORMATTING_PROPERTY);
 
-    static final String ANSI_RESET = "\u001B[m";
-
     private static final char COLOR_CHAR = '§';
+    private static final String COLOR_STRING = String.valueOf(COLOR_CHAR);
     private static final String LOOKUP = "0123456789abcdefklmnor";
 
-    private static final String[] ansiCodes = new String[] {
-            "\u001B[0;30m", // Black §0
-            "\u001B[0;34m", // Dark Blue §1
-            "\u001B[0;32m", // Dark Green §2
-            "\u001B[0;36m", // Dark Aqua §3
-            "\u001B[0;31m", // Dark Red §4
-            "\u001B[0;35m", // Dark Purple §5
-            "\u001B[0;33m", // Gold §6
-            "\u001B[0;37m", // Gray §7
-            "\u001B[0;30;1m",  // Dark Gray §8
-            "\u001B[0;34;1m",  // Blue §9
-            "\u001B[0;32;1m",  // Green §a
-            "\u001B[0;36;1m",  // Aqua §b
-            "\u001B[0;31;1m",  // Red §c
-            "\u001B[0;35;1m",  // Light Purple §d
-            "\u001B[0;33;1m",  // Yellow §e
-            "\u001B[0;37;1m",  // White §f
-            "\u001B[5m",       // Obfuscated §k
-            "\u001B[21m",      // Bold §l
-            "\u001B[9m",       // Strikethrough §m
-            "\u001B[4m",       // Underline §n
-            "\u001B[3m",       // Italic §o
-            ANSI_RESET,        // Reset §r
+    // §x§R§R§G§G§B§B
+    private static final int RGB_LENGTH = 14;
+
+    /**
+     * Maps ASCII characters to the index of the formatting code in
+     * {@link #LOOKUP}, or {@code -1} if the character is not a valid
+     * formatting code.
+     */
+    private static final byte[] formats = new byte[128];
+
+    static {
+        Arrays.fill(formats, (byte) -1);
+        for (int i = 0; i < LOOKUP.length(); i++) {
+            char c = LOOKUP.charAt(i);
+            formats[c] = (byte) i;
+            formats[Character.toUpperCase(c)] = (byte) i;
+        }
+    }
+
+    /**
+     * Messages up to this length reuse a thread-local buffer when
+     * replacing formatting codes with ANSI escape codes.
+     */
+    private static final int MAX_REUSABLE_BUFFER_SIZE = 8192;
+
+    private static final @Nullable ThreadLocal<char[]> buffers = Constants.ENABLE_THREADLOCALS ? new ThreadLocal<>() : null;
+
+    private static final int COLORS = 16;
+    private static final int RESET = 21;
+
+    private static final int[] colorCodes = {
+            30, // Black §0, Dark Gray §8 (bright)
+            34, // Dark Blue §1, Blue §9 (bright)
+            32, // Dark Green §2, Green §a (bright)
+            36, // Dark Aqua §3, Aqua §b (bright)
+            31, // Dark Red §4, Red §c (bright)
+            35, // Dark Purple §5, Light Purple §d (bright)
+            33, // Gold §6, Yellow §e (bright)
+            37, // Gray §7, White §f (bright)
+    };
+
+    private static final int[] formatAttributes = {
+            SgrState.BLINK,         // Obfuscated §k
+            SgrState.BOLD,          // Bold §l
+            SgrState.STRIKETHROUGH, // Strikethrough §m
+            SgrState.UNDERLINE,     // Underline §n
+            SgrState.ITALIC,        // Italic §o
     };
 
     private final boolean ansi;
@@ -144,41 +174,194 @@ public void format(LogEvent event, StringBuilder toAppendTo) {
             return;
         }
 
-        String content = toAppendTo.substring(start);
-        format(content, toAppendTo, start, ansi && TerminalConsoleAppender.isAnsiSupported());
+        if (ansi) {
+            // Only detect the terminal if the result depends on it
+            TerminalCapabilities capabilities = TerminalConsoleAppender.getCapabilities();
+            if (capabilities.isAnsiSupported()) {
+                format(toAppendTo, start, true, capabilities.getColorDepth());
+                return;
+            }
+        }
+
+        format(toAppendTo, start, false, 0);
     }
 
-    static void format(String s, StringBuilder result, int start, boolean ansi) {
-        int next = s.indexOf(COLOR_CHAR);
-        int last = s.length() - 1;
-        if (next == -1 || next == last) {
+    /**
+     * Replaces or strips all formatting codes in the {@link StringBuilder},
+     * starting at the specified index.
+     *
+     * @param buf The string builder with the text to format
+     * @param start The index of the first character to format
+     * @param ansi If true, formatting codes are replaced with ANSI escape
+     *     codes, otherwise they are stripped
+     * @param colors The number of colors supported by the terminal, used to
+     *     select the escape codes for RGB colors
+     */
+    static void format(StringBuilder buf, int start, boolean ansi, int colors) {
+        int next = buf.indexOf(COLOR_STRING, start);
+        if (next == -1 || next == buf.length() - 1) {
             return;
         }
 
-        result.setLength(start + next);
+        if (ansi) {
+            SgrState state = SgrState.enter(buf, start);
+            try {
+                replace(buf, next, colors, state);
+            } finally {
+                state.exit(buf);
+            }
+        } else {
+            strip(buf, next);
+        }
+    }
+
+    private static int getFormat(char c) {
+        return c < formats.length ? formats[c] : -1;
+    }
+
+    private static int getHexDigit(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        } else if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        } else if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        } else {
+            return -1;
+        }
+    }
 
+    /**
+     * Parses a RGB color in the format {@code §x§R§R§G§G§B§B}, starting at
+     * the specified index.
+     *
+     * @param s The text to parse
+     * @param i The index of the first section sign
+     * @param length The length of the text
+     * @return The RGB color, or {@code -1} if there is no valid RGB color
+     */
+    private static int getRgb(CharSequence s, int i, int length) {
+        if (i + RGB_LENGTH > length || (s.charAt(i + 1) | 0x20) != 'x') {
+            return -1;
+        }
+
+        int rgb = 0;
+        for (int j = i + 2; j < i + RGB_LENGTH; j += 2) {
+            int digit;
+            if (s.charAt(j) != COLOR_CHAR || (digit = getHexDigit(s.charAt(j + 1))) == -1) {
+                return -1;
+            }
+            rgb = rgb << 4 | digit;
+        }
+        return rgb;
+    }
+
+    private static int getRgb(char[] s, int i, int length) {
+        if (i + RGB_LENGTH > length || (s[i + 1] | 0x20) != 'x') {
+            return -1;
+        }
+
+        int rgb = 0;
+        for (int j = i + 2; j < i + RGB_LENGTH; j += 2) {
+            int digit;
+            if (s[j] != COLOR_CHAR || (digit = getHexDigit(s[j + 1])) == -1) {
+                return -1;
+            }
+            rgb = rgb << 4 | digit;
+        }
+        return rgb;
+    }
+
+    private static void strip(StringBuilder buf, int next) {
+        // Removing formatting codes only makes the text shorter,
+        // so we can move the remaining characters forward in place
+        int length = buf.length();
         int pos = next;
-        do {
-            int format = LOOKUP.indexOf(Character.toLowerCase(s.charAt(next + 1)));
-            if (format != -1) {
-                if (pos != next) {
-                    result.append(s, pos, next);
+        for (int i = next; i < length; i++) {
+            char c = buf.charAt(i);
+            if (c == COLOR_CHAR && i + 1 < length) {
+                if (getFormat(buf.charAt(i + 1)) != -1) {
+                    i++;
+                    continue;
+                } else if (getRgb(buf, i, length) != -1) {
+                    i += RGB_LENGTH - 1;
+                    continue;
                 }
-                if (ansi) {
-                    result.append(ansiCodes[format]);
+            }
+
+            if (pos != i) {
+                buf.setCharAt(pos, c);
+            }
+            pos++;
+        }
+        buf.setLength(pos);
+    }
+
+    private static void replace(StringBuilder buf, int next, int colors, SgrState state) {
+        // ANSI escape codes are longer than the formatting codes, so the
+        // remaining text is copied to a (reusable) buffer and appended again
+        int length = buf.length() - next;
+        char[] chars = getBuffer(length);
+        buf.getChars(next, buf.length(), chars, 0);
+        buf.setLength(next);
+
+        int pos = 0;
+        for (int i = 0, last = length - 1; i < last; i++) {
+            if (chars[i] == COLOR_CHAR) {
+                int format = getFormat(chars[i + 1]);
+                if (format != -1) {
+                    buf.append(chars, pos, i - pos);
+                    applyFormat(buf, format, state);
+                    pos = ++i + 1;
+                    continue;
+                }
+
+                int rgb = getRgb(chars, i, length);
+                if (rgb != -1) {
+                    buf.append(chars, pos, i - pos);
+                    applyRgb(buf, rgb, colors, state);
+                    i += RGB_LENGTH - 1;
+                    pos = i + 1;
                 }
-                pos = next += 2;
-            } else {
-                next++;
             }
+        }
 
-            next = s.indexOf(COLOR_CHAR, next);
-        } while (next != -1 && next < last);
+        buf.append(chars, pos, length - pos);
+        state.reset(buf);
+    }
 
-        result.append(s, pos, s.length());
-        if (ansi) {
-            result.append(ANSI_RESET);
+    private static void applyFormat(StringBuilder buf, int format, SgrState state) {
+        if (format < COLORS) {
+            // Colors reset all other formatting
+            state.set(buf, SgrState.sgrColor(colorCodes[format & 7]), format >= 8 ? SgrState.BRIGHT : 0);
+        } else if (format == RESET) {
+            state.reset(buf);
+        } else {
+            state.add(buf, SgrState.DEFAULT_COLOR, formatAttributes[format - COLORS]);
+        }
+    }
+
+    private static void applyRgb(StringBuilder buf, int rgb, int colors, SgrState state) {
+        if (colors >= AnsiColors.TRUE_COLOR) {
+            state.set(buf, SgrState.rgbColor(rgb), 0);
+        } else if (colors >= AnsiColors.COLORS_256) {
+            state.set(buf, SgrState.paletteColor(AnsiColors.toXterm256(rgb)), 0);
+        } else {
+            applyFormat(buf, AnsiColors.toLegacy(rgb), state);
+        }
+    }
+
+    private static char[] getBuffer(int length) {
+        if (buffers == null || length > MAX_REUSABLE_BUFFER_SIZE) {
+            return new char[length];
+        }
+
+        char[] chars = buffers.get();
+        if (chars == null || chars.length < length) {
+            chars = new char[Math.max(length, 512)];
+            buffers.set(chars);
         }
+        return chars;
     }
 
     /**
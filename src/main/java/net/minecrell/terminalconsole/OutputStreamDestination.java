@@ -0,0 +1,108 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Minecrell <https://github.com/Minecrell>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.minecrell.terminalconsole;
+
+import org.apache.logging.log4j.core.appender.AppenderLoggingException;
+import org.apache.logging.log4j.core.layout.ByteBufferDestination;
+import org.apache.logging.log4j.core.layout.ByteBufferDestinationHelper;
+import org.apache.logging.log4j.core.util.Constants;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link ByteBufferDestination} that writes the encoded log messages
+ * to an {@link OutputStream} using a reusable buffer.
+ *
+ * <p>This is used together with
+ * {@code Layout.encode(LogEvent, ByteBufferDestination)} to write log
+ * messages without creating an intermediate {@link String}.</p>
+ *
+ * <p><b>Note:</b> This class is not thread-safe, access must be synchronized
+ * externally.</p>
+ */
+final class OutputStreamDestination implements ByteBufferDestination {
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(Constants.ENCODER_BYTE_BUFFER_SIZE);
+    private final OutputStream out;
+
+    OutputStreamDestination(OutputStream out) {
+        this.out = out;
+    }
+
+    OutputStream getOutputStream() {
+        return this.out;
+    }
+
+    @Override
+    public ByteBuffer getByteBuffer() {
+        return this.buffer;
+    }
+
+    @Override
+    public ByteBuffer drain(ByteBuffer buf) {
+        buf.flip();
+        try {
+            if (buf.hasRemaining()) {
+                ConsoleMetrics.INSTANCE.bytesWritten.add(buf.remaining());
+                this.out.write(buf.array(), buf.arrayOffset() + buf.position(), buf.remaining());
+            }
+        } catch (IOException e) {
+            throw new AppenderLoggingException("Failed to write to console", e);
+        } finally {
+            buf.clear();
+        }
+        return buf;
+    }
+
+    @Override
+    public void writeBytes(ByteBuffer data) {
+        if (data.hasRemaining()) {
+            ByteBufferDestinationHelper.writeToUnsynchronized(data, this);
+        }
+    }
+
+    @Override
+    public void writeBytes(byte[] data, int offset, int length) {
+        if (length > 0) {
+            ByteBufferDestinationHelper.writeToUnsynchronized(data, offset, length, this);
+        }
+    }
+
+    /**
+     * Writes all buffered bytes and flushes the underlying
+     * {@link OutputStream}.
+     */
+    void flush() {
+        drain(this.buffer);
+        try {
+            this.out.flush();
+        } catch (IOException e) {
+            throw new AppenderLoggingException("Failed to flush console", e);
+        }
+    }
+
+}
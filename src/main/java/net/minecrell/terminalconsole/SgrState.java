@@ -0,0 +1,346 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Minecrell <https://github.com/Minecrell>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.minecrell.terminalconsole;
+
+import org.apache.logging.log4j.core.util.Constants;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Tracks the SGR (Select Graphic Rendition) state of the text formatted by
+ * the converters in this package, so that only the escape codes required to
+ * get from the current to the wanted style are emitted.
+ *
+ * <p>The state is shared (thread-local) between nested converters that
+ * format into the same {@link StringBuilder}, e.g.
+ * {@code %highlightError{%minecraftFormatting{%message}}}. Converters must
+ * call {@link #enter(StringBuilder, int)} before and {@link #exit(StringBuilder)}
+ * after modifying the style.</p>
+ *
+ * <p>The state is initially unknown (inexact). Escape codes that were not
+ * emitted through this class (e.g. by other converters or in the message
+ * itself) make the state inexact as well. The next change of the style
+ * then starts with a full reset, so the output always looks the same as if
+ * every code had been written out completely.</p>
+ */
+final class SgrState {
+
+    static final String ANSI_RESET = "\u001B[m";
+
+    private static final char ESCAPE = '\u001B';
+
+    /**
+     * The default color of the terminal.
+     */
+    static final int DEFAULT_COLOR = 0;
+
+    // The upper bits of the color store the type of the color
+    private static final int COLOR_SGR = 1 << 24;
+    private static final int COLOR_256 = 2 << 24;
+    private static final int COLOR_RGB = 3 << 24;
+    private static final int COLOR_TYPE_MASK = 3 << 24;
+    private static final int COLOR_VALUE_MASK = 0xFFFFFF;
+
+    static final int BRIGHT = 1;
+    static final int BLINK = 1 << 1;
+    static final int BOLD = 1 << 2;
+    static final int STRIKETHROUGH = 1 << 3;
+    static final int UNDERLINE = 1 << 4;
+    static final int ITALIC = 1 << 5;
+
+    private static final String[] ATTRIBUTE_CODES = {
+            "1",  // Bright
+            "5",  // Blink
+            "21", // Bold (as used for §l)
+            "9",  // Strikethrough
+            "4",  // Underline
+            "3",  // Italic
+    };
+
+    private static final @Nullable ThreadLocal<SgrState> states = Constants.ENABLE_THREADLOCALS ? new ThreadLocal<>() : null;
+
+    private int color = DEFAULT_COLOR;
+    private int attributes;
+
+    /**
+     * Whether {@link #color} and {@link #attributes} are known to match
+     * the state of the terminal at {@link #mark}. Otherwise, they only
+     * contain the style that was added since the state became inexact.
+     */
+    private boolean exact;
+
+    /**
+     * The index up to which the buffer was checked for foreign escape codes.
+     */
+    private int mark;
+
+    private int depth;
+    private @Nullable StringBuilder buffer;
+
+    private SgrState() {
+    }
+
+    /**
+     * Creates a color using one of the basic SGR color codes (e.g.
+     * {@code 31} for red).
+     *
+     * @param code The SGR color code
+     * @return The color
+     */
+    static int sgrColor(int code) {
+        return COLOR_SGR | code;
+    }
+
+    /**
+     * Creates a color using the xterm 256 color palette.
+     *
+     * @param index The index in the palette
+     * @return The color
+     */
+    static int paletteColor(int index) {
+        return COLOR_256 | index;
+    }
+
+    /**
+     * Creates a 24-bit RGB color.
+     *
+     * @param rgb The RGB color
+     * @return The color
+     */
+    static int rgbColor(int rgb) {
+        return COLOR_RGB | rgb;
+    }
+
+    /**
+     * Starts tracking the state for a converter that modifies the style of
+     * the text starting at the specified index.
+     *
+     * @param buf The string builder the converter formats into
+     * @param start The index of the first character of the converter
+     * @return The state to use, must be passed to {@link #exit(StringBuilder)}
+     */
+    static SgrState enter(StringBuilder buf, int start) {
+        @Nullable SgrState state = states != null ? states.get() : null;
+        if (state == null) {
+            state = new SgrState();
+            if (states != null) {
+                states.set(state);
+            }
+        } else if (state.depth > 0 && state.buffer != buf) {
+            // Formatting into a separate buffer that will be inserted into the outer
+            // buffer later, so we no longer know the state of the outer buffer
+            state.invalidate();
+            state = new SgrState();
+        }
+
+        if (state.depth++ == 0) {
+            state.buffer = buf;
+            // The style of the text before (e.g. written by another layout or
+            // a previous line) is unknown, so the first change requires a reset
+            state.invalidate();
+        } else if (indexOfEscape(buf, state.mark, start) != -1) {
+            state.invalidate();
+        }
+        state.mark = start;
+        return state;
+    }
+
+    /**
+     * Stops tracking the state for a converter.
+     *
+     * @param buf The string builder the converter formatted into
+     */
+    void exit(StringBuilder buf) {
+        sync(buf);
+        if (--this.depth == 0) {
+            this.buffer = null;
+        }
+    }
+
+    /**
+     * Returns a snapshot of the state that can be restored using
+     * {@link #restore(long, int)}.
+     *
+     * @return The snapshot
+     */
+    long save() {
+        return (long) this.color << 32 | (long) this.attributes << 1 | (this.exact ? 1 : 0);
+    }
+
+    /**
+     * Restores a snapshot of the state after the text was truncated.
+     *
+     * @param saved The snapshot returned by {@link #save()}
+     * @param mark The new length of the text
+     */
+    void restore(long saved, int mark) {
+        this.color = (int) (saved >>> 32);
+        this.attributes = (int) saved >>> 1;
+        this.exact = (saved & 1) != 0;
+        this.mark = mark;
+    }
+
+    /**
+     * Resets the style to the default style.
+     *
+     * @param buf The string builder to append to
+     */
+    void reset(StringBuilder buf) {
+        set(buf, DEFAULT_COLOR, 0);
+    }
+
+    /**
+     * Changes the style to exactly the specified color and attributes.
+     *
+     * @param buf The string builder to append to
+     * @param color The color, or {@link #DEFAULT_COLOR}
+     * @param attributes The attributes
+     */
+    void set(StringBuilder buf, int color, int attributes) {
+        sync(buf);
+        if (this.exact) {
+            if (color == this.color && attributes == this.attributes) {
+                return;
+            }
+
+            if ((this.attributes & ~attributes) == 0 && (color != DEFAULT_COLOR || this.color == DEFAULT_COLOR)) {
+                // Only need to add something, no reset required
+                append(buf, false, color != this.color ? color : DEFAULT_COLOR, attributes & ~this.attributes);
+                this.color = color;
+                this.attributes = attributes;
+                this.mark = buf.length();
+                return;
+            }
+        }
+
+        append(buf, true, color, attributes);
+        this.color = color;
+        this.attributes = attributes;
+        this.exact = true;
+        this.mark = buf.length();
+    }
+
+    /**
+     * Adds the specified color and attributes to the current style, without
+     * resetting the other attributes.
+     *
+     * @param buf The string builder to append to
+     * @param color The new color, or {@link #DEFAULT_COLOR} to keep the current color
+     * @param attributes The attributes to add
+     */
+    void add(StringBuilder buf, int color, int attributes) {
+        sync(buf);
+        // Even if the state is inexact, the style that was added since is still active
+        if (color == this.color) {
+            color = DEFAULT_COLOR;
+        }
+        attributes &= ~this.attributes;
+        if (color == DEFAULT_COLOR && attributes == 0) {
+            return;
+        }
+
+        append(buf, false, color, attributes);
+        if (color != DEFAULT_COLOR) {
+            this.color = color;
+        }
+        this.attributes |= attributes;
+        this.mark = buf.length();
+    }
+
+    private void sync(StringBuilder buf) {
+        int length = buf.length();
+        if (indexOfEscape(buf, this.mark, length) != -1) {
+            invalidate();
+        }
+        this.mark = length;
+    }
+
+    private void invalidate() {
+        this.color = DEFAULT_COLOR;
+        this.attributes = 0;
+        this.exact = false;
+    }
+
+    private static void append(StringBuilder buf, boolean reset, int color, int attributes) {
+        if (reset && color == DEFAULT_COLOR && attributes == 0) {
+            buf.append(ANSI_RESET);
+            return;
+        }
+
+        buf.append(ESCAPE).append('[');
+        boolean separator = false;
+        if (reset) {
+            buf.append('0');
+            separator = true;
+        }
+
+        if (color != DEFAULT_COLOR) {
+            if (separator) {
+                buf.append(';');
+            }
+            appendColor(buf, color);
+            separator = true;
+        }
+
+        for (int i = 0; attributes != 0; i++, attributes >>>= 1) {
+            if ((attributes & 1) != 0) {
+                if (separator) {
+                    buf.append(';');
+                }
+                buf.append(ATTRIBUTE_CODES[i]);
+                separator = true;
+            }
+        }
+
+        buf.append('m');
+    }
+
+    private static void appendColor(StringBuilder buf, int color) {
+        int value = color & COLOR_VALUE_MASK;
+        switch (color & COLOR_TYPE_MASK) {
+            case COLOR_SGR:
+                buf.append(value);
+                break;
+            case COLOR_256:
+                buf.append("38;5;").append(value);
+                break;
+            default:
+                buf.append("38;2;")
+                        .append(value >> 16 & 0xFF).append(';')
+                        .append(value >> 8 & 0xFF).append(';')
+                        .append(value & 0xFF);
+                break;
+        }
+    }
+
+    private static int indexOfEscape(StringBuilder buf, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buf.charAt(i) == ESCAPE) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+}
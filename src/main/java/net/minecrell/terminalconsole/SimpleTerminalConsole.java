@@ -33,10 +33,13 @@
 import org.jline.reader.UserInterruptException;
 import org.jline.terminal.Terminal;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.net.SocketAddress;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Executor;
 
 /**
  * A simple, optional base implementation of a basic console input command
@@ -47,10 +50,27 @@
  * methods for your application. Consider overriding
  * {@link #buildReader(LineReaderBuilder)} to add further features to the
  * console (e.g. call {@link LineReaderBuilder#completer(Completer)} with
- * a custom completer to provide command completion).</p>
+ * a custom completer to provide command completion). Alternatively,
+ * register the available commands in a {@link CommandRegistry} and pass
+ * it to {@link #setCommandRegistry(CommandRegistry)}.</p>
+ *
+ * <p>By default, commands run on the thread reading the input, so the
+ * prompt is unresponsive while a command is running. Use
+ * {@link #setCommandParallelism(int)} to run them on separate threads
+ * instead.</p>
  */
 public abstract class SimpleTerminalConsole {
 
+    private volatile @Nullable CommandDispatcher commandDispatcher;
+    private volatile @Nullable CommandRegistry commandRegistry;
+    private volatile @Nullable Path historyFile;
+
+    // The thread reading from the terminal, interrupted if the application
+    // was stopped by a command running on a different thread
+    private final Object readerLock = new Object();
+    private @Nullable Thread readerThread; // Guarded by readerLock
+    private boolean readerInterrupted; // Guarded by readerLock
+
     /**
      * Determines if the application is still running and accepting input.
      *
@@ -88,6 +108,129 @@ protected void processInput(String input) {
         }
     }
 
+    /**
+     * Process multiple input lines that were read at once. This is used if
+     * no terminal is available, e.g. when commands are piped into the
+     * application. All lines that are available from a single read of the
+     * input stream (up to 64 KiB) are passed together.
+     *
+     * <p>The default implementation calls {@link #processInput(String)} for
+     * each line, until {@link #isRunning()} returns {@code false} (e.g. after
+     * a {@code stop} command). Override this method to handle the commands
+     * together, e.g. to acquire a lock only once for all of them.</p>
+     *
+     * @param inputs The input lines
+     */
+    protected void processInput(List<String> inputs) {
+        for (String input : inputs) {
+            if (!isRunning()) {
+                break;
+            }
+            processInput(input);
+        }
+    }
+
+    /**
+     * Called after an input line was processed.
+     *
+     * <p>The default implementation does nothing. Override this method to
+     * record how long commands take to complete.</p>
+     *
+     * @param input The input line
+     * @param latencyNanos The time (in nanoseconds) from reading the input
+     *     until {@link #processInput(String)} (or {@link #processInput(List)}
+     *     for the whole batch) returned, including the time the command was
+     *     waiting to be run
+     * @param failure The exception thrown while processing the input,
+     *     or null if it completed normally
+     */
+    protected void commandCompleted(String input, long latencyNanos, @Nullable Throwable failure) {
+    }
+
+    /**
+     * Sets how many commands may run at the same time, each on a separate
+     * thread from {@link #createCommandExecutor(int)}. With a parallelism of
+     * {@code 1}, commands run one after another in the order they were
+     * entered, but the prompt stays responsive. With {@code 0} (the default),
+     * commands run directly on the thread reading the input.
+     *
+     * <p>This must be called before {@link #start()} or
+     * {@link #startServer(SocketAddress)}.</p>
+     *
+     * @param parallelism The maximum number of commands running at the same
+     *     time, or {@code 0} to run commands on the reading thread
+     */
+    public void setCommandParallelism(int parallelism) {
+        if (parallelism < 0) {
+            throw new IllegalArgumentException("parallelism must not be negative: " + parallelism);
+        }
+        this.commandDispatcher = parallelism > 0
+                ? new CommandDispatcher(createCommandExecutor(parallelism), parallelism) : null;
+    }
+
+    /**
+     * Creates the executor used to run commands if enabled using
+     * {@link #setCommandParallelism(int)}. The number of commands running at
+     * the same time is limited separately, so the executor does not need to
+     * be bounded.
+     *
+     * <p>The default implementation uses virtual threads on Java 21 and newer,
+     * and a pool of {@code parallelism} daemon threads otherwise.</p>
+     *
+     * @param parallelism The maximum number of commands running at the same time
+     * @return The executor to run commands on
+     */
+    protected Executor createCommandExecutor(int parallelism) {
+        return CommandDispatcher.createDefaultExecutor(parallelism);
+    }
+
+    /**
+     * Returns the registry of commands used for command completion.
+     *
+     * @return The command registry, or null if not set
+     */
+    public @Nullable CommandRegistry getCommandRegistry() {
+        return this.commandRegistry;
+    }
+
+    /**
+     * Sets the registry of commands used for command completion. The
+     * {@link LineReaderBuilder} passed to {@link #buildReader(LineReaderBuilder)}
+     * is then configured with a {@link CommandCompleter} for the registry.
+     * Commands can still be registered after the console was started.
+     *
+     * <p>This must be called before {@link #start()}.</p>
+     *
+     * @param registry The command registry, or null to disable the
+     *     built-in command completion
+     */
+    public void setCommandRegistry(@Nullable CommandRegistry registry) {
+        this.commandRegistry = registry;
+    }
+
+    /**
+     * Returns the file the command history is stored in.
+     *
+     * @return The history file, or null if the history is not persisted
+     */
+    public @Nullable Path getHistoryFile() {
+        return this.historyFile;
+    }
+
+    /**
+     * Sets the file to store the command history in. The
+     * {@link LineReaderBuilder} passed to {@link #buildReader(LineReaderBuilder)}
+     * is then configured with a {@link ConsoleHistory}, and CTRL+R is bound
+     * to {@link ConsoleHistory#bindSearch(LineReader) its indexed search}.
+     *
+     * <p>This must be called before {@link #start()}.</p>
+     *
+     * @param file The history file, or null to keep the history only in memory
+     */
+    public void setHistoryFile(@Nullable Path file) {
+        this.historyFile = file;
+    }
+
     /**
      * Configures the {@link LineReaderBuilder} and {@link LineReader} with
      * additional options.
@@ -128,7 +271,11 @@ protected LineReader buildReader(LineReaderBuilder builder) {
      *
      * <ul>
      *     <li>{@link #isRunning()} returns {@code false}, indicating that the
-     *     application is shutting down.</li>
+     *     application is shutting down. If this happens after a command that
+     *     did not run on the thread reading the input (see
+     *     {@link #setCommandParallelism(int)} and
+     *     {@link #startServer(SocketAddress)}), the thread is interrupted to
+     *     stop waiting for input from the terminal.</li>
      *     <li>{@link #shutdown()} is triggered by the user (e.g. due to
      *     pressing CTRL+C)</li>
      *     <li>The input stream is closed.</li>
@@ -147,9 +294,46 @@ public void start() {
         }
     }
 
+    /**
+     * Starts a {@link ConsoleServer} that allows attaching to the console
+     * remotely. Lines received from the clients are passed to
+     * {@link #processInput(String)} in a separate thread, concurrently to
+     * the input from the console itself (unless commands are run
+     * asynchronously, see {@link #setCommandParallelism(int)}).
+     *
+     * @param address The address to bind to, either an
+     *     {@link java.net.InetSocketAddress} (preferably on the loopback
+     *     interface) or a Unix domain socket
+     * @return The started server, must be closed when no longer needed
+     * @throws IOException If an I/O error occurs
+     * @see ConsoleServer#unixDomainSocketAddress(java.nio.file.Path)
+     */
+    public ConsoleServer startServer(SocketAddress address) throws IOException {
+        return ConsoleServer.open(address, this::dispatchInput);
+    }
+
     private void readCommands(Terminal terminal) {
-        LineReader reader = buildReader(LineReaderBuilder.builder().terminal(terminal));
+        LineReaderBuilder builder = LineReaderBuilder.builder().terminal(terminal);
+        @Nullable CommandRegistry registry = this.commandRegistry;
+        if (registry != null) {
+            builder.completer(new CommandCompleter(registry));
+        }
+
+        @Nullable ConsoleHistory history = null;
+        @Nullable Path historyFile = this.historyFile;
+        if (historyFile != null) {
+            history = new ConsoleHistory(historyFile);
+            builder.history(history);
+        }
+
+        LineReader reader = buildReader(builder);
+        if (history != null && reader.getHistory() == history) {
+            history.bindSearch(reader);
+        }
         TerminalConsoleAppender.setReader(reader);
+        synchronized (this.readerLock) {
+            this.readerThread = Thread.currentThread();
+        }
 
         try {
             String line;
@@ -165,20 +349,125 @@ private void readCommands(Terminal terminal) {
                     break;
                 }
 
-                processInput(line);
+                dispatchInput(line);
             }
         } catch (UserInterruptException e) {
-            shutdown();
+            // Also thrown if the thread was interrupted after the application was stopped
+            if (isRunning()) {
+                shutdown();
+            }
         } finally {
+            synchronized (this.readerLock) {
+                this.readerThread = null;
+                if (this.readerInterrupted) {
+                    // Clear the interrupt in case it arrived after reading the last line
+                    this.readerInterrupted = false;
+                    Thread.interrupted();
+                }
+            }
+
             TerminalConsoleAppender.setReader(null);
+            if (history != null) {
+                history.close();
+            }
         }
     }
 
     private void readCommands(InputStream in) throws IOException {
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in))) {
-            String line;
-            while (isRunning() && (line = reader.readLine()) != null) {
-                processInput(line);
+        // Neither closing the reader nor interrupting the thread may close System.in
+        LineBatchReader reader = new LineBatchReader(new InputStreamChannel(in), Charset.defaultCharset());
+        @Nullable List<String> lines;
+        while (isRunning() && (lines = reader.readBatch()) != null) {
+            dispatchInput(lines);
+        }
+    }
+
+    /**
+     * Interrupts the thread reading from the terminal, so it stops waiting
+     * for input after the application was stopped by a command running on
+     * a different thread.
+     */
+    private void interruptReader() {
+        synchronized (this.readerLock) {
+            @Nullable Thread thread = this.readerThread;
+            if (thread != null && thread != Thread.currentThread()) {
+                this.readerInterrupted = true;
+                thread.interrupt();
+            }
+        }
+    }
+
+    private void dispatchInput(String input) {
+        long start = System.nanoTime();
+        @Nullable CommandDispatcher dispatcher = this.commandDispatcher;
+        if (dispatcher == null) {
+            runInput(input, start);
+            return;
+        }
+
+        dispatcher.execute(() -> {
+            try {
+                runInput(input, start);
+            } catch (RuntimeException | Error e) {
+                LogManager.getLogger("TerminalConsole").error("Failed to run command: {}", input, e);
+                if (e instanceof Error) {
+                    // The dispatcher releases the slot and continues with the next command
+                    throw e;
+                }
+            }
+        });
+    }
+
+    private void dispatchInput(List<String> inputs) {
+        long start = System.nanoTime();
+        @Nullable CommandDispatcher dispatcher = this.commandDispatcher;
+        if (dispatcher == null) {
+            runInput(inputs, start);
+            return;
+        }
+
+        dispatcher.execute(() -> {
+            try {
+                runInput(inputs, start);
+            } catch (RuntimeException | Error e) {
+                LogManager.getLogger("TerminalConsole").error("Failed to run {} commands", inputs.size(), e);
+                if (e instanceof Error) {
+                    // The dispatcher releases the slot and continues with the next command
+                    throw e;
+                }
+            }
+        });
+    }
+
+    private void runInput(List<String> inputs, long start) {
+        @Nullable Throwable failure = null;
+        try {
+            processInput(inputs);
+        } catch (RuntimeException | Error e) {
+            failure = e;
+            throw e;
+        } finally {
+            long latency = System.nanoTime() - start;
+            for (String input : inputs) {
+                commandCompleted(input, latency, failure);
+            }
+            if (!isRunning()) {
+                interruptReader();
+            }
+        }
+    }
+
+    private void runInput(String input, long start) {
+        @Nullable Throwable failure = null;
+        try {
+            processInput(input);
+        } catch (RuntimeException | Error e) {
+            failure = e;
+            throw e;
+        } finally {
+            commandCompleted(input, System.nanoTime() - start, failure);
+            if (!isRunning()) {
+                interruptReader();
             }
         }
     }
@@ -0,0 +1,224 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Minecrell <https://github.com/Minecrell>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.minecrell.terminalconsole;
+
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.config.Configuration;
+import org.apache.logging.log4j.core.config.plugins.Plugin;
+import org.apache.logging.log4j.core.layout.PatternLayout;
+import org.apache.logging.log4j.core.pattern.ConverterKeys;
+import org.apache.logging.log4j.core.pattern.LogEventPatternConverter;
+import org.apache.logging.log4j.core.pattern.PatternConverter;
+import org.apache.logging.log4j.core.pattern.PatternFormatter;
+import org.apache.logging.log4j.core.pattern.PatternParser;
+import org.apache.logging.log4j.util.PerformanceSensitive;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.List;
+
+/**
+ * Removes ANSI escape sequences from the result of a pattern, e.g. colors
+ * added to log messages by third-party libraries. This is useful for log
+ * files or other appenders that do not support ANSI escape codes.
+ *
+ * <p>It removes control sequences ({@code ESC [ ... final}, e.g. SGR codes
+ * like {@code ESC[31m}), operating system commands ({@code ESC ] ... BEL}
+ * or {@code ESC ] ... ESC \}, e.g. hyperlinks or window titles) and other
+ * escape sequences (e.g. {@code ESC ( B}). The 8-bit variants of CSI and
+ * OSC are recognized as well.</p>
+ *
+ * <p>Unlike the other converters, it does not depend on
+ * {@link TerminalConsoleAppender} and the escape codes are always
+ * removed.</p>
+ *
+ * <p><b>Example usage:</b> {@code %stripAnsi{%message}}</p>
+ */
+@Plugin(name = "stripAnsi", category = PatternConverter.CATEGORY)
+@ConverterKeys({ "stripAnsi" })
+@PerformanceSensitive("allocation")
+public final class StripAnsiConverter extends LogEventPatternConverter {
+
+    private static final char ESC = '\u001B';
+    private static final char BEL = '\u0007';
+    private static final char CSI = '\u009B';
+    private static final char OSC = '\u009D';
+    private static final char ST = '\u009C';
+
+    private final List<PatternFormatter> formatters;
+
+    /**
+     * Construct the converter.
+     *
+     * @param formatters The pattern formatters to generate the text to strip
+     */
+    protected StripAnsiConverter(List<PatternFormatter> formatters) {
+        super("stripAnsi", null);
+        this.formatters = formatters;
+    }
+
+    @Override
+    public void format(LogEvent event, StringBuilder toAppendTo) {
+        int start = toAppendTo.length();
+        //noinspection ForLoopReplaceableByForEach
+        for (int i = 0, size = formatters.size(); i < size; i++) {
+            formatters.get(i).format(event, toAppendTo);
+        }
+
+        strip(toAppendTo, start);
+    }
+
+    private static boolean isEscape(char c) {
+        return c == ESC || c == CSI || c == OSC;
+    }
+
+    /**
+     * Removes all ANSI escape sequences in the {@link StringBuilder},
+     * starting at the specified index.
+     *
+     * @param buf The string builder with the text to strip
+     * @param start The index of the first character to strip
+     */
+    static void strip(StringBuilder buf, int start) {
+        int length = buf.length();
+        int next = start;
+        while (next < length && !isEscape(buf.charAt(next))) {
+            next++;
+        }
+        if (next == length) {
+            // Fast path: nothing to strip
+            return;
+        }
+
+        // Removing escape sequences only makes the text shorter,
+        // so we can move the remaining characters forward in place
+        int pos = next;
+        for (int i = next; i < length; ) {
+            char c = buf.charAt(i);
+            if (isEscape(c)) {
+                i = skipSequence(buf, i, length);
+            } else {
+                if (pos != i) {
+                    buf.setCharAt(pos, c);
+                }
+                pos++;
+                i++;
+            }
+        }
+        buf.setLength(pos);
+    }
+
+    /**
+     * Returns the index after the escape sequence starting at the specified
+     * index. Incomplete sequences are skipped up to the first character that
+     * does not belong to the sequence.
+     *
+     * @param buf The text
+     * @param i The index of the escape character
+     * @param length The length of the text
+     * @return The index of the first character after the sequence
+     */
+    private static int skipSequence(StringBuilder buf, int i, int length) {
+        char c = buf.charAt(i++);
+        if (c == ESC) {
+            if (i == length) {
+                return i;
+            }
+
+            c = buf.charAt(i);
+            if (c == '[') {
+                c = CSI;
+                i++;
+            } else if (c == ']') {
+                c = OSC;
+                i++;
+            } else {
+                // Other sequences: intermediate bytes followed by a final byte
+                while (i < length && (c = buf.charAt(i)) >= 0x20 && c <= 0x2F) {
+                    i++;
+                }
+                if (i < length && c >= 0x30 && c <= 0x7E) {
+                    i++;
+                }
+                return i;
+            }
+        }
+
+        if (c == CSI) {
+            // Parameter bytes, intermediate bytes and a final byte
+            while (i < length && (c = buf.charAt(i)) >= 0x20 && c <= 0x3F) {
+                i++;
+            }
+            if (i < length && c >= 0x40 && c <= 0x7E) {
+                i++;
+            }
+            return i;
+        }
+
+        // OSC: Any text terminated by BEL or ST
+        for (; i < length; i++) {
+            c = buf.charAt(i);
+            if (c == BEL || c == ST) {
+                return i + 1;
+            } else if (c == ESC && i + 1 < length && buf.charAt(i + 1) == '\\') {
+                return i + 2;
+            }
+        }
+        return i;
+    }
+
+    @Override
+    public boolean handlesThrowable() {
+        for (final PatternFormatter formatter : formatters) {
+            if (formatter.handlesThrowable()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets a new instance of the {@link StripAnsiConverter} with the
+     * specified options.
+     *
+     * @param config The current configuration
+     * @param options The pattern options
+     * @return The new instance
+     */
+    public static @Nullable StripAnsiConverter newInstance(Configuration config, String[] options) {
+        if (options.length != 1) {
+            LOGGER.error("Incorrect number of options on stripAnsi. Expected 1 received " + options.length);
+            return null;
+        }
+        if (options[0] == null) {
+            LOGGER.error("No pattern supplied on stripAnsi");
+            return null;
+        }
+
+        PatternParser parser = PatternLayout.createPatternParser(config);
+        List<PatternFormatter> formatters = parser.parse(options[0]);
+        return new StripAnsiConverter(formatters);
+    }
+
+}
@@ -42,6 +42,10 @@
  *
  *     <p><b>Example usage:</b>
  *     {@code <PatternLayout ... disableAnsi="${tca:disableAnsi}">}</p></li>
+ *     <li>{@code ${tca:colorDepth}}: The number of colors supported by the
+ *     console ({@code 16}, {@code 256} or {@code 16777216}).</li>
+ *     <li>{@code ${tca:width}}: The width of the console in columns, or
+ *     {@code 0} if unknown.</li>
  * </ul>
  */
 @Plugin(name = "tca", category = StrLookup.CATEGORY)
@@ -52,11 +56,25 @@ public final class TCALookup extends AbstractLookup {
      */
     public final static String KEY_DISABLE_ANSI = "disableAnsi";
 
+    /**
+     * Lookup key that returns the number of colors supported by the console.
+     */
+    public final static String KEY_COLOR_DEPTH = "colorDepth";
+
+    /**
+     * Lookup key that returns the width of the console.
+     */
+    public final static String KEY_WIDTH = "width";
+
     @Override
     @Nullable
     public String lookup(LogEvent event, String key) {
         if (KEY_DISABLE_ANSI.equals(key)) {
-            return String.valueOf(!TerminalConsoleAppender.isAnsiSupported());
+            return String.valueOf(!TerminalConsoleAppender.getCapabilities().isAnsiSupported());
+        } else if (KEY_COLOR_DEPTH.equals(key)) {
+            return String.valueOf(TerminalConsoleAppender.getCapabilities().getColorDepth());
+        } else if (KEY_WIDTH.equals(key)) {
+            return String.valueOf(TerminalConsoleAppender.getCapabilities().getWidth());
         }
         return null;
     }
@@ -0,0 +1,94 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Minecrell <https://github.com/Minecrell>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.minecrell.terminalconsole;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * An immutable snapshot of the capabilities of the console, detected once
+ * when the terminal is initialized.
+ *
+ * @see TerminalConsoleAppender#getCapabilities()
+ */
+public final class TerminalCapabilities {
+
+    private final @Nullable String type;
+    private final boolean ansi;
+    private final int colorDepth;
+    private final int width;
+
+    TerminalCapabilities(@Nullable String type, boolean ansi, int colorDepth, int width) {
+        this.type = type;
+        this.ansi = ansi;
+        this.colorDepth = colorDepth;
+        this.width = width;
+    }
+
+    /**
+     * Returns the type of the JLine terminal (e.g. {@code xterm-256color}).
+     *
+     * @return The terminal type, or null if JLine is not used
+     */
+    public @Nullable String getType() {
+        return this.type;
+    }
+
+    /**
+     * Returns whether ANSI escapes codes should be written to the console
+     * output.
+     *
+     * @return true if ANSI escapes codes should be written to the console
+     * @see TerminalConsoleAppender#isAnsiSupported()
+     */
+    public boolean isAnsiSupported() {
+        return this.ansi;
+    }
+
+    /**
+     * Returns the number of colors supported by the console. This is either
+     * {@code 16}, {@code 256} or {@code 16777216} (24-bit RGB colors).
+     *
+     * @return The number of supported colors
+     */
+    public int getColorDepth() {
+        return this.colorDepth;
+    }
+
+    /**
+     * Returns the width of the console (in columns) when it was detected.
+     *
+     * @return The width, or {@code 0} if unknown
+     */
+    public int getWidth() {
+        return this.width;
+    }
+
+    @Override
+    public String toString() {
+        return "TerminalCapabilities{type=" + this.type + ", ansi=" + this.ansi
+                + ", colorDepth=" + this.colorDepth + ", width=" + this.width + '}';
+    }
+
+}
@@ -24,24 +24,43 @@
 
 package net.minecrell.terminalconsole;
 
+import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.core.Appender;
 import org.apache.logging.log4j.core.Core;
 import org.apache.logging.log4j.core.Filter;
 import org.apache.logging.log4j.core.Layout;
 import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.StringLayout;
 import org.apache.logging.log4j.core.appender.AbstractAppender;
 import org.apache.logging.log4j.core.config.Property;
 import org.apache.logging.log4j.core.config.plugins.Plugin;
+import org.apache.logging.log4j.core.config.plugins.PluginBuilderAttribute;
 import org.apache.logging.log4j.core.config.plugins.PluginBuilderFactory;
+import org.apache.logging.log4j.core.util.Constants;
 import org.apache.logging.log4j.util.PropertiesUtil;
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.jline.reader.LineReader;
 import org.jline.terminal.Terminal;
 import org.jline.terminal.TerminalBuilder;
+import org.jline.utils.InfoCmp;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintStream;
 import java.io.Serializable;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
 
 /**
  * An {@link Appender} that uses the JLine 3.x {@link Terminal} to print messages
@@ -82,7 +101,58 @@
  *     <li>{@link #ANSI_OVERRIDE_PROPERTY} - To enable the output of ANSI
  *     escape codes. May be used to force the use of ANSI escape codes
  *     if JLine is disabled or to disable them if it is enabled.</li>
+ *     <li>{@link #PROVIDER_PROPERTY} - To select the JLine terminal provider
+ *     instead of trying all of them. Can also be set using the
+ *     {@code provider} attribute.</li>
  * </ul>
+ *
+ * <p>The detected capabilities of the console are available using
+ * {@link #getCapabilities()}.</p>
+ *
+ * <p>Writing to the terminal blocks the logging thread until the message
+ * was printed and the input line was redrawn. With {@code async="true"}
+ * messages are only added to a bounded queue and written to the console
+ * from a separate thread. The {@code overflowPolicy} decides what happens
+ * if the queue is full (see {@link OverflowPolicy}):</p>
+ *
+ * <pre>{@code  <TerminalConsole async="true" bufferSize="1024" overflowPolicy="DROP_BELOW_LEVEL" overflowLevel="WARN">
+ *     <PatternLayout pattern="[%d{HH:mm:ss} %level]: %msg%n"/>
+ * </TerminalConsole>}</pre>
+ *
+ * <p>With asynchronous output, all messages that are queued at the same
+ * time are printed together with a single redraw of the input line. The
+ * number of messages per redraw is limited by {@code batchSize}.
+ * {@code lingerTime} can be set to wait a few milliseconds for more
+ * messages before printing a batch.</p>
+ *
+ * <p>To protect the console from flooding, {@code rateLimit} limits the
+ * number of messages per second for each level or logger (see
+ * {@link RateLimitScope}). Messages over the limit are discarded before they
+ * are formatted and the number of suppressed messages is printed every
+ * {@code rateLimitSummaryInterval} milliseconds instead. Messages at or above
+ * {@code rateLimitLevel} are never suppressed. The limit only applies to the
+ * console, other appenders still receive all messages.</p>
+ *
+ * <pre>{@code  <TerminalConsole rateLimit="200" rateLimitBurst="1000" rateLimitScope="LOGGER">
+ *     <PatternLayout pattern="[%d{HH:mm:ss} %level]: %msg%n"/>
+ * </TerminalConsole>}</pre>
+ *
+ * <p>With {@code duplicateWindow}, consecutive duplicates of a message (with
+ * the same level, logger and formatted message) are held back before they
+ * are formatted. Their number is printed as a single line once a different
+ * message is logged, or at the latest {@code duplicateWindow} milliseconds
+ * after the first duplicate.</p>
+ *
+ * <p>The terminal is detected in a separate thread when the appender is
+ * created, so it does not delay the startup of the application. Messages
+ * logged in the meantime are buffered and written in order once the
+ * terminal is ready. If that takes longer than {@code initTimeout}
+ * milliseconds, the appender falls back to the standard output.</p>
+ *
+ * <p>With {@code scrollbackLines} or {@code scrollbackSize}, the most recent
+ * console output is kept in memory and can be retrieved using
+ * {@link #getScrollback()}. It is also sent to clients that connect to a
+ * {@link ConsoleServer}.</p>
  */
 @Plugin(name = TerminalConsoleAppender.PLUGIN_NAME, category = Core.CATEGORY_NAME, elementType = Appender.ELEMENT_TYPE, printObject = true)
 public final class TerminalConsoleAppender extends AbstractAppender {
@@ -123,16 +193,72 @@ public final class TerminalConsoleAppender extends AbstractAppender {
 
     private static final @Nullable Boolean ANSI_OVERRIDE = getOptionalBooleanProperty(ANSI_OVERRIDE_PROPERTY);
 
+    /**
+     * System property that selects the provider JLine uses to access the
+     * terminal, skipping the detection of the other providers. Supported
+     * values are {@code exec}, {@code jansi}, {@code jna} and {@code dumb}
+     * (see {@link Provider}).
+     *
+     * <p>If this system property is not set, or set to an invalid value,
+     * JLine tries all available providers.</p>
+     */
+    public static final String PROVIDER_PROPERTY = PROPERTY_PREFIX + ".provider";
+
+    private static final long DEFAULT_INIT_TIMEOUT = 2000;
+
+    private static final int DEFAULT_SCROLLBACK_LINES = 10000;
+    private static final int DEFAULT_SCROLLBACK_SIZE = 1024 * 1024;
+
+    /**
+     * The maximum number of texts from different threads printed at once.
+     */
+    private static final int MAX_PRINT_BATCH_SIZE = 256;
+
+    /**
+     * The maximum capacity of the reusable buffer for joined texts.
+     */
+    private static final int MAX_PRINT_BATCH_CAPACITY = 64 * 1024;
+
     /**
      * We grab the standard output {@link PrintStream} early, otherwise we
      * might cause infinite loops later if the application redirects
      * {@link System#out} to Log4J.
      */
     private static final PrintStream stdout = System.out;
+    private static final Charset stdoutCharset = getStandardOutputCharset();
 
-    private static boolean initialized;
-    private static @Nullable Terminal terminal;
-    private static @Nullable LineReader reader;
+    /**
+     * The maximum number of events buffered per appender while the terminal
+     * is being initialized.
+     */
+    private static final int MAX_PENDING_EVENTS = 4096;
+
+    private static volatile boolean initialized;
+    private static @Nullable Thread initializer;
+    private static long initDeadline;
+    private static @Nullable Provider selectedProvider = parseProvider(
+            PropertiesUtil.getProperties().getStringProperty(PROVIDER_PROPERTY));
+    private static volatile Function<@Nullable Provider, @Nullable Terminal> terminalFactory =
+            TerminalConsoleAppender::createTerminal;
+    private static final Set<TerminalConsoleAppender> pendingAppenders = ConcurrentHashMap.newKeySet();
+
+    private static volatile @Nullable Terminal terminal;
+    private static volatile @Nullable LineReader reader;
+    private static volatile @Nullable TerminalCapabilities capabilities;
+
+    /**
+     * Guards the console output. Threads that cannot acquire the lock leave
+     * their text in {@link #printQueue}, it is printed by the thread holding
+     * the lock together with its own text.
+     */
+    private static final ReentrantLock outputLock = new ReentrantLock();
+    private static final Queue<PendingText> printQueue = new ConcurrentLinkedQueue<>();
+    private static final StringBuilder printBatch = new StringBuilder(); // Guarded by outputLock
+    private static @Nullable OutputStreamDestination destination; // Guarded by outputLock
+
+    private static final List<ConsoleServer> servers = new CopyOnWriteArrayList<>();
+    private static volatile @Nullable ConsoleScrollback scrollback; // Modified with outputLock
+    private static int scrollbackUsers; // Guarded by outputLock
 
     /**
      * Returns the {@link Terminal} that is used to print messages to the
@@ -144,6 +270,8 @@ public final class TerminalConsoleAppender extends AbstractAppender {
      * @see TerminalConsoleAppender
      */
     public synchronized static @Nullable Terminal getTerminal() {
+        if (!initialized)
+            initializeTerminal();
         return terminal;
     }
 
@@ -176,6 +304,56 @@ public synchronized static void setReader(@Nullable LineReader newReader) {
         reader = newReader;
     }
 
+    /**
+     * Replaces the {@link Terminal} used by the appender, skipping the
+     * automatic detection. Only intended for tests and benchmarks.
+     *
+     * @param newTerminal The new terminal, or null to use standard output
+     */
+    static void setTerminal(@Nullable Terminal newTerminal) {
+        outputLock.lock();
+        try {
+            synchronized (TerminalConsoleAppender.class) {
+                initializer = null;
+                setInitialized(newTerminal);
+                reader = null;
+                destination = null;
+            }
+        } finally {
+            releaseOutput();
+        }
+    }
+
+    /**
+     * Replaces the function that creates the {@link Terminal} when the
+     * appender is initialized. Only intended for tests.
+     *
+     * @param factory The new terminal factory, or null to restore the
+     *     automatic detection
+     */
+    static void setTerminalFactory(@Nullable Function<@Nullable Provider, @Nullable Terminal> factory) {
+        terminalFactory = factory != null ? factory : TerminalConsoleAppender::createTerminal;
+    }
+
+    /**
+     * Returns the capabilities of the console, detected once when the
+     * terminal is initialized.
+     *
+     * @return The console capabilities
+     */
+    public static TerminalCapabilities getCapabilities() {
+        @Nullable TerminalCapabilities result = capabilities;
+        if (result == null) {
+            initializeTerminal();
+            result = capabilities;
+            if (result == null) {
+                // The terminal was closed concurrently
+                result = detectCapabilities(null);
+            }
+        }
+        return result;
+    }
+
     /**
      * Returns whether ANSI escapes codes should be written to the console
      * output.
@@ -187,9 +365,47 @@ public synchronized static void setReader(@Nullable LineReader newReader) {
      * @return true if ANSI escapes codes should be written to the console
      */
     public static boolean isAnsiSupported() {
-        if (!initialized)
-            initializeTerminal();
-        return ANSI_OVERRIDE != null ? ANSI_OVERRIDE : terminal != null;
+        return getCapabilities().isAnsiSupported();
+    }
+
+    private final @Nullable AsyncConsoleWriter asyncWriter;
+    private final @Nullable ConsoleRateLimiter rateLimiter;
+    private final @Nullable ConsoleDuplicateFilter duplicateFilter;
+    private final @Nullable ScrollbackSettings scrollbackSettings;
+    private boolean scrollbackAcquired; // Guarded by outputLock
+
+    // Events logged before the terminal was initialized
+    private final Object pendingLock = new Object();
+    private volatile boolean buffering;
+    private @Nullable List<LogEvent> pending;
+
+    private static TerminalCapabilities detectCapabilities(@Nullable Terminal terminal) {
+        boolean ansi = ANSI_OVERRIDE != null ? ANSI_OVERRIDE : terminal != null;
+        if (terminal == null) {
+            return new TerminalCapabilities(null, ansi, AnsiColors.COLORS_16, 0);
+        }
+        return new TerminalCapabilities(terminal.getType(), ansi, detectColorDepth(terminal), Math.max(0, terminal.getWidth()));
+    }
+
+    private static int detectColorDepth(@Nullable Terminal terminal) {
+        // Most terminals with 24-bit color support announce it using COLORTERM
+        String colorTerm = System.getenv("COLORTERM");
+        if (colorTerm != null && (colorTerm.contains("truecolor") || colorTerm.contains("24bit"))) {
+            return AnsiColors.TRUE_COLOR;
+        }
+
+        if (terminal != null) {
+            @Nullable Integer maxColors = terminal.getNumericCapability(InfoCmp.Capability.max_colors);
+            if (maxColors != null) {
+                if (maxColors >= AnsiColors.TRUE_COLOR) {
+                    return AnsiColors.TRUE_COLOR;
+                } else if (maxColors >= AnsiColors.COLORS_256) {
+                    return AnsiColors.COLORS_256;
+                }
+            }
+        }
+
+        return AnsiColors.COLORS_16;
     }
 
     /**
@@ -205,90 +421,690 @@ public static boolean isAnsiSupported() {
      */
     protected TerminalConsoleAppender(String name, Filter filter, Layout<? extends Serializable> layout,
             boolean ignoreExceptions, Property[] properties) {
+        this(name, filter, layout, ignoreExceptions, properties, null, null, null, null, DEFAULT_INIT_TIMEOUT, null);
+    }
+
+    private TerminalConsoleAppender(String name, Filter filter, Layout<? extends Serializable> layout,
+            boolean ignoreExceptions, Property[] properties, @Nullable AsyncConsoleWriter asyncWriter,
+            @Nullable ConsoleRateLimiter rateLimiter, @Nullable ConsoleDuplicateFilter duplicateFilter,
+            @Nullable ScrollbackSettings scrollbackSettings, long initTimeout, @Nullable Provider provider) {
         super(name, filter, layout, ignoreExceptions, properties);
-        if (!initialized)
-            initializeTerminal();
+        this.asyncWriter = asyncWriter;
+        this.rateLimiter = rateLimiter;
+        this.duplicateFilter = duplicateFilter;
+        this.scrollbackSettings = scrollbackSettings;
+        ConsoleMetrics.registerIfEnabled();
+        if (!initialized) {
+            this.pending = new ArrayList<>();
+            this.buffering = true;
+            pendingAppenders.add(this);
+            startInitialization(initTimeout, provider);
+        }
     }
 
+    /**
+     * Starts detecting the terminal in a separate thread, because it might
+     * need to start external processes (e.g. {@code stty}).
+     *
+     * @param timeout The maximum time (in milliseconds) to wait for the terminal
+     * @param provider The terminal provider to use, or null to use the
+     *     {@link #PROVIDER_PROPERTY} system property
+     */
+    private synchronized static void startInitialization(long timeout, @Nullable Provider provider) {
+        if (!initialized && initializer == null) {
+            if (provider != null) {
+                selectedProvider = provider;
+            }
+            initDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, timeout));
+            Thread thread = new Thread(TerminalConsoleAppender::runInitialization, "TerminalConsoleAppender-Init");
+            thread.setDaemon(true);
+            initializer = thread;
+            thread.start();
+        }
+    }
+
+    private static void runInitialization() {
+        @Nullable Terminal result = terminalFactory.apply(selectedProvider);
+        synchronized (TerminalConsoleAppender.class) {
+            if (initializer == Thread.currentThread()) {
+                initializer = null;
+                if (!initialized) {
+                    setInitialized(result);
+                    result = null;
+                }
+                TerminalConsoleAppender.class.notifyAll();
+            }
+        }
+
+        if (result != null) {
+            // Initialization timed out in the meantime
+            try {
+                result.close();
+            } catch (IOException e) {
+                LOGGER.debug("Failed to close terminal", e);
+            }
+        }
+
+        flushAllPending();
+    }
+
+    /**
+     * Initializes the terminal, or waits until the initialization that was
+     * started in the background is complete. Falls back to the standard
+     * output if it takes longer than the configured timeout.
+     */
     private synchronized static void initializeTerminal() {
+        if (initialized) {
+            return;
+        }
+
+        if (initializer == null) {
+            setInitialized(terminalFactory.apply(selectedProvider));
+            return;
+        }
+
+        try {
+            long remaining;
+            while (!initialized && initializer != null && (remaining = initDeadline - System.nanoTime()) > 0) {
+                TimeUnit.NANOSECONDS.timedWait(TerminalConsoleAppender.class, remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
         if (!initialized) {
-            initialized = true;
+            LOGGER.warn("Terminal initialization timed out. Falling back to standard console");
+            initializer = null;
+            setInitialized(null);
+        }
+    }
 
-            // A system property can be used to override our automatic detection
-            @Nullable Boolean jlineOverride = getOptionalBooleanProperty(JLINE_OVERRIDE_PROPERTY);
+    private static void setInitialized(@Nullable Terminal newTerminal) {
+        terminal = newTerminal;
+        capabilities = detectCapabilities(newTerminal);
+        initialized = true;
+    }
 
-            // By default, we disable JLine if there is no terminal attached
-            // (e.g. if the program output is redirected to a file or if it's
-            // started by some kind of control panel)
+    private static @Nullable Terminal createTerminal(@Nullable Provider provider) {
+        // A system property can be used to override our automatic detection
+        @Nullable Boolean jlineOverride = getOptionalBooleanProperty(JLINE_OVERRIDE_PROPERTY);
 
-            // The same applies to IDEs, they usually provide only a very basic
-            // console implementation without support for ANSI escape codes
-            // (used for colors) or characters like \r.
+        // By default, we disable JLine if there is no terminal attached
+        // (e.g. if the program output is redirected to a file or if it's
+        // started by some kind of control panel)
 
-            // There are two exceptions:
-            //  1. IntelliJ IDEA supports colors and control characters
-            //     (We try to detect it using an additional JAR it adds to the classpath)
-            //  2. The system property forces the use of JLine.
-            boolean dumb = jlineOverride == Boolean.TRUE || System.getProperty("java.class.path").contains("idea_rt.jar");
+        // The same applies to IDEs, they usually provide only a very basic
+        // console implementation without support for ANSI escape codes
+        // (used for colors) or characters like \r.
 
-            if (jlineOverride != Boolean.FALSE) {
-                try {
-                    terminal = TerminalBuilder.builder().dumb(dumb).build();
-                } catch (IllegalStateException e) {
-                    // Unless disabled using one of the exceptions above,
-                    // JLine throws an exception before creating a dumb terminal
-                    // Dumb terminals are used if there is no real terminal attached
-                    // to the application.
-
-                    if (LOGGER.isDebugEnabled()) {
-                        // Log with stacktrace
-                        LOGGER.warn("Advanced terminal features are not available in this environment", e);
-                    } else {
-                        LOGGER.warn("Advanced terminal features are not available in this environment");
-                    }
-                } catch (IOException e) {
-                    LOGGER.error("Failed to initialize terminal. Falling back to standard console", e);
+        // There are two exceptions:
+        //  1. IntelliJ IDEA supports colors and control characters
+        //     (We try to detect it using an additional JAR it adds to the classpath)
+        //  2. The system property forces the use of JLine.
+        boolean dumb = jlineOverride == Boolean.TRUE || System.getProperty("java.class.path").contains("idea_rt.jar");
+
+        if (jlineOverride != Boolean.FALSE) {
+            try {
+                TerminalBuilder builder = TerminalBuilder.builder();
+                if (provider != null) {
+                    // Only try the selected provider instead of probing all of them
+                    builder.exec(provider == Provider.EXEC)
+                            .jansi(provider == Provider.JANSI)
+                            .jna(provider == Provider.JNA);
+                    dumb |= provider == Provider.DUMB;
                 }
+                return builder.dumb(dumb).build();
+            } catch (IllegalStateException e) {
+                // Unless disabled using one of the exceptions above,
+                // JLine throws an exception before creating a dumb terminal
+                // Dumb terminals are used if there is no real terminal attached
+                // to the application.
+
+                if (LOGGER.isDebugEnabled()) {
+                    // Log with stacktrace
+                    LOGGER.warn("Advanced terminal features are not available in this environment", e);
+                } else {
+                    LOGGER.warn("Advanced terminal features are not available in this environment");
+                }
+            } catch (IOException e) {
+                LOGGER.error("Failed to initialize terminal. Falling back to standard console", e);
             }
         }
+
+        return null;
+    }
+
+    private static void flushAllPending() {
+        for (TerminalConsoleAppender appender : pendingAppenders) {
+            appender.flushPending();
+        }
+    }
+
+    @Override
+    public void start() {
+        super.start();
+        if (this.scrollbackSettings != null) {
+            acquireScrollback(this.scrollbackSettings);
+        }
+        if (this.asyncWriter != null) {
+            this.asyncWriter.start();
+        }
+        if (this.rateLimiter != null) {
+            this.rateLimiter.start(this::write);
+        }
+        if (this.duplicateFilter != null) {
+            this.duplicateFilter.start(this::write);
+        }
+    }
+
+    @Override
+    public boolean stop(long timeout, TimeUnit timeUnit) {
+        setStopping();
+        super.stop(timeout, timeUnit, false);
+        if (this.buffering) {
+            initializeTerminal();
+            flushPending();
+        }
+        if (this.rateLimiter != null) {
+            // Print the remaining summary before the writer is stopped
+            this.rateLimiter.stop();
+        }
+        if (this.duplicateFilter != null) {
+            this.duplicateFilter.stop();
+        }
+        if (this.asyncWriter != null) {
+            this.asyncWriter.stop(timeout, timeUnit);
+        }
+        if (this.scrollbackSettings != null) {
+            releaseScrollback();
+        }
+        setStopped();
+        return true;
     }
 
     @Override
     public void append(LogEvent event) {
-        print(getLayout().toSerializable(event).toString());
+        ConsoleMetrics.INSTANCE.eventsAppended.increment();
+        if (this.duplicateFilter != null && !this.duplicateFilter.tryAcquire(event)) {
+            // Duplicate of the previous message, only counted
+            return;
+        }
+        if (this.rateLimiter != null && !this.rateLimiter.tryAcquire(event)) {
+            // Over the limit, the event is only counted
+            return;
+        }
+
+        if (this.buffering && buffer(event)) {
+            return;
+        }
+
+        write(event);
+    }
+
+    private void write(LogEvent event) {
+        if (this.asyncWriter == null && Constants.ENABLE_DIRECT_ENCODERS && encode(getLayout(), event)) {
+            return;
+        }
+
+        write(getLayout().toSerializable(event).toString(), event.getLevel());
+    }
+
+    /**
+     * Buffers the log event until the terminal is initialized.
+     *
+     * @param event The log event
+     * @return {@code false} if the terminal is ready and the event should
+     *     be written immediately
+     */
+    private boolean buffer(LogEvent event) {
+        synchronized (this.pendingLock) {
+            if (!this.buffering) {
+                return false;
+            }
+
+            if (!initialized && this.pending != null && this.pending.size() < MAX_PENDING_EVENTS
+                    && System.nanoTime() - initDeadline < 0) {
+                // The event might be mutable and reused after this method returns
+                this.pending.add(event.toImmutable());
+                return true;
+            }
+        }
+
+        // The terminal is ready, or we have waited too long for it
+        initializeTerminal();
+        flushPending();
+        return false;
+    }
+
+    private void flushPending() {
+        synchronized (this.pendingLock) {
+            if (this.buffering) {
+                List<LogEvent> pending = this.pending;
+                this.pending = null;
+                this.buffering = false;
+                if (pending != null) {
+                    for (LogEvent event : pending) {
+                        try {
+                            write(event);
+                        } catch (RuntimeException e) {
+                            error("Failed to write buffered event to the console", event, e);
+                        }
+                    }
+                }
+            }
+        }
+        pendingAppenders.remove(this);
+    }
+
+    private void write(String text) {
+        // Summaries of suppressed messages should not be dropped on overflow
+        write(text, Level.WARN);
+    }
+
+    private void write(String text, Level level) {
+        if (this.asyncWriter != null) {
+            this.asyncWriter.write(text, level);
+        } else {
+            print(text);
+        }
+    }
+
+    /**
+     * Encodes the log event directly into the output stream of the console,
+     * without creating an intermediate {@link String}.
+     *
+     * @param layout The layout to encode the event with
+     * @param event The log event
+     * @return {@code false} if the event cannot be encoded directly
+     */
+    private static boolean encode(Layout<? extends Serializable> layout, LogEvent event) {
+        if (reader != null || !(layout instanceof StringLayout) || !servers.isEmpty() || scrollback != null) {
+            // The LineReader, the console server and the scrollback need the formatted text
+            return false;
+        }
+
+        outputLock.lock();
+        try {
+            @Nullable Terminal terminal = TerminalConsoleAppender.terminal;
+            OutputStream out;
+            Charset charset;
+            if (terminal != null) {
+                out = terminal.output();
+                charset = terminal.encoding();
+            } else {
+                out = stdout;
+                charset = stdoutCharset;
+            }
+
+            if (reader != null || !charset.equals(((StringLayout) layout).getCharset())) {
+                return false;
+            }
+
+            OutputStreamDestination destination = TerminalConsoleAppender.destination;
+            if (destination == null || destination.getOutputStream() != out) {
+                TerminalConsoleAppender.destination = destination = new OutputStreamDestination(out);
+            }
+
+            layout.encode(event, destination);
+            long start = System.nanoTime();
+            destination.flush();
+            ConsoleMetrics.INSTANCE.flushTime.recordSince(start);
+            return true;
+        } finally {
+            releaseOutput();
+        }
+    }
+
+    /**
+     * Prints the text to the console. If another thread is printing at the
+     * same time, the text is handed over to that thread and printed together
+     * with other waiting texts, so the output is only flushed (and the input
+     * line redrawn) once. Returns after the text was printed.
+     *
+     * <p>If printing fails, the exception is thrown on every thread whose
+     * text was part of the failed write, including the thread that printed
+     * it.</p>
+     *
+     * @param text The text to print
+     */
+    static void print(String text) {
+        if (outputLock.isHeldByCurrentThread()) {
+            // Called while printing (e.g. by the LineReader), print directly
+            printDirect(text);
+            return;
+        }
+
+        PendingText pending = new PendingText(text);
+        printQueue.add(pending);
+
+        long start = System.nanoTime();
+        boolean waited = false;
+        for (;;) {
+            if (outputLock.tryLock()) {
+                if (!waited) {
+                    waited = true;
+                    ConsoleMetrics.INSTANCE.lockWaitTime.recordSince(start);
+                }
+                try {
+                    printQueued();
+                } finally {
+                    outputLock.unlock();
+                }
+
+                // Other threads might have added their text while we were printing
+                @Nullable PendingText next = printQueue.peek();
+                if (next != null && pending.done) {
+                    // Let the waiting threads continue (instead of printing their text forever)
+                    next.wakeUp();
+                }
+                if (pending.done) {
+                    pending.rethrowFailure();
+                    return;
+                }
+            } else if (pending.done) {
+                if (!waited) {
+                    ConsoleMetrics.INSTANCE.lockWaitTime.recordSince(start);
+                }
+                pending.rethrowFailure();
+                return;
+            } else {
+                pending.waiter = Thread.currentThread();
+                if (!pending.done && outputLock.isLocked()) {
+                    // The thread holding the lock will print our text, or wake
+                    // up the first waiting thread after releasing the lock
+                    LockSupport.park(pending);
+                }
+                pending.waiter = null;
+            }
+        }
+    }
+
+    private static void printQueued() {
+        @Nullable PendingText first = printQueue.poll();
+        if (first == null) {
+            return;
+        }
+
+        if (printQueue.peek() == null) {
+            // Only a single text, no need to copy it
+            try {
+                printDirect(first.text);
+            } catch (RuntimeException e) {
+                first.failure = e;
+            } finally {
+                first.complete();
+            }
+            return;
+        }
+
+        // Join the queued texts (in order) and print them at once
+        StringBuilder batch = printBatch;
+        batch.setLength(0);
+        batch.append(first.text);
+        PendingText last = first;
+        @Nullable PendingText next;
+        for (int i = 1; i < MAX_PRINT_BATCH_SIZE && (next = printQueue.poll()) != null; i++) {
+            batch.append(next.text);
+            last.next = next;
+            last = next;
+        }
+
+        @Nullable RuntimeException failure = null;
+        try {
+            printDirect(batch.toString());
+        } catch (RuntimeException e) {
+            failure = e;
+        } finally {
+            for (@Nullable PendingText done = first; done != null; done = done.next) {
+                done.failure = failure;
+                done.complete();
+            }
+            if (batch.capacity() > MAX_PRINT_BATCH_CAPACITY) {
+                batch.setLength(0);
+                batch.trimToSize();
+            }
+        }
     }
 
-    private synchronized static void print(String text) {
+    private static void printDirect(String text) {
+        ConsoleMetrics metrics = ConsoleMetrics.INSTANCE;
+        @Nullable Terminal terminal = TerminalConsoleAppender.terminal;
         if (terminal != null) {
+            @Nullable LineReader reader = TerminalConsoleAppender.reader;
             if (reader != null) {
                 // Draw the prompt line again if a reader is available
+                long start = System.nanoTime();
                 reader.printAbove(text);
+                metrics.printAboveTime.recordSince(start);
+                metrics.redraws.increment();
             } else {
                 terminal.writer().print(text);
+                long start = System.nanoTime();
                 terminal.writer().flush();
+                metrics.flushTime.recordSince(start);
             }
         } else {
             stdout.print(text);
         }
+        metrics.charactersWritten.add(text.length());
+
+        @Nullable ConsoleScrollback scrollback = TerminalConsoleAppender.scrollback;
+        if (scrollback != null) {
+            scrollback.append(text);
+        }
+
+        //noinspection ForLoopReplaceableByForEach
+        for (int i = 0; i < servers.size(); i++) {
+            servers.get(i).broadcast(text);
+        }
+    }
+
+    /**
+     * Returns the metrics recorded for the console output, shared by all
+     * console appenders. They can also be exposed over JMX, see
+     * {@link ConsoleMetrics#JMX_PROPERTY}.
+     *
+     * @return The console metrics
+     */
+    public static ConsoleMetrics getMetrics() {
+        return ConsoleMetrics.INSTANCE;
+    }
+
+    /**
+     * Returns a copy of the recent console output kept in the scrollback
+     * buffer, encoded as UTF-8. The scrollback buffer is enabled using the
+     * {@code scrollbackLines} or {@code scrollbackSize} attribute.
+     *
+     * @return The recent console output, empty if the scrollback is disabled
+     */
+    public static byte[] getScrollback() {
+        outputLock.lock();
+        try {
+            @Nullable ConsoleScrollback scrollback = TerminalConsoleAppender.scrollback;
+            if (scrollback == null) {
+                return new byte[0];
+            }
+
+            byte[] result = new byte[scrollback.size()];
+            scrollback.copyTo(result);
+            return result;
+        } finally {
+            releaseOutput();
+        }
+    }
+
+    /**
+     * Writes the recent console output kept in the scrollback buffer to
+     * the output stream, encoded as UTF-8. The output is copied first, so
+     * a slow stream does not block logging.
+     *
+     * @param out The output stream to write to
+     * @throws IOException If an I/O error occurs
+     * @see #getScrollback()
+     */
+    public static void writeScrollback(OutputStream out) throws IOException {
+        out.write(getScrollback());
+    }
+
+    private void acquireScrollback(ScrollbackSettings settings) {
+        outputLock.lock();
+        try {
+            if (this.scrollbackAcquired) {
+                return;
+            }
+
+            // Keep the recent output if the configuration is reloaded with the same settings
+            @Nullable ConsoleScrollback current = scrollback;
+            if (current == null || current.getMaxLines() != settings.maxLines
+                    || current.getMaxBytes() != settings.maxBytes || current.isDirect() != settings.direct) {
+                scrollback = new ConsoleScrollback(settings.maxLines, settings.maxBytes, settings.direct);
+            }
+            this.scrollbackAcquired = true;
+            scrollbackUsers++;
+        } finally {
+            releaseOutput();
+        }
+    }
+
+    private void releaseScrollback() {
+        outputLock.lock();
+        try {
+            if (!this.scrollbackAcquired) {
+                return;
+            }
+
+            this.scrollbackAcquired = false;
+            if (--scrollbackUsers == 0) {
+                // No appender uses the scrollback anymore (e.g. after it was removed from the configuration)
+                scrollback = null;
+            }
+        } finally {
+            releaseOutput();
+        }
+    }
+
+    /**
+     * Prevents output from being printed until {@link #unlockOutput()} is
+     * called.
+     */
+    static void lockOutput() {
+        outputLock.lock();
+    }
+
+    static void unlockOutput() {
+        releaseOutput();
+    }
+
+    /**
+     * Releases the output lock and wakes up the first thread waiting for
+     * its text to be printed, because only threads that print take care of
+     * the queued texts.
+     */
+    private static void releaseOutput() {
+        outputLock.unlock();
+        @Nullable PendingText next = printQueue.peek();
+        if (next != null) {
+            next.wakeUp();
+        }
+    }
+
+    static void addServer(ConsoleServer server) {
+        servers.add(server);
+    }
+
+    static void removeServer(ConsoleServer server) {
+        servers.remove(server);
+    }
+
+    /**
+     * Text waiting in the {@link #printQueue}.
+     */
+    private static final class PendingText {
+
+        final String text;
+        volatile boolean done;
+        volatile @Nullable Thread waiter;
+        @Nullable PendingText next; // Guarded by outputLock
+        @Nullable RuntimeException failure; // Written before done
+
+        PendingText(String text) {
+            this.text = text;
+        }
+
+        void complete() {
+            this.done = true;
+            wakeUp();
+        }
+
+        void rethrowFailure() {
+            @Nullable RuntimeException failure = this.failure;
+            if (failure != null) {
+                throw failure;
+            }
+        }
+
+        void wakeUp() {
+            @Nullable Thread waiter = this.waiter;
+            if (waiter != null) {
+                LockSupport.unpark(waiter);
+            }
+        }
+
+    }
+
+    /**
+     * The configured size of the scrollback buffer.
+     */
+    private static final class ScrollbackSettings {
+
+        final int maxLines;
+        final int maxBytes;
+        final boolean direct;
+
+        ScrollbackSettings(int maxLines, int maxBytes, boolean direct) {
+            this.maxLines = maxLines;
+            this.maxBytes = maxBytes;
+            this.direct = direct;
+        }
+
     }
 
     /**
      * Closes the JLine {@link Terminal} (if available) and restores the original
-     * terminal settings.
+     * terminal settings. Messages that are still queued for asynchronous
+     * output are written before the terminal is closed.
      *
      * @throws IOException If an I/O error occurs
      */
-    public synchronized static void close() throws IOException {
-        if (initialized) {
-            initialized = false;
-            reader = null;
-            if (terminal != null) {
-                try {
-                    terminal.close();
-                } finally {
-                    terminal = null;
+    public static void close() throws IOException {
+        // This must happen before locking, the writer threads need the lock to print
+        AsyncConsoleWriter.stopAll();
+        closeTerminal();
+    }
+
+    private static void closeTerminal() throws IOException {
+        outputLock.lock();
+        try {
+            synchronized (TerminalConsoleAppender.class) {
+                // Discard the result of a pending initialization
+                initializer = null;
+                if (initialized) {
+                    initialized = false;
+                    capabilities = null;
+                    reader = null;
+                    destination = null;
+                    @Nullable Terminal terminal = TerminalConsoleAppender.terminal;
+                    if (terminal != null) {
+                        try {
+                            terminal.close();
+                        } finally {
+                            TerminalConsoleAppender.terminal = null;
+                        }
+                    }
                 }
             }
+        } finally {
+            releaseOutput();
         }
     }
 
@@ -311,10 +1127,556 @@ public static <B extends Builder<B>> B newBuilder() {
     public static class Builder<B extends Builder<B>> extends AbstractAppender.Builder<B>
             implements org.apache.logging.log4j.core.util.Builder<TerminalConsoleAppender> {
 
+        @PluginBuilderAttribute
+        private boolean async;
+
+        @PluginBuilderAttribute
+        private int bufferSize = 1024;
+
+        @PluginBuilderAttribute
+        private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+
+        @PluginBuilderAttribute
+        private Level overflowLevel = Level.WARN;
+
+        @PluginBuilderAttribute
+        private int batchSize = 256;
+
+        @PluginBuilderAttribute
+        private long lingerTime;
+
+        @PluginBuilderAttribute
+        private int rateLimit;
+
+        @PluginBuilderAttribute
+        private int rateLimitBurst;
+
+        @PluginBuilderAttribute
+        private RateLimitScope rateLimitScope = RateLimitScope.LEVEL;
+
+        @PluginBuilderAttribute
+        private Level rateLimitLevel = Level.WARN;
+
+        @PluginBuilderAttribute
+        private long rateLimitSummaryInterval = 5000;
+
+        @PluginBuilderAttribute
+        private long duplicateWindow;
+
+        @PluginBuilderAttribute
+        private long initTimeout = DEFAULT_INIT_TIMEOUT;
+
+        @PluginBuilderAttribute
+        private @Nullable Provider provider;
+
+        @PluginBuilderAttribute
+        private int scrollbackLines;
+
+        @PluginBuilderAttribute
+        private int scrollbackSize;
+
+        @PluginBuilderAttribute
+        private boolean scrollbackDirect;
+
+        /**
+         * Returns whether messages are written to the console asynchronously.
+         *
+         * @return True if asynchronous output is enabled
+         */
+        public boolean isAsync() {
+            return this.async;
+        }
+
+        /**
+         * Sets whether messages should be written to the console from a
+         * separate thread. The logging thread will only add the formatted
+         * message to a bounded queue.
+         *
+         * @param async True to enable asynchronous output
+         * @return This builder
+         */
+        public B setAsync(boolean async) {
+            this.async = async;
+            return asBuilder();
+        }
+
+        /**
+         * Returns the maximum number of messages queued for asynchronous output.
+         *
+         * @return The queue size
+         */
+        public int getBufferSize() {
+            return this.bufferSize;
+        }
+
+        /**
+         * Sets the maximum number of messages queued for asynchronous output.
+         * The value is rounded up to the next power of two.
+         *
+         * @param bufferSize The queue size
+         * @return This builder
+         */
+        public B setBufferSize(int bufferSize) {
+            this.bufferSize = bufferSize;
+            return asBuilder();
+        }
+
+        /**
+         * Returns what happens if the asynchronous queue is full.
+         *
+         * @return The overflow policy
+         */
+        public OverflowPolicy getOverflowPolicy() {
+            return this.overflowPolicy;
+        }
+
+        /**
+         * Sets what happens if the asynchronous queue is full.
+         *
+         * @param overflowPolicy The overflow policy
+         * @return This builder
+         */
+        public B setOverflowPolicy(OverflowPolicy overflowPolicy) {
+            this.overflowPolicy = overflowPolicy;
+            return asBuilder();
+        }
+
+        /**
+         * Returns the minimum level of messages that are never dropped with
+         * {@link OverflowPolicy#DROP_BELOW_LEVEL}.
+         *
+         * @return The overflow level
+         */
+        public Level getOverflowLevel() {
+            return this.overflowLevel;
+        }
+
+        /**
+         * Sets the minimum level of messages that are never dropped with
+         * {@link OverflowPolicy#DROP_BELOW_LEVEL}.
+         *
+         * @param overflowLevel The overflow level
+         * @return This builder
+         */
+        public B setOverflowLevel(Level overflowLevel) {
+            this.overflowLevel = overflowLevel;
+            return asBuilder();
+        }
+
+        /**
+         * Returns the maximum number of messages that are printed together
+         * with asynchronous output.
+         *
+         * @return The maximum batch size
+         */
+        public int getBatchSize() {
+            return this.batchSize;
+        }
+
+        /**
+         * Sets the maximum number of messages that are printed together with
+         * asynchronous output. The input line is redrawn only once per batch.
+         *
+         * @param batchSize The maximum batch size
+         * @return This builder
+         */
+        public B setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+            return asBuilder();
+        }
+
+        /**
+         * Returns how long (in milliseconds) the asynchronous writer waits
+         * for more messages before printing an incomplete batch.
+         *
+         * @return The linger time in milliseconds
+         */
+        public long getLingerTime() {
+            return this.lingerTime;
+        }
+
+        /**
+         * Sets how long (in milliseconds) the asynchronous writer waits for
+         * more messages before printing an incomplete batch. The default of
+         * {@code 0} prints all queued messages immediately.
+         *
+         * @param lingerTime The linger time in milliseconds
+         * @return This builder
+         */
+        public B setLingerTime(long lingerTime) {
+            this.lingerTime = lingerTime;
+            return asBuilder();
+        }
+
+        /**
+         * Returns the maximum number of messages per second printed for each
+         * level or logger.
+         *
+         * @return The rate limit, or {@code 0} if disabled
+         */
+        public int getRateLimit() {
+            return this.rateLimit;
+        }
+
+        /**
+         * Sets the maximum number of messages per second printed for each
+         * level or logger. Additional messages are suppressed. The default
+         * of {@code 0} disables the rate limit.
+         *
+         * @param rateLimit The rate limit, or {@code 0} to disable it
+         * @return This builder
+         */
+        public B setRateLimit(int rateLimit) {
+            this.rateLimit = rateLimit;
+            return asBuilder();
+        }
+
+        /**
+         * Returns the number of messages that may be printed at once before
+         * the rate limit applies.
+         *
+         * @return The burst size, or {@code 0} to use the rate limit
+         */
+        public int getRateLimitBurst() {
+            return this.rateLimitBurst;
+        }
+
+        /**
+         * Sets the number of messages that may be printed at once before
+         * the rate limit applies. Defaults to the number of messages per
+         * second.
+         *
+         * @param rateLimitBurst The burst size, or {@code 0} to use the rate limit
+         * @return This builder
+         */
+        public B setRateLimitBurst(int rateLimitBurst) {
+            this.rateLimitBurst = rateLimitBurst;
+            return asBuilder();
+        }
+
+        /**
+         * Returns whether the rate limit applies per level or per logger.
+         *
+         * @return The rate limit scope
+         */
+        public RateLimitScope getRateLimitScope() {
+            return this.rateLimitScope;
+        }
+
+        /**
+         * Sets whether the rate limit applies per level or per logger.
+         *
+         * @param rateLimitScope The rate limit scope
+         * @return This builder
+         */
+        public B setRateLimitScope(RateLimitScope rateLimitScope) {
+            this.rateLimitScope = rateLimitScope;
+            return asBuilder();
+        }
+
+        /**
+         * Returns the minimum level of messages that are never suppressed by
+         * the rate limit.
+         *
+         * @return The exempt level
+         */
+        public Level getRateLimitLevel() {
+            return this.rateLimitLevel;
+        }
+
+        /**
+         * Sets the minimum level of messages that are never suppressed by
+         * the rate limit.
+         *
+         * @param rateLimitLevel The exempt level
+         * @return This builder
+         */
+        public B setRateLimitLevel(Level rateLimitLevel) {
+            this.rateLimitLevel = rateLimitLevel;
+            return asBuilder();
+        }
+
+        /**
+         * Returns how often (in milliseconds) the number of suppressed
+         * messages is printed.
+         *
+         * @return The summary interval in milliseconds
+         */
+        public long getRateLimitSummaryInterval() {
+            return this.rateLimitSummaryInterval;
+        }
+
+        /**
+         * Sets how often (in milliseconds) the number of suppressed messages
+         * is printed. With {@code 0}, it is only printed when the appender
+         * is stopped.
+         *
+         * @param rateLimitSummaryInterval The summary interval in milliseconds
+         * @return This builder
+         */
+        public B setRateLimitSummaryInterval(long rateLimitSummaryInterval) {
+            this.rateLimitSummaryInterval = rateLimitSummaryInterval;
+            return asBuilder();
+        }
+
+        /**
+         * Returns how long (in milliseconds) consecutive duplicates of a
+         * message are held back at most.
+         *
+         * @return The duplicate window in milliseconds, or {@code 0} if disabled
+         */
+        public long getDuplicateWindow() {
+            return this.duplicateWindow;
+        }
+
+        /**
+         * Sets how long (in milliseconds) consecutive duplicates of a message
+         * are held back at most before their number is printed. The default
+         * of {@code 0} prints all duplicates.
+         *
+         * @param duplicateWindow The duplicate window in milliseconds, or
+         *     {@code 0} to disable it
+         * @return This builder
+         */
+        public B setDuplicateWindow(long duplicateWindow) {
+            this.duplicateWindow = duplicateWindow;
+            return asBuilder();
+        }
+
+        /**
+         * Returns how long (in milliseconds) messages are buffered while
+         * waiting for the terminal to be initialized.
+         *
+         * @return The initialization timeout in milliseconds
+         */
+        public long getInitTimeout() {
+            return this.initTimeout;
+        }
+
+        /**
+         * Sets how long (in milliseconds) messages are buffered while waiting
+         * for the terminal to be initialized. If the initialization takes
+         * longer, the appender falls back to the standard output.
+         *
+         * @param initTimeout The initialization timeout in milliseconds
+         * @return This builder
+         */
+        public B setInitTimeout(long initTimeout) {
+            this.initTimeout = initTimeout;
+            return asBuilder();
+        }
+
+        /**
+         * Returns the provider JLine uses to access the terminal.
+         *
+         * @return The terminal provider, or null to use the
+         *     {@link #PROVIDER_PROPERTY} system property
+         */
+        public @Nullable Provider getProvider() {
+            return this.provider;
+        }
+
+        /**
+         * Sets the provider JLine uses to access the terminal. Overrides
+         * the {@link #PROVIDER_PROPERTY} system property.
+         *
+         * @param provider The terminal provider, or null to use the system property
+         * @return This builder
+         */
+        public B setProvider(@Nullable Provider provider) {
+            this.provider = provider;
+            return asBuilder();
+        }
+
+        /**
+         * Returns the maximum number of lines kept in the scrollback buffer.
+         *
+         * @return The maximum number of lines, or {@code 0} for the default
+         */
+        public int getScrollbackLines() {
+            return this.scrollbackLines;
+        }
+
+        /**
+         * Sets the maximum number of lines kept in the scrollback buffer
+         * (see {@link #getScrollback()}). Enables the scrollback buffer
+         * with a size of 1 MiB, unless configured otherwise.
+         *
+         * @param scrollbackLines The maximum number of lines
+         * @return This builder
+         */
+        public B setScrollbackLines(int scrollbackLines) {
+            this.scrollbackLines = scrollbackLines;
+            return asBuilder();
+        }
+
+        /**
+         * Returns the maximum size of the scrollback buffer in bytes.
+         *
+         * @return The maximum size, or {@code 0} for the default
+         */
+        public int getScrollbackSize() {
+            return this.scrollbackSize;
+        }
+
+        /**
+         * Sets the maximum size of the scrollback buffer in bytes (see
+         * {@link #getScrollback()}). Enables the scrollback buffer with up
+         * to 10000 lines, unless configured otherwise.
+         *
+         * @param scrollbackSize The maximum size in bytes
+         * @return This builder
+         */
+        public B setScrollbackSize(int scrollbackSize) {
+            this.scrollbackSize = scrollbackSize;
+            return asBuilder();
+        }
+
+        /**
+         * Returns whether the scrollback buffer is allocated outside of the
+         * Java heap.
+         *
+         * @return True if a direct buffer is used
+         */
+        public boolean isScrollbackDirect() {
+            return this.scrollbackDirect;
+        }
+
+        /**
+         * Sets whether the scrollback buffer is allocated outside of the
+         * Java heap (using a direct {@link java.nio.ByteBuffer}).
+         *
+         * @param scrollbackDirect True to use a direct buffer
+         * @return This builder
+         */
+        public B setScrollbackDirect(boolean scrollbackDirect) {
+            this.scrollbackDirect = scrollbackDirect;
+            return asBuilder();
+        }
+
         @Override
         public TerminalConsoleAppender build() {
+            @Nullable ScrollbackSettings scrollbackSettings = null;
+            if (this.scrollbackLines > 0 || this.scrollbackSize > 0) {
+                scrollbackSettings = new ScrollbackSettings(
+                        this.scrollbackLines > 0 ? this.scrollbackLines : DEFAULT_SCROLLBACK_LINES,
+                        this.scrollbackSize > 0 ? this.scrollbackSize : DEFAULT_SCROLLBACK_SIZE, this.scrollbackDirect);
+            }
+
+            @Nullable AsyncConsoleWriter asyncWriter = null;
+            if (this.async) {
+                asyncWriter = new AsyncConsoleWriter(getName(), this.bufferSize, this.overflowPolicy, this.overflowLevel,
+                        this.batchSize, this.lingerTime);
+            }
+
+            @Nullable ConsoleRateLimiter rateLimiter = null;
+            if (this.rateLimit > 0) {
+                rateLimiter = new ConsoleRateLimiter(getName(), this.rateLimitScope, this.rateLimitLevel,
+                        this.rateLimit, this.rateLimitBurst, this.rateLimitSummaryInterval);
+            }
+
+            @Nullable ConsoleDuplicateFilter duplicateFilter = null;
+            if (this.duplicateWindow > 0) {
+                duplicateFilter = new ConsoleDuplicateFilter(getName(), this.duplicateWindow);
+            }
+
             return new TerminalConsoleAppender(getName(), getFilter(), getOrCreateLayout(),
-                    isIgnoreExceptions(), getPropertyArray());
+                    isIgnoreExceptions(), getPropertyArray(), asyncWriter, rateLimiter, duplicateFilter,
+                    scrollbackSettings, this.initTimeout, this.provider);
+        }
+    }
+
+    /**
+     * Decides what happens if the queue for asynchronous output is full.
+     */
+    public enum OverflowPolicy {
+
+        /**
+         * Blocks the logging thread until there is space in the queue.
+         */
+        BLOCK,
+
+        /**
+         * Removes the oldest queued message to make space for the new one.
+         */
+        DROP_OLDEST,
+
+        /**
+         * Discards new messages that are less specific than the configured
+         * {@code overflowLevel}. More important messages block the logging
+         * thread until there is space in the queue.
+         */
+        DROP_BELOW_LEVEL
+
+    }
+
+    /**
+     * The providers JLine can use to access the terminal.
+     */
+    public enum Provider {
+
+        /**
+         * Starts external commands like {@code stty} to configure the terminal.
+         */
+        EXEC,
+
+        /**
+         * Uses the native library from Jansi.
+         */
+        JANSI,
+
+        /**
+         * Uses JNA to call the native functions.
+         */
+        JNA,
+
+        /**
+         * Does not access the terminal at all, only the standard input and
+         * output are used.
+         */
+        DUMB
+
+    }
+
+    /**
+     * Decides which messages share the same rate limit.
+     */
+    public enum RateLimitScope {
+
+        /**
+         * All messages with the same level share a rate limit.
+         */
+        LEVEL,
+
+        /**
+         * All messages from the same logger share a rate limit.
+         */
+        LOGGER
+
+    }
+
+    private static Charset getStandardOutputCharset() {
+        // stdout.encoding exists since Java 19, sun.stdout.encoding is set on Windows consoles
+        String name = System.getProperty("stdout.encoding", System.getProperty("sun.stdout.encoding"));
+        if (name != null) {
+            try {
+                return Charset.forName(name);
+            } catch (IllegalArgumentException ignored) {
+            }
+        }
+        return Charset.defaultCharset();
+    }
+
+    static @Nullable Provider parseProvider(@Nullable String value) {
+        if (value == null) {
+            return null;
+        }
+
+        try {
+            return Provider.valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            LOGGER.warn("Invalid value for terminal provider property '{}': {}", PROVIDER_PROPERTY, value);
+            return null;
         }
     }
 
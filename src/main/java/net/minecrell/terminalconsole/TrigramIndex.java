@@ -0,0 +1,231 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Minecrell <https://github.com/Minecrell>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.minecrell.terminalconsole;
+
+import java.util.Arrays;
+
+/**
+ * An index of the trigrams (three consecutive characters) contained in a
+ * sequence of lines. It is used to find candidates for substring searches
+ * without looking at every line: a line can only contain the query if it
+ * contains all trigrams of the query.
+ *
+ * <p>Lines are identified by ascending positions, and the trigrams are
+ * indexed case-insensitively. This class is not thread-safe.</p>
+ */
+final class TrigramIndex {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int INITIAL_POSTINGS = 4;
+
+    // Open addressing hash table from trigram to the positions containing it
+    private long[] keys = new long[INITIAL_CAPACITY];
+    private int[][] postings = new int[INITIAL_CAPACITY][];
+    private int[] sizes = new int[INITIAL_CAPACITY];
+    private int count;
+
+    private static long trigram(char a, char b, char c) {
+        return (long) Character.toLowerCase(a) << 32 | (long) Character.toLowerCase(b) << 16
+                | Character.toLowerCase(c);
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Adds a line to the index. The position must be greater than the
+     * positions of all lines added before.
+     *
+     * @param position The position of the line
+     * @param line The line
+     */
+    void add(int position, String line) {
+        for (int i = 2; i < line.length(); i++) {
+            int slot = insert(trigram(line.charAt(i - 2), line.charAt(i - 1), line.charAt(i)));
+            int[] positions = this.postings[slot];
+            int size = this.sizes[slot];
+            if (size > 0 && positions[size - 1] == position) {
+                // The trigram occurs multiple times in the line
+                continue;
+            }
+            if (size == positions.length) {
+                this.postings[slot] = positions = Arrays.copyOf(positions, size * 2);
+            }
+            positions[size] = position;
+            this.sizes[slot] = size + 1;
+        }
+    }
+
+    /**
+     * Removes all lines before the specified position from the index.
+     *
+     * @param position The position of the first line to keep
+     */
+    void removeBefore(int position) {
+        int removed = 0;
+        for (int slot = 0; slot < this.keys.length; slot++) {
+            int[] positions = this.postings[slot];
+            if (positions == null) {
+                continue;
+            }
+
+            int size = this.sizes[slot];
+            int i = Arrays.binarySearch(positions, 0, size, position);
+            i = i < 0 ? -i - 1 : i;
+            if (i == 0) {
+                continue;
+            }
+
+            int remaining = size - i;
+            if (remaining == 0) {
+                // Trigram only occurs in removed lines, removed below
+                this.postings[slot] = null;
+                removed++;
+            } else if (remaining < positions.length / 4) {
+                this.postings[slot] = Arrays.copyOfRange(positions, i, i + Math.max(remaining * 2, INITIAL_POSTINGS));
+            } else {
+                System.arraycopy(positions, i, positions, 0, remaining);
+            }
+            this.sizes[slot] = remaining;
+        }
+
+        if (removed > 0) {
+            // Removing entries breaks the probe sequences of the hash table, so rebuild it
+            this.count -= removed;
+            rehash(this.keys.length);
+        }
+    }
+
+    /**
+     * Removes all lines from the index.
+     */
+    void clear() {
+        this.keys = new long[INITIAL_CAPACITY];
+        this.postings = new int[INITIAL_CAPACITY][];
+        this.sizes = new int[INITIAL_CAPACITY];
+        this.count = 0;
+    }
+
+    /**
+     * Finds the last line before the specified position that contains all
+     * trigrams of the query. The line still needs to be checked, since the
+     * trigrams might appear in a different order or case.
+     *
+     * @param query The query, with at least three characters
+     * @param before The (exclusive) upper bound for the position
+     * @return The position of the candidate, or {@code -1} if there is none
+     */
+    int previousCandidate(String query, int before) {
+        int trigrams = query.length() - 2;
+        int[] slots = new int[trigrams];
+        int shortest = -1;
+        for (int i = 0; i < trigrams; i++) {
+            int slot = find(trigram(query.charAt(i), query.charAt(i + 1), query.charAt(i + 2)));
+            if (slot < 0) {
+                return -1;
+            }
+            slots[i] = slot;
+            if (shortest < 0 || this.sizes[slot] < this.sizes[slots[shortest]]) {
+                shortest = i;
+            }
+        }
+
+        int[] candidates = this.postings[slots[shortest]];
+        int i = Arrays.binarySearch(candidates, 0, this.sizes[slots[shortest]], before);
+        i = (i < 0 ? -i - 1 : i) - 1;
+
+        candidates:
+        for (; i >= 0; i--) {
+            int position = candidates[i];
+            for (int slot : slots) {
+                if (Arrays.binarySearch(this.postings[slot], 0, this.sizes[slot], position) < 0) {
+                    continue candidates;
+                }
+            }
+            return position;
+        }
+        return -1;
+    }
+
+    private int find(long key) {
+        int mask = this.keys.length - 1;
+        for (int slot = hash(key) & mask; this.postings[slot] != null; slot = (slot + 1) & mask) {
+            if (this.keys[slot] == key) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private int insert(long key) {
+        int mask = this.keys.length - 1;
+        int slot = hash(key) & mask;
+        for (; this.postings[slot] != null; slot = (slot + 1) & mask) {
+            if (this.keys[slot] == key) {
+                return slot;
+            }
+        }
+
+        if (this.count * 2 >= this.keys.length) {
+            resize();
+            return insert(key);
+        }
+
+        this.keys[slot] = key;
+        this.postings[slot] = new int[INITIAL_POSTINGS];
+        this.count++;
+        return slot;
+    }
+
+    private void resize() {
+        rehash(this.keys.length * 2);
+    }
+
+    private void rehash(int capacity) {
+        long[] keys = this.keys;
+        int[][] postings = this.postings;
+        int[] sizes = this.sizes;
+
+        this.keys = new long[capacity];
+        this.postings = new int[capacity][];
+        this.sizes = new int[capacity];
+
+        int mask = capacity - 1;
+        for (int i = 0; i < keys.length; i++) {
+            if (postings[i] != null) {
+                int slot = hash(keys[i]) & mask;
+                while (this.postings[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                this.keys[slot] = keys[i];
+                this.postings[slot] = postings[i];
+                this.sizes[slot] = sizes[i];
+            }
+        }
+    }
+
+}
@@ -0,0 +1,98 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Minecrell <https://github.com/Minecrell>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.minecrell.terminalconsole.util;
+
+import org.apache.logging.log4j.core.pattern.PatternFormatter;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache from logger names to the resolved pattern formatters.
+ *
+ * <p>The cache is a direct-mapped hash table with a fixed number of slots.
+ * A new entry replaces the previous entry in the same slot, so the size of
+ * the cache is bounded even if loggers are created dynamically. Entries are
+ * immutable and written without locking, concurrent updates of the same
+ * slot may only cause additional misses.</p>
+ *
+ * <p>Logger names are usually the same {@link String} instance for every
+ * event of a logger, so they are compared by identity first.</p>
+ */
+final class LoggerNameCache {
+
+    private static final class Entry {
+
+        final String name;
+        final PatternFormatter[] formatters;
+
+        Entry(String name, PatternFormatter[] formatters) {
+            this.name = name;
+            this.formatters = formatters;
+        }
+
+    }
+
+    private final @Nullable Entry[] entries;
+    private final int mask;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    LoggerNameCache(int size) {
+        int capacity = Integer.highestOneBit(Math.max(1, Math.min(size, 1 << 20)) * 2 - 1);
+        this.entries = new Entry[capacity];
+        this.mask = capacity - 1;
+    }
+
+    private static int index(String name, int mask) {
+        int h = name.hashCode();
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    @Nullable PatternFormatter[] get(String name) {
+        @Nullable Entry entry = this.entries[index(name, this.mask)];
+        if (entry != null && (entry.name == name || entry.name.equals(name))) {
+            this.hits.increment();
+            return entry.formatters;
+        }
+
+        this.misses.increment();
+        return null;
+    }
+
+    void put(String name, PatternFormatter[] formatters) {
+        this.entries[index(name, this.mask)] = new Entry(name, formatters);
+    }
+
+    long getHits() {
+        return this.hits.sum();
+    }
+
+    long getMisses() {
+        return this.misses.sum();
+    }
+
+}
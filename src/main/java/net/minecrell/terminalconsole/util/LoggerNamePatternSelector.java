@@ -52,7 +52,17 @@
  *
  * <p>Multiple logger names may be separated using comma in the
  * {@link PatternMatch#getKey() PatternMatch "key"}. The pattern will be applied
- * if the logger name matches at least one of them.</p>
+ * if the logger name matches at least one of them. Logger names ending with a
+ * dot (e.g. {@code net.minecrell.}) match all loggers in the package. A segment
+ * consisting only of an asterisk matches any single segment of the logger
+ * name (e.g. {@code com.*.internal.}). If multiple keys match, the first one
+ * is used.</p>
+ *
+ * <p>The pattern selected for a logger name is cached, so most events only
+ * need a single lookup. The size of the cache can be configured using the
+ * {@code cacheSize} attribute (default: 256, {@code 0} disables the cache).
+ * The cache is discarded together with the selector when the configuration
+ * is reloaded.</p>
  *
  * <p><b>Example usage:</b></p>
  * <pre>{@code  <PatternLayout>
@@ -67,30 +77,12 @@
 @PerformanceSensitive("allocation")
 public final class LoggerNamePatternSelector implements PatternSelector {
 
-    private static class LoggerNameSelector {
-
-        private final String name;
-        private final boolean isPackage;
-        private final PatternFormatter[] formatters;
-
-        LoggerNameSelector(String name, PatternFormatter[] formatters) {
-            this.name = name;
-            this.isPackage = name.endsWith(".");
-            this.formatters = formatters;
-        }
-
-        PatternFormatter[] get() {
-            return this.formatters;
-        }
-
-        boolean test(String s) {
-            return this.isPackage ? s.startsWith(this.name) : s.equals(this.name);
-        }
-
-    }
+    private static final int DEFAULT_CACHE_SIZE = 256;
 
     private final PatternFormatter[] defaultFormatters;
-    private final List<LoggerNameSelector> formatters = new ArrayList<>();
+    private final PatternFormatter[][] formatters;
+    private final LoggerNameTrie trie = new LoggerNameTrie();
+    private final @Nullable LoggerNameCache cache;
 
     /**
      * Constructs a new {@link LoggerNamePatternSelector}.
@@ -106,33 +98,86 @@ boolean test(String s) {
      */
     protected LoggerNamePatternSelector(String defaultPattern, PatternMatch[] properties,
             boolean alwaysWriteExceptions, boolean disableAnsi, boolean noConsoleNoAnsi, Configuration config) {
+        this(defaultPattern, properties, alwaysWriteExceptions, disableAnsi, noConsoleNoAnsi, DEFAULT_CACHE_SIZE, config);
+    }
+
+    /**
+     * Constructs a new {@link LoggerNamePatternSelector}.
+     *
+     * @param defaultPattern The default pattern to use if no logger name matches
+     * @param properties The pattern match rules to use
+     * @param alwaysWriteExceptions Write exceptions even if pattern does not
+     *     include exception conversion
+     * @param disableAnsi If true, disable all ANSI escape codes
+     * @param noConsoleNoAnsi If true and {@link System#console()} is null,
+     *     disable ANSI escape codes
+     * @param cacheSize The maximum number of cached logger names, or
+     *     {@code 0} to disable the cache
+     * @param config The configuration
+     */
+    protected LoggerNamePatternSelector(String defaultPattern, PatternMatch[] properties,
+            boolean alwaysWriteExceptions, boolean disableAnsi, boolean noConsoleNoAnsi, int cacheSize,
+            Configuration config) {
+        this.cache = cacheSize > 0 ? new LoggerNameCache(cacheSize) : null;
         PatternParser parser = PatternLayout.createPatternParser(config);
         PatternFormatter[] emptyFormatters = new PatternFormatter[0];
         this.defaultFormatters = parser.parse(defaultPattern, alwaysWriteExceptions, disableAnsi, noConsoleNoAnsi)
                 .toArray(emptyFormatters);
+        List<PatternFormatter[]> formatters = new ArrayList<>(properties.length);
         for (PatternMatch property : properties) {
-            PatternFormatter[] formatters = parser.parse(property.getPattern(), alwaysWriteExceptions, disableAnsi, noConsoleNoAnsi)
-                    .toArray(emptyFormatters);
+            // The index of the pattern is used as priority, so the first matching key wins
+            int index = formatters.size();
+            formatters.add(parser.parse(property.getPattern(), alwaysWriteExceptions, disableAnsi, noConsoleNoAnsi)
+                    .toArray(emptyFormatters));
             for (String name : property.getKey().split(",")) {
-                this.formatters.add(new LoggerNameSelector(name, formatters));
+                this.trie.add(name, index);
             }
         }
+        this.formatters = formatters.toArray(new PatternFormatter[0][]);
     }
 
     @Override
     public PatternFormatter[] getFormatters(LogEvent event) {
         final @Nullable String loggerName = event.getLoggerName();
-        if (loggerName != null) {
-            //noinspection ForLoopReplaceableByForEach
-            for (int i = 0; i < this.formatters.size(); i++) {
-                LoggerNameSelector selector = this.formatters.get(i);
-                if (selector.test(loggerName)) {
-                    return selector.get();
-                }
-            }
+        if (loggerName == null) {
+            return this.defaultFormatters;
         }
 
-        return this.defaultFormatters;
+        final @Nullable LoggerNameCache cache = this.cache;
+        if (cache == null) {
+            return find(loggerName);
+        }
+
+        @Nullable PatternFormatter[] formatters = cache.get(loggerName);
+        if (formatters == null) {
+            formatters = find(loggerName);
+            cache.put(loggerName, formatters);
+        }
+        return formatters;
+    }
+
+    private PatternFormatter[] find(String loggerName) {
+        int index = this.trie.find(loggerName);
+        return index != LoggerNameTrie.NO_MATCH ? this.formatters[index] : this.defaultFormatters;
+    }
+
+    /**
+     * Returns how often the pattern for a logger name was found in the cache.
+     *
+     * @return The number of cache hits
+     */
+    public long getCacheHits() {
+        return this.cache != null ? this.cache.getHits() : 0;
+    }
+
+    /**
+     * Returns how often the pattern for a logger name had to be resolved
+     * because it was not in the cache.
+     *
+     * @return The number of cache misses
+     */
+    public long getCacheMisses() {
+        return this.cache != null ? this.cache.getMisses() : 0;
     }
 
     /**
@@ -148,6 +193,26 @@ public PatternFormatter[] getFormatters(LogEvent event) {
      * @param config The configuration
      * @return The new pattern selector
      */
+    public static LoggerNamePatternSelector createSelector(String defaultPattern, PatternMatch[] properties,
+            boolean alwaysWriteExceptions, boolean disableAnsi, boolean noConsoleNoAnsi, Configuration config) {
+        return new LoggerNamePatternSelector(defaultPattern, properties, alwaysWriteExceptions, disableAnsi, noConsoleNoAnsi, config);
+    }
+
+    /**
+     * Creates a new {@link LoggerNamePatternSelector}.
+     *
+     * @param defaultPattern The default pattern to use if no logger name matches
+     * @param properties The pattern match rules to use
+     * @param alwaysWriteExceptions Write exceptions even if pattern does not
+     *     include exception conversion
+     * @param disableAnsi If true, disable all ANSI escape codes
+     * @param noConsoleNoAnsi If true and {@link System#console()} is null,
+     *     disable ANSI escape codes
+     * @param cacheSize The maximum number of cached logger names, or
+     *     {@code 0} to disable the cache
+     * @param config The configuration
+     * @return The new pattern selector
+     */
     @PluginFactory
     public static LoggerNamePatternSelector createSelector(
             @Required(message = "Default pattern is required") @PluginAttribute(value = "defaultPattern") String defaultPattern,
@@ -155,8 +220,10 @@ public static LoggerNamePatternSelector createSelector(
             @PluginAttribute(value = "alwaysWriteExceptions", defaultBoolean = true) boolean alwaysWriteExceptions,
             @PluginAttribute("disableAnsi") boolean disableAnsi,
             @PluginAttribute("noConsoleNoAnsi") boolean noConsoleNoAnsi,
+            @PluginAttribute(value = "cacheSize", defaultInt = DEFAULT_CACHE_SIZE) int cacheSize,
             @PluginConfiguration Configuration config) {
-        return new LoggerNamePatternSelector(defaultPattern, properties, alwaysWriteExceptions, disableAnsi, noConsoleNoAnsi, config);
+        return new LoggerNamePatternSelector(defaultPattern, properties, alwaysWriteExceptions, disableAnsi, noConsoleNoAnsi,
+                cacheSize, config);
     }
 
 }
@@ -0,0 +1,273 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Minecrell <https://github.com/Minecrell>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.minecrell.terminalconsole.util;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Matches logger names against a set of keys in time proportional to the
+ * length of the logger name, independent of the number of keys.
+ *
+ * <p>Each key is added with an index. {@link #find(String)} returns the
+ * lowest index of all keys matching the logger name, which is equivalent
+ * to testing all keys in order and using the first that matches.</p>
+ *
+ * <p>The following keys are supported:</p>
+ *
+ * <ul>
+ *     <li>Keys ending with a dot (e.g. {@code net.minecrell.}) match all
+ *     logger names starting with the key.</li>
+ *     <li>All other keys (e.g. {@code com.example.Logger}) match only the
+ *     exact logger name.</li>
+ *     <li>A segment consisting only of an asterisk matches exactly one
+ *     arbitrary segment of the logger name (e.g. {@code com.*.internal.}
+ *     matches {@code com.example.internal.Logger}).</li>
+ * </ul>
+ *
+ * <p>Exact names are stored in a hash table. Package prefixes and keys with
+ * wildcards are compiled into a trie of the dot-separated segments.</p>
+ */
+final class LoggerNameTrie {
+
+    static final int NO_MATCH = -1;
+
+    private static final char SEPARATOR = '.';
+    private static final String WILDCARD = "*";
+
+    private final Map<String, Integer> exact = new HashMap<>();
+    private final Node root = new Node();
+
+    /**
+     * Adds a new key. If the same key was already added before, the lower
+     * index is kept.
+     *
+     * @param key The key to add
+     * @param index The index to return if the key matches
+     */
+    void add(String key, int index) {
+        if (index < 0) {
+            throw new IllegalArgumentException("Negative index: " + index);
+        }
+
+        boolean isPackage = key.endsWith(".");
+        if (!isPackage && !hasWildcard(key)) {
+            Integer existing = this.exact.get(key);
+            if (existing == null || index < existing) {
+                this.exact.put(key, index);
+            }
+            return;
+        }
+
+        Node node = this.root;
+        node.updateMin(index);
+
+        int start = 0;
+        int end = isPackage ? key.length() - 1 : key.length();
+        while (true) {
+            int pos = key.indexOf(SEPARATOR, start);
+            if (pos == -1 || pos > end) {
+                pos = end;
+            }
+
+            node = node.getOrCreateChild(key.substring(start, pos));
+            node.updateMin(index);
+
+            if (pos == end) {
+                break;
+            }
+            start = pos + 1;
+        }
+
+        if (isPackage) {
+            node.packageIndex = Math.min(node.packageIndex, index);
+        } else {
+            node.exactIndex = Math.min(node.exactIndex, index);
+        }
+    }
+
+    private static boolean hasWildcard(String key) {
+        int pos = key.indexOf('*');
+        while (pos != -1) {
+            if ((pos == 0 || key.charAt(pos - 1) == SEPARATOR)
+                    && (pos == key.length() - 1 || key.charAt(pos + 1) == SEPARATOR)) {
+                return true;
+            }
+            pos = key.indexOf('*', pos + 1);
+        }
+        return false;
+    }
+
+    /**
+     * Returns the lowest index of all keys matching the logger name.
+     *
+     * @param name The logger name
+     * @return The lowest matching index, or {@link #NO_MATCH}
+     */
+    int find(String name) {
+        int best = Integer.MAX_VALUE;
+
+        Integer exact = this.exact.get(name);
+        if (exact != null) {
+            best = exact;
+        }
+
+        if (this.root.min < best) {
+            best = find(this.root, name, 0, best);
+        }
+
+        return best != Integer.MAX_VALUE ? best : NO_MATCH;
+    }
+
+    private static int find(Node node, String name, int start, int best) {
+        int end = name.indexOf(SEPARATOR, start);
+        boolean last = end == -1;
+        if (last) {
+            end = name.length();
+        }
+
+        @Nullable Node child = node.getChild(name, start, end);
+        if (child != null && child.min < best) {
+            best = find(child, name, end, last, best);
+        }
+
+        child = node.wildcard;
+        if (child != null && child.min < best) {
+            best = find(child, name, end, last, best);
+        }
+
+        return best;
+    }
+
+    private static int find(Node node, String name, int end, boolean last, int best) {
+        if (last) {
+            // The logger name ends in this node
+            return Math.min(best, node.exactIndex);
+        }
+
+        // There is a separator after this node, so all package keys match
+        best = Math.min(best, node.packageIndex);
+        if (node.min < best) {
+            best = find(node, name, end + 1, best);
+        }
+        return best;
+    }
+
+    private static final class Node {
+
+        // The lowest index of all keys in this subtree
+        int min = Integer.MAX_VALUE;
+        int packageIndex = Integer.MAX_VALUE;
+        int exactIndex = Integer.MAX_VALUE;
+
+        @Nullable Node wildcard;
+
+        // Open addressing hash table of the child segments
+        private @Nullable String[] segments = new String[4];
+        private @Nullable Node[] children = new Node[4];
+        private int size;
+
+        void updateMin(int index) {
+            this.min = Math.min(this.min, index);
+        }
+
+        Node getOrCreateChild(String segment) {
+            if (WILDCARD.equals(segment)) {
+                Node wildcard = this.wildcard;
+                if (wildcard == null) {
+                    this.wildcard = wildcard = new Node();
+                }
+                return wildcard;
+            }
+
+            @Nullable Node child = getChild(segment, 0, segment.length());
+            if (child == null) {
+                if ((this.size + 1) * 2 > this.segments.length) {
+                    resize();
+                }
+
+                child = new Node();
+                insert(segment, child);
+                this.size++;
+            }
+            return child;
+        }
+
+        @Nullable Node getChild(String name, int start, int end) {
+            int mask = this.segments.length - 1;
+            int len = end - start;
+            int i = hash(name, start, end) & mask;
+
+            @Nullable String segment;
+            while ((segment = this.segments[i]) != null) {
+                if (segment.length() == len && name.regionMatches(start, segment, 0, len)) {
+                    return this.children[i];
+                }
+                i = (i + 1) & mask;
+            }
+
+            return null;
+        }
+
+        private void insert(String segment, Node child) {
+            int mask = this.segments.length - 1;
+            int i = hash(segment, 0, segment.length()) & mask;
+            while (this.segments[i] != null) {
+                i = (i + 1) & mask;
+            }
+
+            this.segments[i] = segment;
+            this.children[i] = child;
+        }
+
+        private void resize() {
+            @Nullable String[] segments = this.segments;
+            @Nullable Node[] children = this.children;
+            this.segments = new String[segments.length * 2];
+            this.children = new Node[segments.length * 2];
+
+            for (int i = 0; i < segments.length; i++) {
+                @Nullable String segment = segments[i];
+                if (segment != null) {
+                    //noinspection ConstantConditions
+                    insert(segment, children[i]);
+                }
+            }
+        }
+
+        private static int hash(String s, int start, int end) {
+            // Same as String.hashCode(), but without creating a substring
+            int h = 0;
+            for (int i = start; i < end; i++) {
+                h = 31 * h + s.charAt(i);
+            }
+            return h ^ (h >>> 16);
+        }
+
+    }
+
+}
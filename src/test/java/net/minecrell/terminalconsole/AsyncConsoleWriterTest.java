@@ -0,0 +1,170 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Minecrell <https://github.com/Minecrell>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.minecrell.terminalconsole;
+
+import org.apache.logging.log4j.Level;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AsyncConsoleWriterTest {
+
+    private ConsoleCapture output;
+
+    @BeforeEach
+    public void installTerminal() {
+        this.output = ConsoleCapture.install();
+    }
+
+    @AfterEach
+    public void uninstallTerminal() {
+        ConsoleCapture.uninstall();
+    }
+
+    private static AsyncConsoleWriter start(int bufferSize, TerminalConsoleAppender.OverflowPolicy policy) {
+        AsyncConsoleWriter writer = new AsyncConsoleWriter("Test", bufferSize, policy, Level.WARN, 256, 0);
+        writer.start();
+        return writer;
+    }
+
+    private static void awaitEmpty(AsyncConsoleWriter writer) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (writer.size() > 0) {
+            assertTrue(System.nanoTime() < deadline, "Writer did not take the queued messages");
+            Thread.sleep(1);
+        }
+    }
+
+    /**
+     * Blocks the writer thread while printing "0", then fills the buffer
+     * with "1" to "4".
+     */
+    private static AsyncConsoleWriter fill(TerminalConsoleAppender.OverflowPolicy policy) throws InterruptedException {
+        AsyncConsoleWriter writer = start(4, policy);
+        TerminalConsoleAppender.lockOutput();
+        writer.write("0\n", Level.INFO);
+        awaitEmpty(writer);
+        for (int i = 1; i <= 4; i++) {
+            writer.write(i + "\n", Level.INFO);
+        }
+        assertEquals(4, writer.size());
+        return writer;
+    }
+
+    private static Thread writeInBackground(AsyncConsoleWriter writer, String text, Level level) {
+        Thread thread = new Thread(() -> writer.write(text, level));
+        thread.start();
+        return thread;
+    }
+
+    @Test
+    public void writesInOrderAndFlushesOnStop() {
+        AsyncConsoleWriter writer = start(16, TerminalConsoleAppender.OverflowPolicy.BLOCK);
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            String line = "Line " + i + '\n';
+            writer.write(line, Level.INFO);
+            expected.append(line);
+        }
+
+        writer.stop(0, TimeUnit.MILLISECONDS);
+        assertEquals(expected.toString(), this.output.getText());
+    }
+
+    @Test
+    public void printsQueuedMessagesInOneBatch() throws InterruptedException {
+        AsyncConsoleWriter writer = fill(TerminalConsoleAppender.OverflowPolicy.BLOCK);
+        int flushes = this.output.getFlushes();
+        TerminalConsoleAppender.unlockOutput();
+
+        writer.stop(0, TimeUnit.MILLISECONDS);
+        assertEquals("0\n1\n2\n3\n4\n", this.output.getText());
+        // One flush for "0" and one for the batch with the other lines
+        assertEquals(flushes + 2, this.output.getFlushes());
+    }
+
+    @Test
+    public void blockWhenFull() throws InterruptedException {
+        AsyncConsoleWriter writer = fill(TerminalConsoleAppender.OverflowPolicy.BLOCK);
+        Thread blocked = writeInBackground(writer, "5\n", Level.INFO);
+        blocked.join(100);
+        assertTrue(blocked.isAlive());
+        assertEquals(4, writer.size());
+
+        TerminalConsoleAppender.unlockOutput();
+        blocked.join();
+        writer.stop(0, TimeUnit.MILLISECONDS);
+        assertEquals("0\n1\n2\n3\n4\n5\n", this.output.getText());
+    }
+
+    @Test
+    public void dropOldestWhenFull() throws InterruptedException {
+        long dropped = ConsoleMetrics.INSTANCE.getDroppedLines();
+        AsyncConsoleWriter writer = fill(TerminalConsoleAppender.OverflowPolicy.DROP_OLDEST);
+        writer.write("5\n", Level.INFO);
+        writer.write("6\n", Level.ERROR);
+        assertEquals(4, writer.size());
+
+        TerminalConsoleAppender.unlockOutput();
+        writer.stop(0, TimeUnit.MILLISECONDS);
+        assertEquals("0\n3\n4\n5\n6\n", this.output.getText());
+        assertEquals(dropped + 2, ConsoleMetrics.INSTANCE.getDroppedLines());
+    }
+
+    @Test
+    public void dropBelowLevelWhenFull() throws InterruptedException {
+        long dropped = ConsoleMetrics.INSTANCE.getDroppedLines();
+        AsyncConsoleWriter writer = fill(TerminalConsoleAppender.OverflowPolicy.DROP_BELOW_LEVEL);
+        writer.write("dropped\n", Level.INFO);
+        assertEquals(dropped + 1, ConsoleMetrics.INSTANCE.getDroppedLines());
+
+        // Messages at or above the overflow level still wait for space
+        Thread blocked = writeInBackground(writer, "5\n", Level.WARN);
+        blocked.join(100);
+        assertTrue(blocked.isAlive());
+
+        TerminalConsoleAppender.unlockOutput();
+        blocked.join();
+        writer.stop(0, TimeUnit.MILLISECONDS);
+        assertEquals("0\n1\n2\n3\n4\n5\n", this.output.getText());
+    }
+
+    @Test
+    public void printsDirectlyWhenStopped() {
+        AsyncConsoleWriter writer = start(4, TerminalConsoleAppender.OverflowPolicy.BLOCK);
+        writer.stop(0, TimeUnit.MILLISECONDS);
+        writer.write("Hello\n", Level.INFO);
+        assertEquals(0, writer.size());
+        assertEquals("Hello\n", this.output.getText());
+        assertFalse(this.output.getText().isEmpty());
+    }
+
+}
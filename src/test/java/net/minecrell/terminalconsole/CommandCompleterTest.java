@@ -0,0 +1,248 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Minecrell <https://github.com/Minecrell>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.minecrell.terminalconsole;
+
+import org.jline.reader.Candidate;
+import org.jline.reader.ParsedLine;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CommandCompleterTest {
+
+    private static final List<String> PLAYERS = Arrays.asList("Alice", "Bob");
+
+    /**
+     * Completes the last word, with the cursor at the end of the line.
+     */
+    private static List<String> complete(CommandCompleter completer, String... words) {
+        List<String> wordList = Arrays.asList(words);
+        String line = String.join(" ", wordList);
+        ParsedLine parsed = new ParsedLine() {
+            @Override
+            public String word() {
+                return words[words.length - 1];
+            }
+
+            @Override
+            public int wordCursor() {
+                return word().length();
+            }
+
+            @Override
+            public int wordIndex() {
+                return words.length - 1;
+            }
+
+            @Override
+            public List<String> words() {
+                return wordList;
+            }
+
+            @Override
+            public String line() {
+                return line;
+            }
+
+            @Override
+            public int cursor() {
+                return line.length();
+            }
+        };
+
+        List<Candidate> candidates = new ArrayList<>();
+        completer.complete(null, parsed, candidates);
+        List<String> values = new ArrayList<>(candidates.size());
+        for (Candidate candidate : candidates) {
+            values.add(candidate.value());
+        }
+        return values;
+    }
+
+    private static CommandCompleter createCompleter(CommandRegistry registry) {
+        // Compute the suggestions on the calling thread
+        return new CommandCompleter(registry, Runnable::run, 1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void completesCommandsAndSuggestions() {
+        CommandRegistry registry = new CommandRegistry();
+        registry.register("gamemode");
+        registry.register("give", (arguments, prefix) -> PLAYERS);
+        CommandCompleter completer = createCompleter(registry);
+
+        assertEquals(Arrays.asList("gamemode", "give"), complete(completer, "g"));
+        assertEquals(PLAYERS, complete(completer, "give", ""));
+    }
+
+    @Test
+    public void cachesCompletionsPerPrefix() {
+        CommandRegistry registry = new CommandRegistry();
+        AtomicInteger calls = new AtomicInteger();
+        registry.register("give", (arguments, prefix) -> {
+            calls.incrementAndGet();
+            return PLAYERS;
+        });
+        CommandCompleter completer = createCompleter(registry);
+
+        assertEquals(PLAYERS, complete(completer, "give", "A"));
+        assertEquals(PLAYERS, complete(completer, "give", "A"));
+        assertEquals(1, calls.get());
+
+        complete(completer, "give", "B");
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void invalidatesCacheWhenRegistryChanges() {
+        CommandRegistry registry = new CommandRegistry();
+        AtomicInteger calls = new AtomicInteger();
+        registry.register("give", (arguments, prefix) -> {
+            calls.incrementAndGet();
+            return PLAYERS;
+        });
+        CommandCompleter completer = createCompleter(registry);
+
+        assertEquals(Collections.singletonList("give"), complete(completer, "g"));
+        complete(completer, "give", "");
+        registry.invalidate();
+        complete(completer, "give", "");
+        assertEquals(2, calls.get());
+
+        registry.register("gamemode");
+        assertEquals(Arrays.asList("gamemode", "give"), complete(completer, "g"));
+    }
+
+    @Test
+    public void clearsCacheWhenFull() {
+        CommandRegistry registry = new CommandRegistry();
+        AtomicInteger calls = new AtomicInteger();
+        registry.register("give", (arguments, prefix) -> {
+            calls.incrementAndGet();
+            return PLAYERS;
+        });
+        CommandCompleter completer = createCompleter(registry);
+
+        for (int i = 0; i < CommandCompleter.MAX_CACHE_SIZE; i++) {
+            complete(completer, "give", String.valueOf(i));
+        }
+        assertEquals(CommandCompleter.MAX_CACHE_SIZE, calls.get());
+
+        // The cache is full, so it is cleared before the next completion
+        complete(completer, "give", "0");
+        assertEquals(CommandCompleter.MAX_CACHE_SIZE + 1, calls.get());
+        complete(completer, "give", "1");
+        assertEquals(CommandCompleter.MAX_CACHE_SIZE + 2, calls.get());
+        complete(completer, "give", "0");
+        assertEquals(CommandCompleter.MAX_CACHE_SIZE + 2, calls.get());
+    }
+
+    @Test
+    public void usesSuggestionsOnceAvailable() throws InterruptedException {
+        CommandRegistry registry = new CommandRegistry();
+        registry.register("give gamemode");
+        CountDownLatch ready = new CountDownLatch(1);
+        registry.register("give", (arguments, prefix) -> {
+            try {
+                ready.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return PLAYERS;
+        });
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            CommandCompleter completer = new CommandCompleter(registry, executor, 10, TimeUnit.MILLISECONDS);
+            // Only the subcommands are completed until the suggestions are available
+            assertEquals(Collections.singletonList("gamemode"), complete(completer, "give", ""));
+
+            ready.countDown();
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+            assertEquals(Arrays.asList("gamemode", "Alice", "Bob"), complete(completer, "give", ""));
+        } finally {
+            ready.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void waitsForDefaultTimeout() {
+        CommandRegistry registry = new CommandRegistry();
+        CountDownLatch ready = new CountDownLatch(1);
+        registry.register("give", (arguments, prefix) -> {
+            try {
+                ready.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return PLAYERS;
+        });
+
+        try {
+            CommandCompleter completer = new CommandCompleter(registry);
+            long start = System.nanoTime();
+            assertEquals(Collections.emptyList(), complete(completer, "give", ""));
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertTrue(elapsed >= CommandCompleter.DEFAULT_TIMEOUT, "Returned after " + elapsed + " ms");
+        } finally {
+            ready.countDown();
+        }
+    }
+
+    @Test
+    public void removesFailedSuggestions() {
+        CommandRegistry registry = new CommandRegistry();
+        registry.register("give gamemode");
+        AtomicInteger calls = new AtomicInteger();
+        registry.register("give", (arguments, prefix) -> {
+            calls.incrementAndGet();
+            throw new IllegalStateException("Failed to list players");
+        });
+        CommandCompleter completer = createCompleter(registry);
+
+        assertEquals(Collections.singletonList("gamemode"), complete(completer, "give", ""));
+        // The failed result is not reported again until the cache is invalidated
+        assertEquals(Collections.singletonList("gamemode"), complete(completer, "give", ""));
+        assertEquals(1, calls.get());
+
+        registry.invalidate();
+        complete(completer, "give", "");
+        assertEquals(2, calls.get());
+    }
+
+}
@@ -0,0 +1,94 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Minecrell <https://github.com/Minecrell>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.minecrell.terminalconsole;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CommandRegistryTest {
+
+    private static List<String> literals(CommandRegistry registry, String prefix, String... words) {
+        return registry.lookup(Arrays.asList(words), prefix).literals;
+    }
+
+    @Test
+    public void completesCommandsByPrefix() {
+        CommandRegistry registry = new CommandRegistry();
+        registry.register("stop");
+        registry.register("say");
+        registry.register("save-all");
+        registry.register("save");
+        registry.register("whitelist add");
+
+        assertEquals(Arrays.asList("save", "save-all", "say", "stop", "whitelist"), literals(registry, ""));
+        assertEquals(Arrays.asList("save", "save-all", "say"), literals(registry, "sa"));
+        assertEquals(Arrays.asList("save", "save-all"), literals(registry, "save"));
+        assertEquals(Collections.emptyList(), literals(registry, "x"));
+        assertEquals(Collections.singletonList("add"), literals(registry, "", "whitelist"));
+    }
+
+    @Test
+    public void unregistersSubtree() {
+        CommandRegistry registry = new CommandRegistry();
+        registry.register("whitelist add");
+        registry.register("whitelist remove");
+        registry.register("white");
+
+        long version = registry.getVersion();
+        assertTrue(registry.unregister("whitelist"));
+        assertNotEquals(version, registry.getVersion());
+        assertFalse(registry.unregister("whitelist"));
+        assertFalse(registry.unregister("whitelist add"));
+
+        assertEquals(Collections.singletonList("white"), literals(registry, "wh"));
+        assertEquals(Collections.emptyList(), literals(registry, "", "whitelist"));
+    }
+
+    @Test
+    public void passesArgumentsToSuggestionProvider() {
+        CommandRegistry registry = new CommandRegistry();
+        CommandRegistry.SuggestionProvider players = (arguments, prefix) -> Arrays.asList("Alice", "Bob");
+        registry.register("give", players);
+
+        CommandRegistry.Lookup lookup = registry.lookup(Arrays.asList("give", "Alice", "diamond"), "6");
+        assertEquals(players, lookup.suggestions);
+        assertEquals(Arrays.asList("Alice", "diamond"), lookup.arguments);
+        assertTrue(lookup.literals.isEmpty());
+
+        assertNotNull(registry.lookup(Collections.singletonList("give"), "").suggestions);
+        assertNull(registry.lookup(Collections.singletonList("unknown"), "").suggestions);
+    }
+
+}
@@ -0,0 +1,94 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Minecrell <https://github.com/Minecrell>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.minecrell.terminalconsole;
+
+import org.jline.terminal.Terminal;
+import org.jline.terminal.impl.DumbTerminal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+
+/**
+ * Captures the console output of {@link TerminalConsoleAppender} using a
+ * dumb terminal backed by a byte array.
+ */
+final class ConsoleCapture extends ByteArrayOutputStream {
+
+    private final Charset charset;
+    private int flushes;
+
+    ConsoleCapture() {
+        this.charset = Charset.defaultCharset();
+    }
+
+    /**
+     * Replaces the terminal of the appender with a dumb terminal writing
+     * into a new {@link ConsoleCapture}.
+     *
+     * @return The captured output
+     */
+    static ConsoleCapture install() {
+        ConsoleCapture capture = new ConsoleCapture();
+        TerminalConsoleAppender.setTerminal(capture.createTerminal());
+        return capture;
+    }
+
+    /**
+     * Restores the standard output as console.
+     */
+    static void uninstall() {
+        TerminalConsoleAppender.setTerminal(null);
+    }
+
+    /**
+     * Creates a dumb terminal that writes into this capture.
+     *
+     * @return The new terminal
+     */
+    Terminal createTerminal() {
+        try {
+            return new DumbTerminal(new ByteArrayInputStream(new byte[0]), this);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public synchronized void flush() {
+        this.flushes++;
+    }
+
+    synchronized int getFlushes() {
+        return this.flushes;
+    }
+
+    synchronized String getText() {
+        return new String(toByteArray(), this.charset);
+    }
+
+}
@@ -0,0 +1,136 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Minecrell <https://github.com/Minecrell>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.minecrell.terminalconsole;
+
+import org.apache.logging.log4j.Level;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ConsoleDuplicateFilterTest {
+
+    private static final String NL = System.lineSeparator();
+    private static final long WINDOW = TimeUnit.MINUTES.toNanos(10);
+
+    @Test
+    public void holdBackDuplicates() {
+        List<String> output = new ArrayList<>();
+        ConsoleDuplicateFilter filter = new ConsoleDuplicateFilter("Test", TimeUnit.NANOSECONDS.toMillis(WINDOW));
+        filter.start(output::add);
+        try {
+            assertTrue(filter.tryAcquire(Level.INFO, "Test", "Hello", 0));
+            assertFalse(filter.tryAcquire(Level.INFO, "Test", new StringBuilder("Hello"), 1));
+            assertFalse(filter.tryAcquire(Level.INFO, "Test", "Hello", 2));
+            assertEquals(Collections.emptyList(), output);
+
+            // Different level, logger or message
+            assertTrue(filter.tryAcquire(Level.WARN, "Test", "Hello", 3));
+            assertEquals(Collections.singletonList("[console] Last message repeated 2 times" + NL), output);
+            assertTrue(filter.tryAcquire(Level.WARN, "Other", "Hello", 4));
+            assertTrue(filter.tryAcquire(Level.WARN, "Other", "Hello!", 5));
+            assertTrue(filter.tryAcquire(Level.WARN, null, "Hello!", 6));
+            assertFalse(filter.tryAcquire(Level.WARN, null, "Hello!", 7));
+            assertEquals(1, output.size());
+        } finally {
+            filter.stop();
+        }
+
+        assertEquals("[console] Last message repeated 1 time" + NL, output.get(1));
+    }
+
+    @Test
+    public void flushAfterWindow() {
+        List<String> output = Collections.synchronizedList(new ArrayList<>());
+        ConsoleDuplicateFilter filter = new ConsoleDuplicateFilter("Test", TimeUnit.NANOSECONDS.toMillis(WINDOW));
+        filter.start(output::add);
+        try {
+            // Relative to the real clock, since the scheduled flush uses it as well
+            long start = System.nanoTime();
+            assertTrue(filter.tryAcquire(Level.INFO, "Test", "Spam", start));
+            for (int i = 1; i <= 5; i++) {
+                assertFalse(filter.tryAcquire(Level.INFO, "Test", "Spam", start + i));
+            }
+
+            filter.flushExpired(start + WINDOW);
+            assertEquals(Collections.emptyList(), output);
+            filter.flushExpired(start + WINDOW + 1);
+            assertEquals(Collections.singletonList("[console] Last message repeated 5 times" + NL), output);
+
+            // Further duplicates are still held back
+            assertFalse(filter.tryAcquire(Level.INFO, "Test", "Spam", start + WINDOW + 2));
+            filter.reset();
+            assertEquals("[console] Last message repeated 1 time" + NL, output.get(1));
+            assertTrue(filter.tryAcquire(Level.INFO, "Test", "Spam", start + WINDOW + 3));
+        } finally {
+            filter.stop();
+        }
+
+        assertEquals(2, output.size());
+    }
+
+    @Test
+    public void countAllDuplicatesOfConcurrentThreads() throws InterruptedException {
+        List<String> output = Collections.synchronizedList(new ArrayList<>());
+        ConsoleDuplicateFilter filter = new ConsoleDuplicateFilter("Test", TimeUnit.NANOSECONDS.toMillis(WINDOW));
+        filter.start(output::add);
+
+        AtomicLong heldBack = new AtomicLong();
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            int thread = t;
+            threads[t] = new Thread(() -> {
+                StringBuilder message = new StringBuilder();
+                for (int i = 0; i < 10000; i++) {
+                    message.setLength(0);
+                    message.append("Message ").append(i / 100 % 3 == thread % 3 ? "A" : "B" + (i % 2));
+                    if (!filter.tryAcquire(Level.INFO, "Test", message, System.nanoTime())) {
+                        heldBack.incrementAndGet();
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        filter.stop();
+
+        // Every held back message is included in exactly one summary
+        long repeated = 0;
+        for (String line : output) {
+            repeated += Long.parseLong(line.replaceAll("\\D", ""));
+        }
+        assertEquals(heldBack.get(), repeated);
+    }
+
+}
@@ -0,0 +1,190 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Minecrell <https://github.com/Minecrell>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.minecrell.terminalconsole;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ConsoleHistoryTest {
+
+    private static Path createHistoryFile() throws IOException {
+        Path file = Files.createTempFile("history", ".txt");
+        file.toFile().deleteOnExit();
+        return file;
+    }
+
+    @Test
+    public void persistsEntries() throws IOException {
+        Path file = createHistoryFile();
+        ConsoleHistory history = new ConsoleHistory(file);
+        history.load();
+        history.add(Instant.ofEpochMilli(1000), "say hello");
+        history.add(Instant.ofEpochMilli(2000), "say hello");
+        history.add(Instant.ofEpochMilli(3000), "say \\ multi\nline");
+        history.close();
+
+        assertEquals(Arrays.asList("1000:say hello", "3000:say \\\\ multi\\nline"),
+                Files.readAllLines(file, StandardCharsets.UTF_8));
+
+        ConsoleHistory loaded = new ConsoleHistory(file);
+        loaded.load();
+        assertEquals(2, loaded.size());
+        assertEquals("say hello", loaded.get(0));
+        assertEquals("say \\ multi\nline", loaded.get(1));
+        assertEquals(Instant.ofEpochMilli(3000), loaded.iterator(1).next().time());
+        loaded.close();
+    }
+
+    @Test
+    public void keepsMostRecentEntries() throws IOException {
+        Path file = createHistoryFile();
+        StringBuilder records = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            records.append(i).append(":command ").append(i).append('\n');
+        }
+        Files.write(file, records.toString().getBytes(StandardCharsets.UTF_8));
+
+        ConsoleHistory history = new ConsoleHistory(file, 10);
+        history.load();
+        assertEquals(10, history.size());
+        assertEquals(90, history.first());
+        assertEquals("command 99", history.get(history.last()));
+        history.save();
+        history.close();
+
+        // The file was rewritten with only the visible entries
+        assertEquals(10, Files.readAllLines(file, StandardCharsets.UTF_8).size());
+    }
+
+    @Test
+    public void keepsEntriesAddedWhileCompacting() throws IOException {
+        Path file = createHistoryFile();
+        StringBuilder records = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            records.append(i).append(":command ").append(i).append('\n');
+        }
+        Files.write(file, records.toString().getBytes(StandardCharsets.UTF_8));
+
+        ConsoleHistory history = new ConsoleHistory(file, 10);
+        history.load();
+        // Added before the file was compacted in the background
+        for (int i = 0; i < 5; i++) {
+            history.add(Instant.ofEpochMilli(1000 + i), "new " + i);
+        }
+        // Reload while the entries might still be queued
+        history.load();
+        assertEquals("new 4", history.get(history.last()));
+        history.close();
+
+        ConsoleHistory loaded = new ConsoleHistory(file, 10);
+        loaded.load();
+        assertEquals(10, loaded.size());
+        assertEquals("command 95", loaded.get(loaded.first()));
+        assertEquals("new 4", loaded.get(loaded.last()));
+        loaded.close();
+    }
+
+    @Test
+    public void compactsWhileAddingEntries() throws IOException {
+        Path file = createHistoryFile();
+        ConsoleHistory history = new ConsoleHistory(file, 10);
+        history.load();
+        for (int i = 0; i < 100; i++) {
+            history.add(Instant.ofEpochMilli(i), "command " + i);
+            history.save();
+        }
+        history.close();
+
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertTrue(lines.size() >= 10 && lines.size() <= 20, "Unexpected size: " + lines.size());
+        for (int i = 0; i < lines.size(); i++) {
+            int command = 100 - lines.size() + i;
+            assertEquals(command + ":command " + command, lines.get(i));
+        }
+    }
+
+    @Test
+    public void trimsInvisibleEntries() throws IOException {
+        Path file = createHistoryFile();
+        Files.write(file, "0:loaded\n".getBytes(StandardCharsets.UTF_8));
+
+        ConsoleHistory history = new ConsoleHistory(file, 10);
+        history.load();
+        for (int i = 0; i < 1000; i++) {
+            history.add(Instant.ofEpochMilli(i), "command " + i);
+            assertTrue(history.retained() < 20, "Too many entries in memory: " + history.retained());
+        }
+
+        assertEquals(10, history.size());
+        assertEquals(991, history.first());
+        assertEquals(1000, history.last());
+        assertEquals("command 990", history.get(history.first()));
+        assertEquals("command 999", history.get(history.last()));
+        assertEquals(995, history.searchBackwards("command 994", Integer.MAX_VALUE));
+        assertEquals(-1, history.searchBackwards("command 98", Integer.MAX_VALUE));
+        history.close();
+
+        ConsoleHistory loaded = new ConsoleHistory(file, 10);
+        loaded.load();
+        assertEquals("command 990", loaded.get(loaded.first()));
+        assertEquals("command 999", loaded.get(loaded.last()));
+        loaded.close();
+    }
+
+    @Test
+    public void searchesBackwards() throws IOException {
+        Path file = createHistoryFile();
+        StringBuilder records = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            records.append(i).append(":tp player").append(i).append(" 0 64 0\n");
+        }
+        Files.write(file, records.toString().getBytes(StandardCharsets.UTF_8));
+
+        ConsoleHistory history = new ConsoleHistory(file);
+        history.load();
+        history.save(); // Wait until the index was built
+        history.add("whitelist add player12");
+
+        assertEquals(5000, history.searchBackwards("player12", Integer.MAX_VALUE));
+        assertEquals(1299, history.searchBackwards("player12", 5000));
+        assertEquals(129, history.searchBackwards("player12", 1200));
+        assertEquals(12, history.searchBackwards("player12 ", 1200));
+        assertEquals(-1, history.searchBackwards("player12 ", 12));
+        assertEquals(-1, history.searchBackwards("PLAYER12", Integer.MAX_VALUE));
+        assertEquals(4999, history.searchBackwards("0 ", 5000));
+        history.close();
+    }
+
+}
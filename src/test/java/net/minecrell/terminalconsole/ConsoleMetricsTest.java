@@ -0,0 +1,60 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Minecrell <https://github.com/Minecrell>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.minecrell.terminalconsole;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ConsoleMetricsTest {
+
+    @Test
+    public void emptyHistogram() {
+        ConsoleMetrics.Latency latency = new ConsoleMetrics.Histogram().snapshot();
+        assertEquals(0, latency.getCount());
+        assertEquals(0, latency.getMeanNanos());
+        assertEquals(0, latency.getP99Nanos());
+    }
+
+    @Test
+    public void histogramPercentiles() {
+        ConsoleMetrics.Histogram histogram = new ConsoleMetrics.Histogram();
+        for (int i = 0; i < 90; i++) {
+            histogram.record(100);
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.record(5000);
+        }
+
+        ConsoleMetrics.Latency latency = histogram.snapshot();
+        assertEquals(100, latency.getCount());
+        assertEquals(90 * 100 + 10 * 5000, latency.getTotalNanos());
+        assertEquals(5000, latency.getMaxNanos());
+        assertEquals(127, latency.getP50Nanos());
+        assertEquals(127, latency.getP90Nanos());
+        assertEquals(5000, latency.getP99Nanos());
+    }
+
+}
@@ -0,0 +1,176 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Minecrell <https://github.com/Minecrell>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.minecrell.terminalconsole;
+
+import org.apache.logging.log4j.Level;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ConsoleRateLimiterTest {
+
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final String NL = System.lineSeparator();
+
+    private static ConsoleRateLimiter create(TerminalConsoleAppender.RateLimitScope scope, int rate, int burst) {
+        return new ConsoleRateLimiter("Test", scope, Level.WARN, rate, burst, 0);
+    }
+
+    private static int acquire(ConsoleRateLimiter limiter, Level level, String loggerName, long now, int count) {
+        int accepted = 0;
+        for (int i = 0; i < count; i++) {
+            if (limiter.tryAcquire(level, loggerName, now)) {
+                accepted++;
+            }
+        }
+        return accepted;
+    }
+
+    private static List<String> summary(ConsoleRateLimiter limiter) {
+        List<String> lines = new ArrayList<>();
+        limiter.start(lines::add);
+        limiter.printSummary();
+        limiter.stop();
+        return lines;
+    }
+
+    @Test
+    public void allowBurst() {
+        ConsoleRateLimiter limiter = create(TerminalConsoleAppender.RateLimitScope.LEVEL, 10, 5);
+        long start = System.nanoTime();
+        assertEquals(5, acquire(limiter, Level.INFO, "test", start, 100));
+        assertEquals(Collections.singletonList("[console] 95 lines suppressed from level INFO" + NL), summary(limiter));
+    }
+
+    @Test
+    public void burstDefaultsToRate() {
+        ConsoleRateLimiter limiter = create(TerminalConsoleAppender.RateLimitScope.LEVEL, 10, 0);
+        assertEquals(10, acquire(limiter, Level.INFO, "test", System.nanoTime(), 100));
+    }
+
+    @Test
+    public void limitSteadyState() {
+        ConsoleRateLimiter limiter = create(TerminalConsoleAppender.RateLimitScope.LEVEL, 10, 2);
+        long start = System.nanoTime();
+
+        // One message every 10ms for one second: the burst and then one message every 100ms
+        int accepted = 0;
+        for (int i = 0; i < 100; i++) {
+            if (limiter.tryAcquire(Level.INFO, "test", start + i * 10 * MILLIS)) {
+                accepted++;
+            }
+        }
+        assertEquals(2 + 9, accepted);
+        assertEquals(Collections.singletonList("[console] 89 lines suppressed from level INFO" + NL), summary(limiter));
+    }
+
+    @Test
+    public void recoverAfterPause() {
+        ConsoleRateLimiter limiter = create(TerminalConsoleAppender.RateLimitScope.LEVEL, 10, 2);
+        long start = System.nanoTime();
+        assertEquals(2, acquire(limiter, Level.INFO, "test", start, 10));
+        assertFalse(limiter.tryAcquire(Level.INFO, "test", start + 50 * MILLIS));
+        // The full burst is available again after a pause
+        assertEquals(2, acquire(limiter, Level.INFO, "test", start + TimeUnit.SECONDS.toNanos(1), 10));
+    }
+
+    @Test
+    public void neverLimitExemptLevel() {
+        ConsoleRateLimiter limiter = create(TerminalConsoleAppender.RateLimitScope.LEVEL, 1, 1);
+        long start = System.nanoTime();
+        assertEquals(100, acquire(limiter, Level.WARN, "test", start, 100));
+        assertEquals(100, acquire(limiter, Level.ERROR, "test", start, 100));
+        assertTrue(summary(limiter).isEmpty());
+    }
+
+    @Test
+    public void limitEachLevel() {
+        ConsoleRateLimiter limiter = create(TerminalConsoleAppender.RateLimitScope.LEVEL, 1, 1);
+        long start = System.nanoTime();
+        assertEquals(1, acquire(limiter, Level.INFO, "a", start, 1));
+        // Same level, different logger
+        assertEquals(0, acquire(limiter, Level.INFO, "b", start, 1));
+        assertEquals(1, acquire(limiter, Level.DEBUG, "a", start, 3));
+
+        List<String> lines = summary(limiter);
+        assertEquals(2, lines.size());
+        assertTrue(lines.contains("[console] 1 line suppressed from level INFO" + NL));
+        assertTrue(lines.contains("[console] 2 lines suppressed from level DEBUG" + NL));
+    }
+
+    @Test
+    public void limitEachLogger() {
+        ConsoleRateLimiter limiter = create(TerminalConsoleAppender.RateLimitScope.LOGGER, 1, 1);
+        long start = System.nanoTime();
+        assertEquals(1, acquire(limiter, Level.INFO, "a", start, 3));
+        // Same logger, different level
+        assertEquals(0, acquire(limiter, Level.DEBUG, "a", start, 1));
+        assertEquals(1, acquire(limiter, Level.INFO, "b", start, 2));
+        assertEquals(1, acquire(limiter, Level.INFO, "", start, 2));
+
+        List<String> lines = summary(limiter);
+        assertEquals(3, lines.size());
+        assertTrue(lines.contains("[console] 3 lines suppressed from a" + NL));
+        assertTrue(lines.contains("[console] 1 line suppressed from b" + NL));
+        assertTrue(lines.contains("[console] 1 line suppressed from root logger" + NL));
+    }
+
+    @Test
+    public void shareLimitForOtherLoggers() {
+        ConsoleRateLimiter limiter = create(TerminalConsoleAppender.RateLimitScope.LOGGER, 1, 1);
+        long start = System.nanoTime();
+        for (int i = 0; i < ConsoleRateLimiter.MAX_BUCKETS; i++) {
+            assertTrue(limiter.tryAcquire(Level.INFO, "logger" + i, start));
+        }
+
+        // All further loggers share a single limit
+        assertTrue(limiter.tryAcquire(Level.INFO, "other1", start));
+        assertFalse(limiter.tryAcquire(Level.INFO, "other2", start));
+        assertFalse(limiter.tryAcquire(Level.INFO, "other3", start));
+        // The existing loggers still have their own limit
+        assertFalse(limiter.tryAcquire(Level.INFO, "logger0", start));
+
+        List<String> lines = summary(limiter);
+        assertEquals(2, lines.size());
+        assertTrue(lines.contains("[console] 1 line suppressed from logger0" + NL));
+        assertTrue(lines.contains("[console] 2 lines suppressed from other loggers" + NL));
+    }
+
+    @Test
+    public void resetCountAfterSummary() {
+        ConsoleRateLimiter limiter = create(TerminalConsoleAppender.RateLimitScope.LEVEL, 1, 1);
+        acquire(limiter, Level.INFO, "test", System.nanoTime(), 3);
+        assertEquals(1, summary(limiter).size());
+        assertTrue(summary(limiter).isEmpty());
+    }
+
+}
@@ -0,0 +1,86 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Minecrell <https://github.com/Minecrell>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.minecrell.terminalconsole;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ConsoleScrollbackTest {
+
+    private static String read(ConsoleScrollback scrollback) {
+        byte[] bytes = new byte[scrollback.size()];
+        scrollback.copyTo(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void keepsAllLines() {
+        ConsoleScrollback scrollback = new ConsoleScrollback(10, 1024, false);
+        scrollback.append("Hello\n");
+        scrollback.append("World\nPartial");
+        assertEquals("Hello\nWorld\nPartial", read(scrollback));
+    }
+
+    @Test
+    public void discardsOldestLines() {
+        ConsoleScrollback scrollback = new ConsoleScrollback(3, 1024, false);
+        for (int i = 0; i < 10; i++) {
+            scrollback.append("Line " + i + '\n');
+        }
+        assertEquals("Line 7\nLine 8\nLine 9\n", read(scrollback));
+    }
+
+    @Test
+    public void discardsOldestBytes() {
+        ConsoleScrollback scrollback = new ConsoleScrollback(100, 16, true);
+        for (int i = 0; i < 10; i++) {
+            scrollback.append("Line " + i + '\n');
+        }
+        // Each line has 7 bytes, only two complete lines fit into 16 bytes
+        assertEquals("Line 8\nLine 9\n", read(scrollback));
+    }
+
+    @Test
+    public void encodesUtf8() {
+        ConsoleScrollback scrollback = new ConsoleScrollback(10, 1024, false);
+        String text = "Grüße €😀\n";
+        scrollback.append(text);
+        assertEquals(text, read(scrollback));
+        scrollback.append("\uD83D");
+        assertEquals(text + '?', read(scrollback));
+    }
+
+    @Test
+    public void discardsBeginningOfLongLine() {
+        ConsoleScrollback scrollback = new ConsoleScrollback(10, 8, false);
+        scrollback.append("ääääää");
+        // 12 bytes, only the last 4 complete characters fit
+        assertEquals("ääää", read(scrollback));
+    }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Minecrell <https://github.com/Minecrell>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.minecrell.terminalconsole;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ConsoleServerTest {
+
+    private static final long TIMEOUT = TimeUnit.SECONDS.toNanos(10);
+
+    private static ConsoleServer open(Consumer<String> inputHandler, int maxClientBuffer) throws IOException {
+        return ConsoleServer.open(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), inputHandler, maxClientBuffer);
+    }
+
+    private static void await(IntSupplier actual, int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TIMEOUT;
+        while (actual.getAsInt() != expected && System.nanoTime() - deadline < 0) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, actual.getAsInt());
+    }
+
+    @Test
+    public void receiveInput() throws Exception {
+        BlockingQueue<String> input = new LinkedBlockingQueue<>();
+        try (ConsoleServer server = open(input::add, ConsoleServer.DEFAULT_MAX_CLIENT_BUFFER);
+             SocketChannel client = SocketChannel.open(server.getLocalAddress())) {
+            client.write(StandardCharsets.UTF_8.encode("help\r\nlist"));
+            client.write(StandardCharsets.UTF_8.encode(" players\nstöp\n"));
+
+            assertEquals("help", input.poll(TIMEOUT, TimeUnit.NANOSECONDS));
+            assertEquals("list players", input.poll(TIMEOUT, TimeUnit.NANOSECONDS));
+            assertEquals("stöp", input.poll(TIMEOUT, TimeUnit.NANOSECONDS));
+        }
+    }
+
+    @Test
+    public void broadcastOutput() throws Exception {
+        try (ConsoleServer server = open(line -> {}, ConsoleServer.DEFAULT_MAX_CLIENT_BUFFER);
+             SocketChannel first = SocketChannel.open(server.getLocalAddress());
+             SocketChannel second = SocketChannel.open(server.getLocalAddress())) {
+            await(server::getClientCount, 2);
+
+            server.broadcast("[12:00:00 INFO]: Hello\n");
+            server.broadcast("[12:00:00 INFO]: World\n");
+
+            String expected = "[12:00:00 INFO]: Hello\n[12:00:00 INFO]: World\n";
+            assertEquals(expected, read(first, expected.length()));
+            assertEquals(expected, read(second, expected.length()));
+        }
+    }
+
+    @Test
+    public void disconnectSlowClient() throws Exception {
+        try (ConsoleServer server = open(line -> {}, 4096);
+             SocketChannel slow = SocketChannel.open(server.getLocalAddress())) {
+            await(server::getClientCount, 1);
+
+            // The client never reads, so the output eventually exceeds the buffer
+            StringBuilder chunk = new StringBuilder();
+            while (chunk.length() < 65536) {
+                chunk.append("[12:00:00 INFO]: Spam\n");
+            }
+            String text = chunk.toString();
+
+            long deadline = System.nanoTime() + TIMEOUT;
+            while (server.getClientCount() > 0 && System.nanoTime() - deadline < 0) {
+                server.broadcast(text);
+            }
+
+            await(server::getClientCount, 0);
+            assertTrue(slow.isOpen());
+        }
+    }
+
+    private static String read(SocketChannel channel, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+        return StandardCharsets.UTF_8.decode(buffer).toString();
+    }
+
+}
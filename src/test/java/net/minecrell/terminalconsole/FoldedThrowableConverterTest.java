@@ -0,0 +1,169 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Minecrell <https://github.com/Minecrell>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.minecrell.terminalconsole;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FoldedThrowableConverterTest {
+
+    private static final String NL = System.lineSeparator();
+
+    private static StackTraceElement frame(String className, int line) {
+        return new StackTraceElement(className, "run", "Test.java", line);
+    }
+
+    private static <T extends Throwable> T withTrace(T t, StackTraceElement... trace) {
+        t.setStackTrace(trace);
+        return t;
+    }
+
+    private static String format(FoldedThrowableConverter converter, Throwable t, long now) {
+        StringBuilder result = new StringBuilder();
+        converter.format(t, now, result);
+        return result.toString();
+    }
+
+    private static String id(Throwable t) {
+        long fingerprint = FoldedThrowableConverter.fingerprint(t);
+        return String.format("(trace #%08x)", (int) (fingerprint ^ (fingerprint >>> 32)));
+    }
+
+    @Test
+    public void collapseFilteredFrames() {
+        FoldedThrowableConverter converter = FoldedThrowableConverter.newInstance(null,
+                new String[]{ "filters(org.junit, sun.reflect)" });
+        Exception e = withTrace(new IllegalStateException("boom"),
+                frame("com.example.Foo", 1),
+                frame("sun.reflect.Method", 2),
+                frame("org.junit.Runner", 3),
+                frame("com.example.Main", 4));
+
+        assertEquals("java.lang.IllegalStateException: boom" + NL
+                + "\tat com.example.Foo.run(Test.java:1)" + NL
+                + "\t... 2 frames hidden" + NL
+                + "\tat com.example.Main.run(Test.java:4)" + NL
+                + '\t' + id(e) + NL, format(converter, e, 0));
+    }
+
+    @Test
+    public void limitFrames() {
+        FoldedThrowableConverter converter = FoldedThrowableConverter.newInstance(null, new String[]{ "2" });
+        Exception e = withTrace(new IllegalStateException("boom"),
+                frame("com.example.A", 1), frame("com.example.B", 2), frame("com.example.C", 3),
+                frame("com.example.D", 4));
+
+        assertEquals("java.lang.IllegalStateException: boom" + NL
+                + "\tat com.example.A.run(Test.java:1)" + NL
+                + "\tat com.example.B.run(Test.java:2)" + NL
+                + "\t... 2 more" + NL
+                + '\t' + id(e) + NL, format(converter, e, 0));
+    }
+
+    @Test
+    public void foldRepeatedCauses() {
+        FoldedThrowableConverter converter = FoldedThrowableConverter.newInstance(null, new String[0]);
+
+        // Simulate a recursive method (line 20) that wraps the exceptions of
+        // the inner calls (line 21) and calls another method in the innermost call (line 10)
+        Exception e = withTrace(new IllegalStateException("root"), recursion(3, frame("com.example.Inner", 1),
+                frame("com.example.Rec", 10)));
+        for (int depth = 3; depth >= 0; depth--) {
+            e = withTrace(new RuntimeException("depth " + depth, e), recursion(depth, frame("com.example.Rec", 21)));
+        }
+
+        assertEquals("java.lang.RuntimeException: depth 0" + NL
+                + "\tat com.example.Rec.run(Test.java:21)" + NL
+                + "\tat com.example.Main.run(Test.java:1)" + NL
+                + "Caused by: java.lang.RuntimeException: depth 1" + NL
+                + "\tat com.example.Rec.run(Test.java:21)" + NL
+                + "\tat com.example.Rec.run(Test.java:20)" + NL
+                + "\t... 1 more" + NL
+                + "Caused by: java.lang.RuntimeException: depth 3" + NL
+                + "\t... (same as above, 2 times)" + NL
+                + "Caused by: java.lang.IllegalStateException: root" + NL
+                + "\tat com.example.Inner.run(Test.java:1)" + NL
+                + "\tat com.example.Rec.run(Test.java:10)" + NL
+                + "\t... 4 more" + NL
+                + '\t' + id(e) + NL, format(converter, e, 0));
+    }
+
+    private static StackTraceElement[] recursion(int depth, StackTraceElement... top) {
+        StackTraceElement[] trace = new StackTraceElement[top.length + depth + 1];
+        System.arraycopy(top, 0, trace, 0, top.length);
+        for (int i = 0; i < depth; i++) {
+            trace[top.length + i] = frame("com.example.Rec", 20);
+        }
+        trace[trace.length - 1] = frame("com.example.Main", 1);
+        return trace;
+    }
+
+    @Test
+    public void foldConsecutiveTraces() {
+        FoldedThrowableConverter converter = FoldedThrowableConverter.newInstance(null, new String[0]);
+        StackTraceElement[] trace = { frame("com.example.Foo", 1), frame("com.example.Main", 2) };
+
+        String first = format(converter, withTrace(new IllegalStateException("1"), trace), 0);
+        assertTrue(first.contains("\tat com.example.Foo.run(Test.java:1)"));
+
+        assertEquals("java.lang.IllegalStateException: 2" + NL + "\t... (same as above, 2 times)" + NL,
+                format(converter, withTrace(new IllegalStateException("2"), trace), 0));
+        assertEquals("java.lang.IllegalStateException: 3" + NL + "\t... (same as above, 3 times)" + NL,
+                format(converter, withTrace(new IllegalStateException("3"), trace), 0));
+    }
+
+    @Test
+    public void referencePreviousTraces() {
+        FoldedThrowableConverter converter = FoldedThrowableConverter.newInstance(null, new String[0]);
+        Exception a = withTrace(new IllegalStateException("a"), frame("com.example.Foo", 1));
+        Exception b = withTrace(new IllegalArgumentException("b"), frame("com.example.Foo", 1));
+        assertNotEquals(FoldedThrowableConverter.fingerprint(a), FoldedThrowableConverter.fingerprint(b));
+
+        format(converter, a, 0);
+        format(converter, b, 0);
+        assertEquals("java.lang.IllegalStateException: a" + NL + "\t... (same stack trace as " + id(a) + ')' + NL,
+                format(converter, a, 1));
+
+        // Print the full stack trace again after the timeout
+        format(converter, b, 1);
+        assertTrue(format(converter, a, FoldedThrowableConverter.REFERENCE_TIMEOUT).contains("\tat com.example.Foo"));
+    }
+
+    @Test
+    public void circularReference() {
+        FoldedThrowableConverter converter = FoldedThrowableConverter.newInstance(null, new String[0]);
+        Exception a = withTrace(new IllegalStateException("a"), frame("com.example.Foo", 1));
+        Exception b = withTrace(new IllegalArgumentException("b", a), frame("com.example.Bar", 1));
+        a.initCause(b);
+
+        String result = format(converter, a, 0);
+        assertTrue(result.contains("Caused by: java.lang.IllegalArgumentException: b" + NL));
+        assertTrue(result.contains("Caused by: [CIRCULAR REFERENCE: java.lang.IllegalStateException: a]" + NL));
+    }
+
+}
@@ -0,0 +1,120 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Minecrell <https://github.com/Minecrell>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.minecrell.terminalconsole;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.DefaultConfiguration;
+import org.apache.logging.log4j.core.impl.Log4jLogEvent;
+import org.apache.logging.log4j.message.SimpleMessage;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class HighlightErrorConverterTest {
+
+    private static long style(int color, int attributes) {
+        return (long) color << 32 | attributes;
+    }
+
+    @Test
+    public void defaultStyles() {
+        HighlightErrorConverter.LevelStyles styles =
+                HighlightErrorConverter.LevelStyles.parse("ERROR=bold red, WARN=bold yellow");
+        long red = style(SgrState.sgrColor(31), SgrState.BRIGHT);
+        long yellow = style(SgrState.sgrColor(33), SgrState.BRIGHT);
+
+        assertEquals(red, styles.get(Level.FATAL.intLevel()));
+        assertEquals(red, styles.get(Level.ERROR.intLevel()));
+        assertEquals(yellow, styles.get(Level.WARN.intLevel()));
+        assertEquals(0, styles.get(Level.INFO.intLevel()));
+        assertEquals(0, styles.get(Level.ALL.intLevel()));
+    }
+
+    @Test
+    public void customLevels() {
+        HighlightErrorConverter.LevelStyles styles =
+                HighlightErrorConverter.LevelStyles.parse("WARN=yellow, INFO=none, DEBUG=#808080 italic, ALL=240");
+
+        assertEquals(style(SgrState.sgrColor(33), 0), styles.get(250));
+        assertEquals(style(SgrState.sgrColor(33), 0), styles.get(300));
+        assertEquals(0, styles.get(350));
+        assertEquals(style(SgrState.rgbColor(0x808080), SgrState.ITALIC), styles.get(450));
+        assertEquals(style(SgrState.rgbColor(0x808080), SgrState.ITALIC), styles.get(Level.DEBUG.intLevel()));
+        assertEquals(style(SgrState.paletteColor(240), 0), styles.get(Level.TRACE.intLevel()));
+    }
+
+    @Test
+    public void searchesLevelsIfTableIsTooLarge() {
+        TreeMap<Integer, Long> config = new TreeMap<>();
+        config.put(1, 1L);
+        config.put(999_983, 2L);
+        config.put(2_000_000_000, 3L);
+        HighlightErrorConverter.LevelStyles styles = HighlightErrorConverter.LevelStyles.compile(config);
+
+        assertEquals(1, styles.get(0));
+        assertEquals(1, styles.get(1));
+        assertEquals(2, styles.get(2));
+        assertEquals(2, styles.get(999_983));
+        assertEquals(3, styles.get(999_984));
+        assertEquals(3, styles.get(2_000_000_000));
+        assertEquals(0, styles.get(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void skipsInvalidStyles() {
+        HighlightErrorConverter.LevelStyles styles =
+                HighlightErrorConverter.LevelStyles.parse("ERROR=red, WARN=sparkly, UNKNOWN=blue, INFO");
+        assertEquals(style(SgrState.sgrColor(31), 0), styles.get(Level.ERROR.intLevel()));
+        assertEquals(0, styles.get(Level.WARN.intLevel()));
+    }
+
+    @Test
+    public void unstyledLevelDoesNotDetectTerminal() throws IOException {
+        TerminalConsoleAppender.close();
+        AtomicInteger detections = new AtomicInteger();
+        TerminalConsoleAppender.setTerminalFactory(p -> {
+            detections.incrementAndGet();
+            return null;
+        });
+
+        try {
+            HighlightErrorConverter converter = HighlightErrorConverter.newInstance(
+                    new DefaultConfiguration(), new String[] { "%msg" });
+            StringBuilder result = new StringBuilder();
+            converter.format(Log4jLogEvent.newBuilder().setLevel(Level.INFO)
+                    .setMessage(new SimpleMessage("Hello")).build(), result);
+            assertEquals("Hello", result.toString());
+            assertEquals(0, detections.get());
+        } finally {
+            TerminalConsoleAppender.setTerminalFactory(null);
+            ConsoleCapture.uninstall();
+        }
+    }
+
+}
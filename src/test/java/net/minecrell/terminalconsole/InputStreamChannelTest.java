@@ -0,0 +1,94 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Minecrell <https://github.com/Minecrell>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.minecrell.terminalconsole;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class InputStreamChannelTest {
+
+    private static final class TrackingInputStream extends ByteArrayInputStream {
+
+        private boolean closed;
+
+        TrackingInputStream(String text) {
+            super(text.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void close() {
+            this.closed = true;
+        }
+
+    }
+
+    @Test
+    public void readsWhileInterrupted() throws IOException {
+        TrackingInputStream in = new TrackingInputStream("say a\nsay b\n");
+        InputStreamChannel channel = new InputStreamChannel(in);
+        Thread.currentThread().interrupt();
+        try {
+            LineBatchReader reader = new LineBatchReader(channel, StandardCharsets.UTF_8);
+            assertEquals(Arrays.asList("say a", "say b"), reader.readBatch());
+            assertNull(reader.readBatch());
+            assertTrue(channel.isOpen());
+            assertFalse(in.closed);
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    @Test
+    public void readsIntoDirectBuffer() throws IOException {
+        InputStreamChannel channel = new InputStreamChannel(new TrackingInputStream("abc"));
+        ByteBuffer buffer = ByteBuffer.allocateDirect(2);
+        assertEquals(2, channel.read(buffer));
+        assertEquals(2, buffer.position());
+        buffer.clear();
+        assertEquals(1, channel.read(buffer));
+        buffer.clear();
+        assertEquals(-1, channel.read(buffer));
+    }
+
+    @Test
+    public void closeKeepsStreamOpen() throws IOException {
+        TrackingInputStream in = new TrackingInputStream("");
+        InputStreamChannel channel = new InputStreamChannel(in);
+        channel.close();
+        assertFalse(channel.isOpen());
+        assertFalse(in.closed);
+    }
+
+}
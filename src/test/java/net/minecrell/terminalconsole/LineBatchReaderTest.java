@@ -0,0 +1,75 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Minecrell <https://github.com/Minecrell>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.minecrell.terminalconsole;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class LineBatchReaderTest {
+
+    private static List<String> readAll(String input, int bufferSize) throws IOException {
+        LineBatchReader reader = new LineBatchReader(
+                Channels.newChannel(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8))),
+                StandardCharsets.UTF_8, bufferSize);
+        List<String> result = new ArrayList<>();
+        List<String> batch;
+        while ((batch = reader.readBatch()) != null) {
+            result.addAll(batch);
+        }
+        assertNull(reader.readBatch());
+        return result;
+    }
+
+    @Test
+    public void readsSingleBatch() throws IOException {
+        LineBatchReader reader = new LineBatchReader(
+                Channels.newChannel(new ByteArrayInputStream("say a\nsay b\n".getBytes(StandardCharsets.UTF_8))),
+                StandardCharsets.UTF_8);
+        assertEquals(Arrays.asList("say a", "say b"), reader.readBatch());
+        assertNull(reader.readBatch());
+    }
+
+    @Test
+    public void splitsLineTerminators() throws IOException {
+        assertEquals(Arrays.asList("a", "b", "", "c", "d"), readAll("a\r\nb\n\nc\rd", 1024));
+    }
+
+    @Test
+    public void joinsLinesAcrossReads() throws IOException {
+        assertEquals(Arrays.asList("first line", "zweite Zeile äöü", "☃☃"),
+                readAll("first line\r\nzweite Zeile äöü\n☃☃\n", 4));
+    }
+
+}
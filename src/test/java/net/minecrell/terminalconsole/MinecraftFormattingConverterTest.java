@@ -24,16 +24,27 @@
 
 package net.minecrell.terminalconsole;
 
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.DefaultConfiguration;
+import org.apache.logging.log4j.core.impl.Log4jLogEvent;
+import org.apache.logging.log4j.message.SimpleMessage;
 import org.junit.jupiter.api.Test;
 
-import static net.minecrell.terminalconsole.MinecraftFormattingConverter.ANSI_RESET;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static net.minecrell.terminalconsole.SgrState.ANSI_RESET;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 public class MinecraftFormattingConverterTest {
 
     private static String format(String s, boolean ansi) {
+        return format(s, ansi, AnsiColors.COLORS_16);
+    }
+
+    private static String format(String s, boolean ansi, int colors) {
         StringBuilder result = new StringBuilder(s);
-        MinecraftFormattingConverter.format(s, result, 0, ansi);
+        MinecraftFormattingConverter.format(result, 0, ansi, colors);
         return result.toString();
     }
 
@@ -49,7 +60,7 @@ public void replaceSingle() {
 
     @Test
     public void replaceMultiple() {
-        assertEquals("abcabc\u001B[0;31;1mHello \u001B[0;34;1m\u001B[21mWorld!" + ANSI_RESET,
+        assertEquals("abcabc\u001B[0;31;1mHello \u001B[34m\u001B[21mWorld!" + ANSI_RESET,
                 format("abcabc§cHello §9§lWorld!", true));
     }
 
@@ -62,10 +73,32 @@ public void replaceUppercase() {
     public void replaceInvalid() {
         assertEquals("§World" + ANSI_RESET, format("§World", true));
         assertEquals("\u001B[0;31;1mHello §World!" + ANSI_RESET, format("§CHello §World!", true));
-        assertEquals("\u001B[0;31;1mHello §World, \u001B[0;33mMinecrell§\u001B[0;31;1m!" + ANSI_RESET,
+        assertEquals("\u001B[0;31;1mHello §World, \u001B[0;33mMinecrell§\u001B[31;1m!" + ANSI_RESET,
                 format("§CHello §World, §6Minecrell§§c!", true));
     }
 
+    @Test
+    public void replaceAfterStart() {
+        StringBuilder result = new StringBuilder("§c[INFO] §aHello");
+        MinecraftFormattingConverter.format(result, 8, true, AnsiColors.COLORS_16);
+        assertEquals("§c[INFO] \u001B[0;32;1mHello" + ANSI_RESET, result.toString());
+    }
+
+    @Test
+    public void replaceRedundant() {
+        assertEquals("\u001B[0;31;1mHello World!" + ANSI_RESET, format("§c§cHello §cWorld!§r§r", true));
+        assertEquals(ANSI_RESET + "Hello World!", format("§rHello §r§rWorld!", true));
+        assertEquals("\u001B[21mHello \u001B[4mWorld!" + ANSI_RESET, format("§l§lHello §l§nWorld!", true));
+    }
+
+    @Test
+    public void replaceKeepsUnknownEscapeCodes() {
+        // The escape code in the text might have changed the style, so a full reset is required
+        assertEquals("\u001B[0;31;1mHello \u001B[4mWorld \u001B[0;31;1m!" + ANSI_RESET,
+                format("§cHello \u001B[4mWorld §c!", true));
+        assertEquals("\u001B[4m\u001B[0;31;1mHello" + ANSI_RESET, format("\u001B[4m§cHello", true));
+    }
+
     @Test
     public void stripLiteral() {
         assertEquals("Hello World!", format("Hello World!", false));
@@ -93,4 +126,64 @@ public void stripInvalid() {
         assertEquals("Hello §World, Minecrell§!", format("§CHello §World, §6Minecrell§§c!", false));
     }
 
+    @Test
+    public void stripAfterStart() {
+        StringBuilder result = new StringBuilder("§c[INFO] §aHello §");
+        MinecraftFormattingConverter.format(result, 8, false, AnsiColors.COLORS_16);
+        assertEquals("§c[INFO] Hello §", result.toString());
+    }
+
+    @Test
+    public void replaceRgbTrueColor() {
+        assertEquals("\u001B[0;38;2;255;136;0mHello" + ANSI_RESET,
+                format("§x§F§F§8§8§0§0Hello", true, AnsiColors.TRUE_COLOR));
+    }
+
+    @Test
+    public void replaceRgb256() {
+        assertEquals("\u001B[0;38;5;208mHello" + ANSI_RESET,
+                format("§x§f§f§8§8§0§0Hello", true, AnsiColors.COLORS_256));
+    }
+
+    @Test
+    public void replaceRgb16() {
+        // Nearest legacy color for #FF5555 is red (§c)
+        assertEquals(format("§cHello", true), format("§x§F§F§5§5§5§5Hello", true, AnsiColors.COLORS_16));
+    }
+
+    @Test
+    public void stripRgb() {
+        assertEquals("Hello World", format("§x§F§F§8§8§0§0Hello §X§0§0§0§0§0§0World", false));
+    }
+
+    @Test
+    public void malformedRgb() {
+        // Not a valid hex color, only the known codes are handled
+        assertEquals("§x§GHello", format("§x§G§F§8§8§0§0Hello", false));
+        assertEquals("§xHello", format("§x§F§F§8Hello", false));
+    }
+
+    @Test
+    public void stripDoesNotDetectTerminal() throws IOException {
+        TerminalConsoleAppender.close();
+        AtomicInteger detections = new AtomicInteger();
+        TerminalConsoleAppender.setTerminalFactory(p -> {
+            detections.incrementAndGet();
+            return null;
+        });
+
+        try {
+            MinecraftFormattingConverter converter = MinecraftFormattingConverter.newInstance(
+                    new DefaultConfiguration(), new String[] { "%msg", "strip" });
+            StringBuilder result = new StringBuilder();
+            converter.format(Log4jLogEvent.newBuilder().setLevel(Level.INFO)
+                    .setMessage(new SimpleMessage("§cHello")).build(), result);
+            assertEquals("Hello", result.toString());
+            assertEquals(0, detections.get());
+        } finally {
+            TerminalConsoleAppender.setTerminalFactory(null);
+            ConsoleCapture.uninstall();
+        }
+    }
+
 }
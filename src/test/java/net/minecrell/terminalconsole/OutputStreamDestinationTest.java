@@ -0,0 +1,73 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Minecrell <https://github.com/Minecrell>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.minecrell.terminalconsole;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class OutputStreamDestinationTest {
+
+    private static byte[] data(int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) i;
+        }
+        return data;
+    }
+
+    @Test
+    public void buffersUntilFlush() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        OutputStreamDestination destination = new OutputStreamDestination(out);
+        destination.writeBytes(new byte[] { 1, 2, 3 }, 0, 3);
+        assertEquals(0, out.size());
+
+        destination.flush();
+        assertArrayEquals(new byte[] { 1, 2, 3 }, out.toByteArray());
+        assertEquals(0, destination.getByteBuffer().position());
+    }
+
+    @Test
+    public void drainsDataLargerThanBuffer() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        OutputStreamDestination destination = new OutputStreamDestination(out);
+        byte[] data = data(destination.getByteBuffer().capacity() * 3 + 17);
+
+        destination.writeBytes(data, 0, data.length);
+        destination.writeBytes(ByteBuffer.wrap(data));
+        destination.flush();
+
+        byte[] expected = new byte[data.length * 2];
+        System.arraycopy(data, 0, expected, 0, data.length);
+        System.arraycopy(data, 0, expected, data.length, data.length);
+        assertArrayEquals(expected, out.toByteArray());
+    }
+
+}
@@ -0,0 +1,147 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Minecrell <https://github.com/Minecrell>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.minecrell.terminalconsole;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.jline.reader.LineReader;
+import org.jline.reader.LineReaderBuilder;
+import org.jline.reader.UserInterruptException;
+import org.jline.terminal.Terminal;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class SimpleTerminalConsoleTest {
+
+    private static final class TestConsole extends SimpleTerminalConsole {
+
+        final List<String> commands = new ArrayList<>();
+        volatile boolean running = true;
+        int shutdowns;
+        @Nullable LineReader reader;
+
+        @Override
+        protected boolean isRunning() {
+            return this.running;
+        }
+
+        @Override
+        protected void runCommand(String command) {
+            this.commands.add(command);
+            if (command.equals("stop")) {
+                shutdown();
+            }
+        }
+
+        @Override
+        protected void shutdown() {
+            this.shutdowns++;
+            this.running = false;
+        }
+
+        @Override
+        protected LineReader buildReader(LineReaderBuilder builder) {
+            return this.reader != null ? this.reader : super.buildReader(builder);
+        }
+
+    }
+
+    @Test
+    public void processAllLines() {
+        TestConsole console = new TestConsole();
+        console.processInput(Arrays.asList("say Hello", " ", "  list "));
+        assertEquals(Arrays.asList("say Hello", "list"), console.commands);
+    }
+
+    @Test
+    public void skipLinesAfterStop() {
+        TestConsole console = new TestConsole();
+        console.processInput(Arrays.asList("say Hello", "stop", "say World", "stop"));
+        assertEquals(Arrays.asList("say Hello", "stop"), console.commands);
+    }
+
+    /**
+     * Creates a {@link LineReader} that returns the lines from the queue.
+     * Like JLine, it throws a {@link UserInterruptException} if the thread
+     * is interrupted while waiting for input.
+     */
+    private static LineReader createReader(Terminal terminal, BlockingQueue<String> lines) {
+        return (LineReader) Proxy.newProxyInstance(LineReader.class.getClassLoader(),
+                new Class<?>[] { LineReader.class }, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getTerminal":
+                            return terminal;
+                        case "readLine":
+                            try {
+                                return lines.take();
+                            } catch (InterruptedException e) {
+                                throw new UserInterruptException("");
+                            }
+                        default:
+                            return method.getReturnType() == boolean.class ? false : null;
+                    }
+                });
+    }
+
+    @Test
+    public void stopReadingAfterCommandOnOtherThread() throws InterruptedException {
+        ConsoleCapture.install();
+        try {
+            TestConsole console = new TestConsole();
+            console.setCommandParallelism(1);
+            console.reader = createReader(TerminalConsoleAppender.getTerminal(),
+                    new LinkedBlockingQueue<>(Collections.singletonList("stop")));
+
+            AtomicBoolean interrupted = new AtomicBoolean();
+            Thread thread = new Thread(() -> {
+                console.start();
+                interrupted.set(Thread.currentThread().isInterrupted());
+            });
+            thread.start();
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+
+            assertFalse(thread.isAlive(), "Still waiting for input after stop");
+            assertEquals(Collections.singletonList("stop"), console.commands);
+            assertEquals(1, console.shutdowns);
+            assertFalse(interrupted.get());
+            assertNull(TerminalConsoleAppender.getReader());
+        } finally {
+            ConsoleCapture.uninstall();
+        }
+    }
+
+}
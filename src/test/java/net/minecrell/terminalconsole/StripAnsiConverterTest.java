@@ -0,0 +1,80 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Minecrell <https://github.com/Minecrell>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.minecrell.terminalconsole;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class StripAnsiConverterTest {
+
+    private static String strip(String s) {
+        StringBuilder result = new StringBuilder(s);
+        StripAnsiConverter.strip(result, 0);
+        return result.toString();
+    }
+
+    @Test
+    public void stripLiteral() {
+        assertEquals("Hello World!", strip("Hello World!"));
+        assertEquals("", strip(""));
+    }
+
+    @Test
+    public void stripSgr() {
+        assertEquals("Hello World!", strip("\u001B[31;1mHello\u001B[m \u001B[38;2;255;136;0mWorld!\u001B[0m"));
+    }
+
+    @Test
+    public void stripOtherCsi() {
+        assertEquals("Hello", strip("\u001B[2K\u001B[1GHel\u001B[?25llo"));
+        assertEquals("Hello", strip("\u009B31mHello"));
+    }
+
+    @Test
+    public void stripOsc() {
+        assertEquals("Title Link", strip("\u001B]0;Window\u0007Title \u001B]8;;https://example.com\u001B\\Link\u001B]8;;\u001B\\"));
+        assertEquals("Text", strip("Text\u009D0;Unterminated"));
+    }
+
+    @Test
+    public void stripOtherEscapes() {
+        assertEquals("Hello", strip("\u001B(BHel\u001B7lo\u001B"));
+    }
+
+    @Test
+    public void stripIncomplete() {
+        assertEquals("Hello", strip("Hello\u001B[31"));
+        assertEquals("äHello", strip("\u001B[31äHello"));
+    }
+
+    @Test
+    public void stripAfterStart() {
+        StringBuilder result = new StringBuilder("\u001B[31m[INFO] \u001B[32mHello");
+        StripAnsiConverter.strip(result, 10);
+        assertEquals("\u001B[31m[INFO] Hello", result.toString());
+    }
+
+}
@@ -0,0 +1,318 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Minecrell <https://github.com/Minecrell>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.minecrell.terminalconsole;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.impl.Log4jLogEvent;
+import org.apache.logging.log4j.core.layout.PatternLayout;
+import org.apache.logging.log4j.message.SimpleMessage;
+import org.jline.terminal.Terminal;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TerminalConsoleAppenderTest {
+
+    private static final String NL = System.lineSeparator();
+
+    private ConsoleCapture output;
+
+    @BeforeEach
+    public void installTerminal() {
+        this.output = ConsoleCapture.install();
+    }
+
+    @AfterEach
+    public void uninstallTerminal() {
+        TerminalConsoleAppender.setTerminalFactory(null);
+        ConsoleCapture.uninstall();
+    }
+
+    private static TerminalConsoleAppender createAppender(Charset charset) {
+        return createAppender(TerminalConsoleAppender.newBuilder(), charset);
+    }
+
+    private static TerminalConsoleAppender createAppender(TerminalConsoleAppender.Builder<?> builder, Charset charset) {
+        TerminalConsoleAppender appender = builder.setName("Test")
+                .setLayout(PatternLayout.newBuilder().withPattern("%msg%n").withCharset(charset).build())
+                .build();
+        appender.start();
+        return appender;
+    }
+
+    private static LogEvent event(String message) {
+        return Log4jLogEvent.newBuilder()
+                .setLoggerName("Test")
+                .setLevel(Level.INFO)
+                .setMessage(new SimpleMessage(message))
+                .build();
+    }
+
+    private void awaitOutput(String expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!this.output.getText().equals(expected) && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(expected, this.output.getText());
+    }
+
+    private static String scrollback() {
+        return new String(TerminalConsoleAppender.getScrollback(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void discardsScrollbackWhenStopped() {
+        TerminalConsoleAppender appender = createAppender(TerminalConsoleAppender.newBuilder().setScrollbackLines(10),
+                StandardCharsets.UTF_8);
+        appender.append(event("Hello"));
+        assertEquals("Hello" + NL, scrollback());
+
+        appender.stop();
+        assertEquals("", scrollback());
+    }
+
+    @Test
+    public void keepsScrollbackWhenReconfigured() {
+        TerminalConsoleAppender appender = createAppender(TerminalConsoleAppender.newBuilder().setScrollbackLines(10),
+                StandardCharsets.UTF_8);
+        appender.append(event("Hello"));
+
+        // A reloaded configuration starts the new appender before stopping the old one
+        TerminalConsoleAppender reloaded = createAppender(TerminalConsoleAppender.newBuilder().setScrollbackLines(10),
+                StandardCharsets.UTF_8);
+        appender.stop();
+        reloaded.append(event("World"));
+        assertEquals("Hello" + NL + "World" + NL, scrollback());
+
+        reloaded.stop();
+        assertEquals("", scrollback());
+    }
+
+    @Test
+    public void encodesEventsDirectly() {
+        TerminalConsoleAppender appender = createAppender(Charset.defaultCharset());
+        ConsoleMetrics metrics = ConsoleMetrics.INSTANCE;
+        long characters = metrics.getCharactersWritten();
+        long bytes = metrics.getBytesWritten();
+
+        appender.append(event("Hello"));
+        appender.append(event("World"));
+        appender.stop();
+
+        assertEquals("Hello" + NL + "World" + NL, this.output.getText());
+        // The direct encoder does not create the formatted text
+        assertEquals(characters, metrics.getCharactersWritten());
+        assertEquals(bytes + 2 * (5 + NL.length()), metrics.getBytesWritten());
+    }
+
+    @Test
+    public void printsFormattedTextWithDifferentCharset() {
+        Charset charset = Charset.defaultCharset().equals(StandardCharsets.UTF_8)
+                ? StandardCharsets.UTF_16BE : StandardCharsets.UTF_8;
+        TerminalConsoleAppender appender = createAppender(charset);
+        long characters = ConsoleMetrics.INSTANCE.getCharactersWritten();
+        long bytes = ConsoleMetrics.INSTANCE.getBytesWritten();
+
+        appender.append(event("Hello"));
+        appender.stop();
+
+        assertEquals("Hello" + NL, this.output.getText());
+        assertEquals(characters + 5 + NL.length(), ConsoleMetrics.INSTANCE.getCharactersWritten());
+        // Only events encoded directly are counted in bytes
+        assertEquals(bytes, ConsoleMetrics.INSTANCE.getBytesWritten());
+    }
+
+    @Test
+    public void buffersEventsUntilTerminalIsReady() throws IOException, InterruptedException {
+        TerminalConsoleAppender.close();
+
+        CountDownLatch ready = new CountDownLatch(1);
+        AtomicReference<TerminalConsoleAppender.Provider> provider = new AtomicReference<>();
+        TerminalConsoleAppender.setTerminalFactory(p -> {
+            provider.set(p);
+            try {
+                ready.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return this.output.createTerminal();
+        });
+
+        TerminalConsoleAppender appender = createAppender(TerminalConsoleAppender.newBuilder()
+                .setProvider(TerminalConsoleAppender.Provider.DUMB)
+                .setInitTimeout(TimeUnit.SECONDS.toMillis(10)), Charset.defaultCharset());
+        try {
+            appender.append(event("Hello"));
+            appender.append(event("World"));
+            assertEquals("", this.output.getText());
+
+            ready.countDown();
+            awaitOutput("Hello" + NL + "World" + NL);
+            assertEquals(TerminalConsoleAppender.Provider.DUMB, provider.get());
+            assertEquals(Terminal.TYPE_DUMB, TerminalConsoleAppender.getCapabilities().getType());
+
+            // The terminal is ready, further events are written immediately
+            appender.append(event("Direct"));
+            assertEquals("Hello" + NL + "World" + NL + "Direct" + NL, this.output.getText());
+        } finally {
+            ready.countDown();
+            appender.stop();
+        }
+    }
+
+    @Test
+    public void writesImmediatelyIfCreatedAfterInitialization() {
+        TerminalConsoleAppender appender = createAppender(Charset.defaultCharset());
+        appender.append(event("Hello"));
+        assertEquals("Hello" + NL, this.output.getText());
+        appender.stop();
+    }
+
+    @Test
+    public void fallsBackToStandardOutputAfterTimeout() throws IOException {
+        TerminalConsoleAppender.close();
+
+        CountDownLatch ready = new CountDownLatch(1);
+        TerminalConsoleAppender.setTerminalFactory(p -> {
+            try {
+                ready.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return this.output.createTerminal();
+        });
+
+        TerminalConsoleAppender appender = createAppender(TerminalConsoleAppender.newBuilder().setInitTimeout(50),
+                Charset.defaultCharset());
+        try {
+            assertNull(TerminalConsoleAppender.getTerminal());
+            assertNull(TerminalConsoleAppender.getCapabilities().getType());
+        } finally {
+            ready.countDown();
+            appender.stop();
+        }
+    }
+
+    @Test
+    public void parsesProvider() {
+        assertEquals(TerminalConsoleAppender.Provider.JNA, TerminalConsoleAppender.parseProvider("jna"));
+        assertEquals(TerminalConsoleAppender.Provider.DUMB, TerminalConsoleAppender.parseProvider("DUMB"));
+        assertNull(TerminalConsoleAppender.parseProvider("invalid"));
+        assertNull(TerminalConsoleAppender.parseProvider(null));
+    }
+
+    @Test
+    public void detectsCapabilitiesOfTerminal() {
+        TerminalCapabilities capabilities = TerminalConsoleAppender.getCapabilities();
+        assertEquals(Terminal.TYPE_DUMB, capabilities.getType());
+
+        String colorTerm = System.getenv("COLORTERM");
+        boolean trueColor = colorTerm != null && (colorTerm.contains("truecolor") || colorTerm.contains("24bit"));
+        assertEquals(trueColor ? AnsiColors.TRUE_COLOR : AnsiColors.COLORS_16, capabilities.getColorDepth());
+
+        if (System.getProperty(TerminalConsoleAppender.ANSI_OVERRIDE_PROPERTY) == null) {
+            assertTrue(capabilities.isAnsiSupported());
+
+            TerminalConsoleAppender.setTerminal(null);
+            capabilities = TerminalConsoleAppender.getCapabilities();
+            assertNull(capabilities.getType());
+            assertFalse(capabilities.isAnsiSupported());
+            assertEquals(0, capabilities.getWidth());
+        }
+    }
+
+    @Test
+    public void concurrentPrintsKeepLinesAndOrder() throws InterruptedException {
+        int threads = 16;
+        int lines = 2000;
+
+        CountDownLatch ready = new CountDownLatch(1);
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            String prefix = "Thread " + t + " line ";
+            Thread thread = new Thread(() -> {
+                try {
+                    ready.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < lines; i++) {
+                    TerminalConsoleAppender.print(prefix + i + '\n');
+                }
+            });
+            thread.start();
+            writers.add(thread);
+        }
+
+        ready.countDown();
+        for (Thread thread : writers) {
+            thread.join();
+        }
+
+        int[] next = new int[threads];
+        String[] printed = this.output.getText().split("\n");
+        assertEquals(threads * lines, printed.length);
+        for (String line : printed) {
+            String[] parts = line.split(" ");
+            assertEquals(4, parts.length, line);
+            int thread = Integer.parseInt(parts[1]);
+            assertEquals(next[thread]++, Integer.parseInt(parts[3]), line);
+        }
+    }
+
+    @Test
+    public void waitingPrintContinuesAfterOutputIsUnlocked() throws InterruptedException {
+        TerminalConsoleAppender.lockOutput();
+        Thread thread;
+        try {
+            thread = new Thread(() -> TerminalConsoleAppender.print("Hello\n"));
+            thread.start();
+            thread.join(100);
+            assertTrue(thread.isAlive());
+        } finally {
+            TerminalConsoleAppender.unlockOutput();
+        }
+
+        thread.join(TimeUnit.SECONDS.toMillis(10));
+        assertFalse(thread.isAlive());
+        assertEquals("Hello\n", this.output.getText());
+    }
+
+}
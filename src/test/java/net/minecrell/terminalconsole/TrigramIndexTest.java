@@ -0,0 +1,69 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Minecrell <https://github.com/Minecrell>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.minecrell.terminalconsole;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TrigramIndexTest {
+
+    private static TrigramIndex create(int lines) {
+        TrigramIndex index = new TrigramIndex();
+        for (int i = 0; i < lines; i++) {
+            index.add(i, i % 2 == 0 ? "say even " + i : "tp odd " + i);
+        }
+        return index;
+    }
+
+    @Test
+    public void findPreviousCandidate() {
+        TrigramIndex index = create(100);
+        assertEquals(98, index.previousCandidate("say", 100));
+        assertEquals(97, index.previousCandidate("TP ODD", 98));
+        assertEquals(-1, index.previousCandidate("xyz", 100));
+        // Trigrams of the query might appear in a different order
+        assertEquals(53, index.previousCandidate("odd 53", 100));
+    }
+
+    @Test
+    public void removeBefore() {
+        TrigramIndex index = create(100);
+        index.removeBefore(50);
+        assertEquals(98, index.previousCandidate("say", 100));
+        assertEquals(50, index.previousCandidate("say", 51));
+        assertEquals(-1, index.previousCandidate("say", 50));
+        assertEquals(-1, index.previousCandidate("odd 3 ", 100));
+        assertEquals(-1, index.previousCandidate("en 4", 50));
+
+        // Lines added after removing are still found
+        index.add(100, "say even 100");
+        assertEquals(100, index.previousCandidate("n 10", 101));
+        index.removeBefore(100);
+        assertEquals(-1, index.previousCandidate("say", 100));
+        assertEquals(100, index.previousCandidate("say", 101));
+    }
+
+}
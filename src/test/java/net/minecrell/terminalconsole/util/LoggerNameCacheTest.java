@@ -0,0 +1,69 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Minecrell <https://github.com/Minecrell>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.minecrell.terminalconsole.util;
+
+import org.apache.logging.log4j.core.pattern.PatternFormatter;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class LoggerNameCacheTest {
+
+    @Test
+    public void countHitsAndMisses() {
+        LoggerNameCache cache = new LoggerNameCache(16);
+        PatternFormatter[] formatters = new PatternFormatter[0];
+
+        assertNull(cache.get("com.example.Logger"));
+        cache.put("com.example.Logger", formatters);
+        assertSame(formatters, cache.get("com.example.Logger"));
+        // Different String instance with the same name
+        assertSame(formatters, cache.get(new String("com.example.Logger")));
+        assertNull(cache.get("com.example.Other"));
+
+        assertEquals(2, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void replaceEntryInSameSlot() {
+        // A single slot, so all logger names collide
+        LoggerNameCache cache = new LoggerNameCache(1);
+        PatternFormatter[] first = new PatternFormatter[0];
+        PatternFormatter[] second = new PatternFormatter[0];
+
+        cache.put("first", first);
+        cache.put("second", second);
+        assertNull(cache.get("first"));
+        assertSame(second, cache.get("second"));
+
+        cache.put("first", first);
+        assertSame(first, cache.get("first"));
+        assertNull(cache.get("second"));
+    }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Minecrell <https://github.com/Minecrell>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.minecrell.terminalconsole.util;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.config.DefaultConfiguration;
+import org.apache.logging.log4j.core.impl.Log4jLogEvent;
+import org.apache.logging.log4j.core.layout.PatternMatch;
+import org.apache.logging.log4j.core.pattern.PatternFormatter;
+import org.apache.logging.log4j.message.SimpleMessage;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class LoggerNamePatternSelectorTest {
+
+    private static LoggerNamePatternSelector create(int cacheSize) {
+        return LoggerNamePatternSelector.createSelector("default", new PatternMatch[] {
+                new PatternMatch("net.minecrell.", "minecrell"),
+                new PatternMatch("com.example.Logger,com.example.Other", "example")
+        }, false, true, false, cacheSize, new DefaultConfiguration());
+    }
+
+    private static String select(LoggerNamePatternSelector selector, String loggerName) {
+        LogEvent event = Log4jLogEvent.newBuilder()
+                .setLoggerName(loggerName)
+                .setLevel(Level.INFO)
+                .setMessage(new SimpleMessage(""))
+                .build();
+
+        StringBuilder result = new StringBuilder();
+        for (PatternFormatter formatter : selector.getFormatters(event)) {
+            formatter.format(event, result);
+        }
+        return result.toString();
+    }
+
+    @Test
+    public void cacheSelectedPatterns() {
+        LoggerNamePatternSelector selector = create(16);
+        assertEquals("minecrell", select(selector, "net.minecrell.Test"));
+        assertEquals("minecrell", select(selector, "net.minecrell.Test"));
+        assertEquals("example", select(selector, "com.example.Other"));
+        assertEquals("default", select(selector, "com.example"));
+        assertEquals(1, selector.getCacheHits());
+        assertEquals(3, selector.getCacheMisses());
+    }
+
+    @Test
+    public void selectAgainAfterEviction() {
+        // Every logger name replaces the previous entry
+        LoggerNamePatternSelector selector = create(1);
+        String[] names = { "net.minecrell.Test", "com.example.Logger", "Main", "com.example.Other" };
+        String[] expected = { "minecrell", "example", "default", "example" };
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < names.length; i++) {
+                assertEquals(expected[i], select(selector, names[i]));
+            }
+        }
+        assertEquals(0, selector.getCacheHits());
+        assertEquals(12, selector.getCacheMisses());
+    }
+
+    @Test
+    public void selectWithoutCache() {
+        LoggerNamePatternSelector selector = create(0);
+        assertEquals("minecrell", select(selector, "net.minecrell.Test"));
+        assertEquals("example", select(selector, "com.example.Logger"));
+        assertEquals("default", select(selector, "Main"));
+        assertEquals(0, selector.getCacheMisses());
+    }
+
+}
@@ -0,0 +1,147 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Minecrell <https://github.com/Minecrell>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.minecrell.terminalconsole.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static net.minecrell.terminalconsole.util.LoggerNameTrie.NO_MATCH;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class LoggerNameTrieTest {
+
+    private static LoggerNameTrie create(String... keys) {
+        LoggerNameTrie trie = new LoggerNameTrie();
+        for (int i = 0; i < keys.length; i++) {
+            trie.add(keys[i], i);
+        }
+        return trie;
+    }
+
+    @Test
+    public void matchExact() {
+        LoggerNameTrie trie = create("", "Main", "com.example.Logger");
+        assertEquals(0, trie.find(""));
+        assertEquals(1, trie.find("Main"));
+        assertEquals(2, trie.find("com.example.Logger"));
+        assertEquals(NO_MATCH, trie.find("com.example.Logger2"));
+        assertEquals(NO_MATCH, trie.find("com.example"));
+    }
+
+    @Test
+    public void matchPackage() {
+        LoggerNameTrie trie = create("net.minecrell.", "com.");
+        assertEquals(0, trie.find("net.minecrell.Test"));
+        assertEquals(0, trie.find("net.minecrell.util.Test"));
+        assertEquals(0, trie.find("net.minecrell."));
+        assertEquals(1, trie.find("com.example.Logger"));
+        assertEquals(NO_MATCH, trie.find("net.minecrell"));
+        assertEquals(NO_MATCH, trie.find("net.minecrellTest"));
+        assertEquals(NO_MATCH, trie.find("org.example.Logger"));
+    }
+
+    @Test
+    public void matchFirst() {
+        LoggerNameTrie trie = create("com.example.", "com.example.Logger", "com.");
+        assertEquals(0, trie.find("com.example.Logger"));
+        assertEquals(2, trie.find("com.other.Logger"));
+
+        trie = create("com.example.Logger", "com.example.", "com.example.Logger");
+        assertEquals(0, trie.find("com.example.Logger"));
+        assertEquals(1, trie.find("com.example.Other"));
+    }
+
+    @Test
+    public void matchWildcard() {
+        LoggerNameTrie trie = create("com.*.internal.", "*.Main", "com.example.");
+        assertEquals(0, trie.find("com.example.internal.Logger"));
+        assertEquals(0, trie.find("com.other.internal.sub.Logger"));
+        assertEquals(2, trie.find("com.example.Logger"));
+        assertEquals(NO_MATCH, trie.find("com.internal.Logger"));
+        assertEquals(1, trie.find("example.Main"));
+        assertEquals(NO_MATCH, trie.find("com.example2.Main"));
+    }
+
+    @Test
+    public void matchLikeLinearScan() {
+        String[] segments = { "", "a", "b", "ab", "*" };
+        Random random = new Random(42);
+
+        for (int run = 0; run < 200; run++) {
+            String[] keys = new String[1 + random.nextInt(8)];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = randomName(random, segments, random.nextBoolean());
+            }
+
+            LoggerNameTrie trie = create(keys);
+            for (int i = 0; i < 50; i++) {
+                String name = randomName(random, segments, false).replace('*', 'c');
+                assertEquals(findLinear(keys, name), trie.find(name), () -> "Name '" + name + "' with keys " + String.join(", ", keys));
+            }
+        }
+    }
+
+    private static String randomName(Random random, String[] segments, boolean isPackage) {
+        StringBuilder builder = new StringBuilder();
+        int count = 1 + random.nextInt(3);
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                builder.append('.');
+            }
+            builder.append(segments[random.nextInt(segments.length)]);
+        }
+        if (isPackage) {
+            builder.append('.');
+        }
+        return builder.toString();
+    }
+
+    private static int findLinear(String[] keys, String name) {
+        for (int i = 0; i < keys.length; i++) {
+            if (matches(keys[i], name)) {
+                return i;
+            }
+        }
+        return NO_MATCH;
+    }
+
+    private static boolean matches(String key, String name) {
+        boolean isPackage = key.endsWith(".");
+        String[] keySegments = (isPackage ? key.substring(0, key.length() - 1) : key).split("\\.", -1);
+        String[] nameSegments = name.split("\\.", -1);
+        if (isPackage ? nameSegments.length <= keySegments.length : nameSegments.length != keySegments.length) {
+            return false;
+        }
+
+        for (int i = 0; i < keySegments.length; i++) {
+            if (!keySegments[i].equals("*") && !keySegments[i].equals(nameSegments[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}